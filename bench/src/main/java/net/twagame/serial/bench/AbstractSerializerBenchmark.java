@@ -0,0 +1,51 @@
+package net.twagame.serial.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark methods shared by all serializer benchmarks. Subclasses set {@link AbstractSerializerBenchmark#subject} and
+ * {@link AbstractSerializerBenchmark#object} in a trial level setup method. Payload sizes do not change between runs, they are reported by
+ * {@link PayloadSizes} instead.
+ * 
+ * @author hadadzhi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m") // Java serialization needs a large stack for deep nesting
+@State(Scope.Thread)
+public abstract class AbstractSerializerBenchmark
+{
+	protected BenchSerializer subject;
+	protected Object object;
+
+	@Benchmark
+	public int serialize() throws Exception
+	{
+		return subject.serialize(object);
+	}
+
+	@Benchmark
+	public Object deserialize() throws Exception
+	{
+		return subject.deserialize();
+	}
+
+	@Benchmark
+	public Object roundTrip() throws Exception
+	{
+		subject.serialize(object);
+		return subject.deserialize();
+	}
+}
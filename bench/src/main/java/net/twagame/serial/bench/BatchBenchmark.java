@@ -0,0 +1,80 @@
+package net.twagame.serial.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import net.twagame.serial.TWABatchCodec;
+import net.twagame.serial.TWASerializationConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TWABatchCodec} on a snapshot of independent {@link net.twagame.sandbox.serial.testclass.TestClass TestClass} entities, with a
+ * growing number of worker threads. <code>parallelism = 1</code> runs in the calling thread and is the sequential baseline.
+ * 
+ * @author hadadzhi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark
+{
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	@Param({ "10000" })
+	public int entities;
+
+	private ForkJoinPool pool;
+	private TWABatchCodec codec;
+	private List<Object> snapshot;
+	private byte[] encoded;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		pool = new ForkJoinPool(parallelism);
+		codec = new TWABatchCodec(new TWASerializationConfig(), pool, TWABatchCodec.DEFAULT_CHUNK_SIZE);
+		snapshot = new ArrayList<>(entities);
+
+		for (int i = 0; i < entities; i++)
+			snapshot.add(Payloads.testClass());
+
+		encoded = codec.encode(snapshot);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public byte[] encode()
+	{
+		return codec.encode(snapshot);
+	}
+
+	@Benchmark
+	public List<Object> decode()
+	{
+		return codec.decode(encoded);
+	}
+}
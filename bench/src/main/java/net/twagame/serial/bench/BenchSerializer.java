@@ -0,0 +1,165 @@
+package net.twagame.serial.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializationConfig;
+import net.twagame.serial.TWASerializer;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A serializer under benchmark. Each implementation reuses its buffers between calls the way a real user of that library would, so that
+ * the allocation rate reported by the gc profiler reflects the library itself. Instances are not thread-safe.
+ * 
+ * @author hadadzhi
+ */
+public abstract class BenchSerializer
+{
+	/**
+	 * Returns a new serializer by name: <code>twa</code>, <code>twaTree</code> (TWA in acyclic mode), <code>java</code> or
+	 * <code>kryo</code>.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static BenchSerializer forName(String name)
+	{
+		switch (name)
+		{
+			case "twa":
+				return new TWA(new TWASerializationConfig());
+			case "twaTree":
+			{
+				TWASerializationConfig config = new TWASerializationConfig();
+				config.setAcyclic(true);
+				return new TWA(config);
+			}
+			case "java":
+				return new Java();
+			case "kryo":
+				return new KryoSerializer();
+			default:
+				throw new IllegalArgumentException("Unknown serializer: " + name);
+		}
+	}
+
+	/**
+	 * Serializes the object, keeping the data for {@link BenchSerializer#deserialize()}.
+	 * 
+	 * @param o
+	 * @return the size of the serialized data in bytes.
+	 * @throws Exception
+	 */
+	public abstract int serialize(Object o) throws Exception;
+
+	/**
+	 * Deserializes the data written by the last call to {@link BenchSerializer#serialize(Object)}.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public abstract Object deserialize() throws Exception;
+
+	private static final class TWA extends BenchSerializer
+	{
+		private final MemoryOutput out = new MemoryOutput();
+		private final MemoryInput in = new MemoryInput(null);
+		private final TWASerializer serializer;
+		private final TWADeserializer deserializer;
+
+		TWA(TWASerializationConfig config)
+		{
+			serializer = new TWASerializer(out, config);
+			deserializer = new TWADeserializer(in, config);
+		}
+
+		@Override
+		public int serialize(Object o) throws Exception
+		{
+			out.reset();
+			serializer.resetHandles();
+			serializer.writeObject(o);
+			return out.size();
+		}
+
+		@Override
+		public Object deserialize() throws Exception
+		{
+			in.reset(out.getBuffer(), 0, out.size());
+			return deserializer.readObject();
+		}
+	}
+
+	private static final class Java extends BenchSerializer
+	{
+		private final BufferOutputStream bytes = new BufferOutputStream();
+
+		@Override
+		public int serialize(Object o) throws Exception
+		{
+			bytes.reset();
+
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(o);
+			out.close();
+
+			return bytes.size();
+		}
+
+		@Override
+		public Object deserialize() throws Exception
+		{
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.getBuffer(), 0, bytes.size()));
+			Object o = in.readObject();
+			in.close();
+
+			return o;
+		}
+
+		/**
+		 * Gives access to the buffer without copying it.
+		 */
+		private static final class BufferOutputStream extends ByteArrayOutputStream
+		{
+			BufferOutputStream()
+			{
+				super(4096);
+			}
+
+			byte[] getBuffer()
+			{
+				return buf;
+			}
+		}
+	}
+
+	private static final class KryoSerializer extends BenchSerializer
+	{
+		private final Kryo kryo = new Kryo();
+		private final Output out = new Output(4096, -1);
+		private final Input in = new Input();
+
+		@Override
+		public int serialize(Object o) throws Exception
+		{
+			out.clear();
+			kryo.writeClassAndObject(out, o);
+			return out.position();
+		}
+
+		@Override
+		public Object deserialize() throws Exception
+		{
+			in.setBuffer(out.getBuffer(), 0, out.position());
+			return kryo.readClassAndObject(in);
+		}
+	}
+}
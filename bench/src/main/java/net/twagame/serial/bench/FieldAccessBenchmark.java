@@ -0,0 +1,55 @@
+package net.twagame.serial.bench;
+
+import net.twagame.serial.util.FieldAccessor;
+import net.twagame.serial.util.FieldAccessors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * TWA with {@link net.twagame.serial.util.unsafe.UnsafeField UnsafeField} vs {@link net.twagame.serial.util.MethodHandleField
+ * MethodHandleField} field access, see {@link FieldAccessors}. The serializer benchmarks measure whole payloads, {@link #accessField()}
+ * measures a single get and set of an int field. Each parameter combination runs in its own fork, so the access implementation is
+ * selected before any descriptor is created.
+ * 
+ * @author hadadzhi
+ */
+public class FieldAccessBenchmark extends AbstractSerializerBenchmark
+{
+	@Param({ "unsafe", "methodHandles" })
+	public String access;
+
+	@Param({ "testClass", "smallObjects" })
+	public String payload;
+
+	private FieldAccessor x;
+	private Point point;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		System.setProperty(FieldAccessors.ACCESS_PROPERTY, access);
+
+		if (FieldAccessors.isUnsafe() != access.equals("unsafe"))
+		{
+			throw new IllegalStateException("The field access was selected before the setup");
+		}
+
+		subject = BenchSerializer.forName("twa");
+		object = payload.equals("testClass") ? Payloads.create(payload) : Payloads.scaled(payload, 100);
+		subject.serialize(object);
+
+		x = FieldAccessors.forField(Point.class.getDeclaredField("x"));
+		point = new Point();
+	}
+
+	@Benchmark
+	public int accessField()
+	{
+		int v = x.getInt(point);
+		x.setInt(point, v + 1);
+		return v;
+	}
+}
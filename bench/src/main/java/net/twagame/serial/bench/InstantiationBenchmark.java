@@ -0,0 +1,57 @@
+package net.twagame.serial.bench;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import net.twagame.sandbox.serial.testclass.TestClass;
+import net.twagame.serial.util.ClassDescriptor;
+import net.twagame.serial.util.ClassDescriptorsCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Instantiation of {@link TestClass}, which has collection fields and so requires safe instantiation: the {@link ClassDescriptor}'s
+ * instantiator vs a reflective constructor call, as done before the instantiators were introduced.
+ * 
+ * @author hadadzhi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstantiationBenchmark
+{
+	private ClassDescriptor descriptor;
+	private Constructor<TestClass> constructor;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		descriptor = ClassDescriptorsCache.getInstance().forClass(TestClass.class);
+		constructor = TestClass.class.getConstructor();
+	}
+
+	@Benchmark
+	public Object instantiator()
+	{
+		return descriptor.instantiate();
+	}
+
+	@Benchmark
+	public Object reflection() throws Exception
+	{
+		return constructor.newInstance();
+	}
+}
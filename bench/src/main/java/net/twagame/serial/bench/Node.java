@@ -0,0 +1,38 @@
+package net.twagame.serial.bench;
+
+import java.io.Serializable;
+
+import net.twagame.serial.annotation.TWASerializable;
+
+/**
+ * A link of a singly linked chain, used to benchmark deep nesting.
+ * 
+ * @author hadadzhi
+ */
+@SuppressWarnings({ "serial" })
+@TWASerializable
+public class Node implements Serializable
+{
+	private int value;
+	private Node child;
+
+	public int getValue()
+	{
+		return value;
+	}
+
+	public void setValue(int value)
+	{
+		this.value = value;
+	}
+
+	public Node getChild()
+	{
+		return child;
+	}
+
+	public void setChild(Node child)
+	{
+		this.child = child;
+	}
+}
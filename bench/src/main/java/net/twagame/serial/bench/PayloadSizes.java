@@ -0,0 +1,74 @@
+package net.twagame.serial.bench;
+
+/**
+ * Prints the serialized size of every benchmark payload for every serializer. Run it with
+ * <code>java -cp target/benchmarks.jar net.twagame.serial.bench.PayloadSizes</code>.
+ * 
+ * @author hadadzhi
+ */
+public class PayloadSizes
+{
+	private static final String[] SERIALIZERS = { "twa", "twaTree", "java", "kryo" };
+	private static final String[] PAYLOADS = { "testClass", "image", "media" };
+	private static final String[] SHAPES = { "graph", "deep", "doubles", "smallObjects" };
+	private static final int[] SIZES = { 10, 100, 1000 };
+
+	/**
+	 * The stack size of the thread that serializes the payloads; Java serialization needs a large stack for deep nesting.
+	 */
+	private static final long STACK_SIZE = 16 * 1024 * 1024;
+
+	public static void main(String[] args) throws Exception
+	{
+		Thread thread = new Thread(null, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					printSizes();
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		}, "payload-sizes", STACK_SIZE);
+
+		thread.start();
+		thread.join();
+	}
+
+	private static void printSizes() throws Exception
+	{
+		System.out.printf("%-20s %12s %12s %12s %12s%n", "Payload (bytes)", SERIALIZERS[0], SERIALIZERS[1], SERIALIZERS[2], SERIALIZERS[3]);
+
+		for (String payload : PAYLOADS)
+		{
+			print(payload, Payloads.create(payload));
+		}
+
+		for (String shape : SHAPES)
+		{
+			for (int size : SIZES)
+			{
+				print(shape + "/" + size, Payloads.scaled(shape, size));
+			}
+		}
+	}
+
+	private static void print(String name, Object payload) throws Exception
+	{
+		System.out.printf("%-20s", name);
+
+		for (String serializer : SERIALIZERS)
+		{
+			BenchSerializer subject = BenchSerializer.forName(serializer);
+			System.out.printf(" %12d", subject.serialize(payload));
+			subject.deserialize(); // Check that the payload can be read back
+		}
+
+		System.out.println();
+	}
+}
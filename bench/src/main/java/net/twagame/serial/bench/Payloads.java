@@ -0,0 +1,151 @@
+package net.twagame.serial.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.twagame.sandbox.serial.testclass.Image;
+import net.twagame.sandbox.serial.testclass.Media;
+import net.twagame.sandbox.serial.testclass.TestClass;
+
+/**
+ * Creates the object graphs the benchmarks serialize.
+ * 
+ * @author hadadzhi
+ */
+public final class Payloads
+{
+	private Payloads()
+	{
+	}
+
+	/**
+	 * Returns one of the test objects: <code>testClass</code>, <code>image</code> or <code>media</code>.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static Object create(String name)
+	{
+		switch (name)
+		{
+			case "testClass":
+				return testClass();
+			case "image":
+				return new Image();
+			case "media":
+				return new Media();
+			default:
+				throw new IllegalArgumentException("Unknown payload: " + name);
+		}
+	}
+
+	/**
+	 * Returns a payload of the specified shape, scaled by <code>size</code>:
+	 * <ul>
+	 * <li><code>graph</code>: a list of <code>size</code> {@link TestClass} objects, neighbours sharing an {@link Image};</li>
+	 * <li><code>deep</code>: a chain of <code>size</code> nested {@link Node}s;</li>
+	 * <li><code>doubles</code>: a <code>double[]</code> of <code>size * 1000</code> elements;</li>
+	 * <li><code>smallObjects</code>: a list of <code>size * 10</code> {@link Point}s.</li>
+	 * </ul>
+	 * 
+	 * @param shape
+	 * @param size
+	 * @return
+	 */
+	public static Object scaled(String shape, int size)
+	{
+		switch (shape)
+		{
+			case "graph":
+				return graph(size);
+			case "deep":
+				return deep(size);
+			case "doubles":
+				return doubles(size * 1000);
+			case "smallObjects":
+				return smallObjects(size * 10);
+			default:
+				throw new IllegalArgumentException("Unknown shape: " + shape);
+		}
+	}
+
+	public static TestClass testClass()
+	{
+		TestClass testclass = new TestClass();
+		testclass.setMedia(new Media());
+		testclass.getCollectionOfDoubleArrays().add(new double[] { 2.72, 3.14 });
+		testclass.getCollectionOfDoubleArrays().add(new double[] { 3.14, 2.72 });
+		testclass.getImages().add(new Image());
+		testclass.getImages().addAll(testclass.getImages());
+		testclass.setImages2(testclass.getImages());
+		testclass.setDoubledouble(new double[][] { { 1, 2 }, { 3, 4 } });
+		testclass.setSomeboolean(true);
+		testclass.setSomebyte((byte) 42);
+		testclass.setSomedouble(3.1415);
+		testclass.setSomefloat(3.14F);
+		testclass.setSomeint(-100500);
+		testclass.setSomelong(-100500100500L);
+		testclass.setSomeshort((short) 100);
+		testclass.setSomestring("Some string");
+		return testclass;
+	}
+
+	private static List<TestClass> graph(int size)
+	{
+		List<TestClass> graph = new ArrayList<>(size);
+		Image shared = new Image();
+
+		for (int i = 0; i < size; i++)
+		{
+			TestClass testclass = testClass();
+			testclass.getImages().add(shared);
+
+			if ((i % 2) == 1)
+				shared = new Image();
+
+			graph.add(testclass);
+		}
+
+		return graph;
+	}
+
+	private static Node deep(int depth)
+	{
+		Node root = null;
+
+		for (int i = 0; i < depth; i++)
+		{
+			Node node = new Node();
+			node.setValue(i);
+			node.setChild(root);
+			root = node;
+		}
+
+		return root;
+	}
+
+	private static double[] doubles(int length)
+	{
+		double[] doubles = new double[length];
+
+		for (int i = 0; i < length; i++)
+			doubles[i] = i * 0.5;
+
+		return doubles;
+	}
+
+	private static List<Point> smallObjects(int count)
+	{
+		List<Point> points = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			Point point = new Point();
+			point.setX(i);
+			point.setY(-i);
+			points.add(point);
+		}
+
+		return points;
+	}
+}
@@ -0,0 +1,38 @@
+package net.twagame.serial.bench;
+
+import java.io.Serializable;
+
+import net.twagame.serial.annotation.TWASerializable;
+
+/**
+ * A tiny object, used to benchmark the per-object overhead.
+ * 
+ * @author hadadzhi
+ */
+@SuppressWarnings({ "serial" })
+@TWASerializable
+public class Point implements Serializable
+{
+	private int x;
+	private int y;
+
+	public int getX()
+	{
+		return x;
+	}
+
+	public void setX(int x)
+	{
+		this.x = x;
+	}
+
+	public int getY()
+	{
+		return y;
+	}
+
+	public void setY(int y)
+	{
+		this.y = y;
+	}
+}
@@ -0,0 +1,31 @@
+package net.twagame.serial.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * TWA vs Java serialization vs Kryo on payloads of growing size: object graphs with shared references, deep nesting, large primitive
+ * arrays and many small objects. See {@link Payloads#scaled(String, int)} for what <code>size</code> means for each shape.
+ * 
+ * @author hadadzhi
+ */
+public class ScalingBenchmark extends AbstractSerializerBenchmark
+{
+	@Param({ "twa", "twaTree", "java", "kryo" })
+	public String serializer;
+
+	@Param({ "graph", "deep", "doubles", "smallObjects" })
+	public String shape;
+
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		subject = BenchSerializer.forName(serializer);
+		object = Payloads.scaled(shape, size);
+		subject.serialize(object);
+	}
+}
@@ -0,0 +1,27 @@
+package net.twagame.serial.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * TWA vs Java serialization vs Kryo on the test objects from <code>net.twagame.sandbox.serial.testclass</code>.
+ * 
+ * @author hadadzhi
+ */
+public class SerializerBenchmark extends AbstractSerializerBenchmark
+{
+	@Param({ "twa", "twaTree", "java", "kryo" })
+	public String serializer;
+
+	@Param({ "testClass", "image", "media" })
+	public String payload;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		subject = BenchSerializer.forName(serializer);
+		object = Payloads.create(payload);
+		subject.serialize(object);
+	}
+}
@@ -0,0 +1,116 @@
+package net.twagame.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * The superclass of the tests that write objects with a {@link TWASerializer} and read them back with a {@link TWADeserializer}, under
+ * each combination of the {@link TWASerializationConfig} settings. Subclasses skip the configs they do not apply to with
+ * {@link org.junit.Assume}.
+ * 
+ * @author hadadzhi
+ */
+@RunWith(Parameterized.class)
+public abstract class AbstractRoundTripTest
+{
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> configs()
+	{
+		return Arrays.asList(new Object[][] {
+			{ "plain", config(false, false, 0, false) },
+			{ "compact", config(true, false, 0, false) },
+			{ "lengthPrefixed", config(false, true, 0, false) },
+			{ "compact lengthPrefixed", config(true, true, 0, false) },
+			{ "symbols", config(false, false, 8, false) },
+			{ "compact symbols", config(true, false, 8, false) },
+			{ "acyclic", config(false, false, 0, true) },
+			{ "acyclic compact lengthPrefixed", config(true, true, 0, true) } });
+	}
+
+	private static TWASerializationConfig config(boolean compact, boolean lengthPrefixed, int symbolTableSize, boolean acyclic)
+	{
+		TWASerializationConfig config = new TWASerializationConfig();
+		config.setCompact(compact);
+		config.setLengthPrefixed(lengthPrefixed);
+		config.setSymbolTableSize(symbolTableSize);
+		config.setAcyclic(acyclic);
+		return config;
+	}
+
+	protected final TWASerializationConfig config;
+
+	protected MemoryOutput out;
+	protected MemoryInput in;
+	protected TWASerializer serializer;
+	protected TWADeserializer deserializer;
+
+	protected AbstractRoundTripTest(String name, TWASerializationConfig config)
+	{
+		this.config = config;
+	}
+
+	@Before
+	public void createPair()
+	{
+		out = new MemoryOutput();
+		in = new MemoryInput(new byte[0]);
+		serializer = new TWASerializer(out, config);
+		deserializer = new TWADeserializer(in, config);
+	}
+
+	/**
+	 * Writes the object as a message of its own and returns the message.
+	 */
+	protected byte[] write(Object o)
+	{
+		out.reset();
+		serializer.resetHandles();
+		serializer.writeObject(o);
+		return out.getBytes();
+	}
+
+	/**
+	 * Reads the object from a message written by {@link #write(Object)}, checking that it takes up the whole message.
+	 */
+	protected Object read(byte[] bytes)
+	{
+		in.reset(bytes);
+		deserializer.resetHandles();
+		Object o = deserializer.readObject();
+		assertEquals(0, in.remaining());
+		return o;
+	}
+
+	protected Object roundTrip(Object o)
+	{
+		return read(write(o));
+	}
+
+	/**
+	 * Asserts that two references read from one message are to the same object, or to separate copies in acyclic mode. The contents are
+	 * compared by the callers.
+	 */
+	protected void assertShared(Object expected, Object actual)
+	{
+		if (config.isAcyclic())
+		{
+			assertNotSame(expected, actual);
+		}
+		else
+		{
+			assertSame(expected, actual);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package net.twagame.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.Node;
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes object trees in acyclic mode, where objects have no handles: shared objects are written as copies, and cycles are rejected by
+ * the cycle guard, which runs when assertions are enabled.
+ * 
+ * @author hadadzhi
+ */
+public class AcyclicTest extends AbstractRoundTripTest
+{
+	public AcyclicTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Before
+	public void acyclicOnly()
+	{
+		assumeTrue(config.isAcyclic());
+	}
+
+	@Test
+	public void sharedObjectsAreCopied()
+	{
+		Item item = new Item(1, "shared");
+		List<Item> items = new ArrayList<>(Arrays.asList(item, item, item));
+
+		@SuppressWarnings("unchecked")
+		List<Item> read = (List<Item>) roundTrip(items);
+
+		assertEquals(items, read);
+		assertNotSame(read.get(0), read.get(1));
+		assertNotSame(read.get(1), read.get(2));
+
+		// The same object in sibling positions is not a cycle
+		Node parent = new Node(0);
+		Node child = new Node(1);
+		parent.children.add(child);
+		parent.children.add(child);
+
+		Node readParent = (Node) roundTrip(parent);
+		assertEquals(2, readParent.children.size());
+		assertNotSame(readParent.children.get(0), readParent.children.get(1));
+	}
+
+	@Test
+	public void smallerThanWithHandles()
+	{
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+		{
+			items.add(new Item(i, "item" + i));
+		}
+
+		TWASerializationConfig withHandles = new TWASerializationConfig();
+		withHandles.setCompact(config.isCompact());
+		withHandles.setLengthPrefixed(config.isLengthPrefixed());
+
+		MemoryOutput withHandlesOut = new MemoryOutput();
+		new TWASerializer(withHandlesOut, withHandles).writeObject(items);
+
+		byte[] bytes = write(items);
+		assertTrue(bytes.length < withHandlesOut.size());
+		assertEquals(items, read(bytes));
+	}
+
+	@Test
+	public void cyclesAreRejected()
+	{
+		Node node = new Node(1);
+		node.children.add(new Node(2));
+		node.children.get(0).children.add(node);
+		assertCycle(node);
+
+		Object[] array = new Object[2];
+		array[1] = array;
+		assertCycle(array);
+
+		List<Object> list = new ArrayList<>();
+		list.add(Arrays.asList(1, list));
+		assertCycle(list);
+
+		Map<String, Object> map = new HashMap<>();
+		map.put("self", map);
+		assertCycle(map);
+	}
+
+	@Test
+	public void usableAfterACycle()
+	{
+		Node node = new Node(1);
+		node.children.add(node);
+		assertCycle(node);
+
+		// The objects being written when the cycle was found are forgotten
+		node.children.clear();
+		assertEquals(1, ((Node) roundTrip(node)).value);
+	}
+
+	private void assertCycle(Object o)
+	{
+		try
+		{
+			write(o);
+			fail("A cycle was written in acyclic mode");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected, assertions are enabled
+		}
+	}
+}
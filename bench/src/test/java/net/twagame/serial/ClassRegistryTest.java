@@ -0,0 +1,117 @@
+package net.twagame.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.Position;
+import net.twagame.serial.exception.NotTWASerializableException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+import net.twagame.serial.util.ClassRegistry;
+
+import org.junit.Test;
+
+/**
+ * Loads the {@link ClassRegistry} generated by the annotation processor for the test models, and writes objects of registered and
+ * unregistered classes with it.
+ * 
+ * @author hadadzhi
+ */
+public class ClassRegistryTest
+{
+	@Test
+	public void generatedRegistry()
+	{
+		ClassRegistry registry = ClassRegistry.load(getClass().getClassLoader());
+
+		assertEquals(1, registry.getId(Position.class));
+		assertSame(Position.class, registry.getClass(1));
+		assertEquals(-1, registry.getId(Item.class));
+		assertNull(registry.getClass(0));
+		assertEquals(2, registry.getIdLimit());
+	}
+
+	@Test
+	public void registeredClassesAreWrittenWithoutTheirNames()
+	{
+		TWASerializationConfig config = new TWASerializationConfig();
+		config.setRegistry(ClassRegistry.load(getClass().getClassLoader()));
+
+		Position position = new Position();
+		position.x = 3;
+		position.y = -4;
+		position.owner = new Item(1, "owner");
+
+		MemoryOutput out = new MemoryOutput();
+		new TWASerializer(out, config).writeObject(position);
+		String bytes = new String(out.getBytes(), StandardCharsets.ISO_8859_1);
+
+		assertFalse(bytes.contains(Position.class.getName()));
+		assertTrue(bytes.contains(Item.class.getName()));
+
+		// Both peers use equal registries
+		config.setRegistry(ClassRegistry.load(getClass().getClassLoader()));
+		Position read = (Position) new TWADeserializer(new MemoryInput(out.getBytes()), config).readObject();
+
+		assertEquals(3, read.x);
+		assertEquals(-4, read.y);
+		assertEquals(position.owner, read.owner);
+	}
+
+	@Test
+	public void registrationRequired()
+	{
+		ClassRegistry registry = ClassRegistry.load(getClass().getClassLoader());
+		registry.setRegistrationRequired(true);
+
+		TWASerializationConfig config = new TWASerializationConfig();
+		config.setRegistry(registry);
+		TWASerializer serializer = new TWASerializer(new MemoryOutput(), config);
+
+		serializer.writeObject(new Position());
+
+		try
+		{
+			serializer.writeObject(new Item(1, "unregistered"));
+			fail("An object of an unregistered class was written");
+		}
+		catch (NotTWASerializableException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void idsAreUnique()
+	{
+		ClassRegistry registry = new ClassRegistry();
+		registry.register(Position.class);
+
+		try
+		{
+			registry.register(Item.class, 1);
+			fail("An id was registered twice");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			registry.register(Item.class);
+			fail("A class without an id was registered with its id");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+	}
+}
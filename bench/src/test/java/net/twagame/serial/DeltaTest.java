@@ -0,0 +1,174 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.assertStateEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static net.twagame.serial.RoundTripModels.newState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Color;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.State;
+import net.twagame.serial.exception.NotTWASerializableException;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Test;
+
+/**
+ * Writes deltas against baseline objects with {@link TWASerializer#writeDelta(Object, Object)} and applies them with
+ * {@link TWADeserializer#readDeltaInto(Object)}.
+ * 
+ * @author hadadzhi
+ */
+public class DeltaTest extends AbstractRoundTripTest
+{
+	public DeltaTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Test
+	public void deltasAreSmallerThanTheObject()
+	{
+		State baseline = newState();
+		State current = baseline.copy();
+		current.x = -7;
+		current.label = "moved";
+
+		int fullSize = write(baseline).length;
+		byte[] delta = writeDelta(current, baseline);
+		byte[] unchanged = writeDelta(current, current.copy());
+
+		assertTrue(delta.length < fullSize);
+		assertTrue(unchanged.length < delta.length);
+
+		State target = baseline.copy();
+		assertSame(target, readDelta(delta, target));
+		assertStateEquals(current, target);
+
+		readDelta(unchanged, target);
+		assertStateEquals(current, target);
+	}
+
+	@Test
+	public void unchangedFieldsKeepTheirValues()
+	{
+		State baseline = newState();
+		State current = baseline.copy();
+		current.tick++;
+		current.label = null;
+		current.color = new Color(0x00FF00, "green");
+
+		// The fields of the target that are not in the delta are not overwritten, even if they differ from the baseline
+		State target = baseline.copy();
+		target.y = 42;
+		readDelta(writeDelta(current, baseline), target);
+
+		assertEquals(current.tick, target.tick);
+		assertEquals(null, target.label);
+		assertEquals(current.color, target.color);
+		assertEquals(current.x, target.x);
+		assertEquals(42, target.y);
+	}
+
+	@Test
+	public void collectionsAreRefilledInPlace()
+	{
+		Bag baseline = newBag();
+		Bag current = newBag();
+		current.items = new ArrayList<>(current.items);
+		current.items.add(new Item(100, "new"));
+		current.total++;
+
+		Bag target = newBag();
+		Object items = target.items;
+		readDelta(writeDelta(current, baseline), target);
+
+		assertSame(items, target.items);
+		assertBagEquals(current, target);
+	}
+
+	@Test
+	public void invalidObjects()
+	{
+		try
+		{
+			serializer.writeDelta(newState(), null);
+			fail("A delta against null was written");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			serializer.writeDelta(newState(), newBag());
+			fail("A delta against an object of another class was written");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			serializer.writeDelta(new ArrayList<Object>(), new ArrayList<Object>());
+			fail("A delta of a collection was written");
+		}
+		catch (NotTWASerializableException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void invalidTargets()
+	{
+		State state = newState();
+		byte[] delta = writeDelta(state, state.copy());
+
+		try
+		{
+			readDelta(delta, newBag());
+			fail("A delta was applied to an object of another class");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			readDelta(write(state), newState());
+			fail("An object was read as a delta");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+
+	private byte[] writeDelta(Object current, Object baseline)
+	{
+		out.reset();
+		serializer.resetHandles();
+		serializer.writeDelta(current, baseline);
+		return out.getBytes();
+	}
+
+	private Object readDelta(byte[] bytes, Object target)
+	{
+		in.reset(bytes);
+		deserializer.resetHandles();
+		deserializer.readDeltaInto(target);
+		assertEquals(0, in.remaining());
+		return target;
+	}
+}
@@ -0,0 +1,199 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.assertStateEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static net.twagame.serial.RoundTripModels.newState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.State;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes frames with a {@link TWAFrameEncoder} and feeds them to a {@link TWAFrameDecoder} in pieces, under each combination of the
+ * {@link TWASerializationConfig} settings.
+ * 
+ * @author hadadzhi
+ */
+public class FramesTest extends AbstractRoundTripTest
+{
+	private static final int MAGIC = 0x7E57;
+	private static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+	private TWAFrameEncoder encoder;
+	private TWAFrameDecoder decoder;
+
+	public FramesTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Before
+	public void createFramePair()
+	{
+		encoder = new TWAFrameEncoder(config, MAGIC);
+		decoder = new TWAFrameDecoder(config, MAGIC, MAX_FRAME_LENGTH);
+	}
+
+	@Test
+	public void framesFedOneByteAtATime()
+	{
+		Bag bag = newBag();
+		State baseline = newState();
+		State current = baseline.copy();
+		current.tick++;
+
+		encoder.writeObject(bag);
+		encoder.writeObject(bag);
+		encoder.writeDelta(current, baseline);
+		encoder.resetHandles();
+		encoder.writeObject(bag);
+		encoder.writeObject(null);
+
+		// Fed one byte at a time, so that every frame arrives in pieces
+		byte[] bytes = encoder.getOutput().getBytes();
+		List<Object> read = new ArrayList<>();
+		State target = baseline.copy();
+
+		for (int i = 0; i < bytes.length; i++)
+		{
+			decoder.feed(bytes, i, 1);
+
+			while (decoder.hasFrame())
+			{
+				read.add((read.size() == 2) ? decoder.readDeltaInto(target) : decoder.readObject());
+			}
+		}
+
+		assertEquals(5, read.size());
+		assertBagEquals(bag, (Bag) read.get(0));
+		assertBagEquals(bag, (Bag) read.get(1));
+		assertBagEquals(bag, (Bag) read.get(3));
+		assertShared(read.get(0), read.get(1));
+		assertNotSame(read.get(0), read.get(3));
+		assertStateEquals(current, target);
+		assertEquals(null, read.get(4));
+		assertEquals(0, decoder.getDroppedFrames());
+	}
+
+	@Test
+	public void bytesNeeded()
+	{
+		Bag bag = newBag();
+		encoder.writeObject(bag);
+		byte[] bytes = encoder.getOutput().getBytes();
+
+		assertEquals(TWAFrameEncoder.HEADER_SIZE, decoder.bytesNeeded());
+
+		decoder.feed(bytes, 0, 3);
+		assertEquals(TWAFrameEncoder.HEADER_SIZE - 3, decoder.bytesNeeded());
+
+		// Once the header has arrived, the rest of the frame is counted
+		decoder.feed(ByteBuffer.wrap(bytes, 3, TWAFrameEncoder.HEADER_SIZE));
+		assertEquals(bytes.length - TWAFrameEncoder.HEADER_SIZE - 3, decoder.bytesNeeded());
+		assertFalse(decoder.hasFrame());
+
+		try
+		{
+			decoder.readObject();
+			fail("An incomplete frame was read");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+
+		ByteBuffer rest = ByteBuffer.wrap(bytes, TWAFrameEncoder.HEADER_SIZE + 3, bytes.length - TWAFrameEncoder.HEADER_SIZE - 3);
+		decoder.feed(rest);
+		assertEquals(0, rest.remaining());
+		assertEquals(0, decoder.bytesNeeded());
+
+		assertBagEquals(bag, (Bag) decoder.readObject());
+		assertEquals(TWAFrameEncoder.HEADER_SIZE, decoder.bytesNeeded());
+	}
+
+	@Test
+	public void readObjectInto()
+	{
+		Bag bag = newBag();
+		Bag target = new Bag();
+		encoder.writeObject(bag);
+		decode();
+
+		assertSame(target, decoder.readObjectInto(target));
+		assertBagEquals(bag, target);
+	}
+
+	@Test
+	public void wrongMagicIsDropped()
+	{
+		TWAFrameEncoder other = new TWAFrameEncoder(config, MAGIC + 1);
+		other.writeObject(newBag());
+		byte[] bytes = other.getOutput().getBytes();
+		decoder.feed(bytes, 0, bytes.length);
+
+		encoder.writeObject("valid");
+		decode();
+
+		assertTrue(decoder.hasFrame());
+		assertEquals(1, decoder.getDroppedFrames());
+		assertEquals("valid", decoder.readObject());
+		assertFalse(decoder.hasFrame());
+	}
+
+	@Test
+	public void largeFrames()
+	{
+		// A frame larger than the buffer of the decoder, followed by small ones
+		int[] ints = new int[MAX_FRAME_LENGTH / 8];
+		for (int i = 0; i < ints.length; i++)
+		{
+			ints[i] = i * 31;
+		}
+
+		encoder.writeObject(ints);
+		encoder.writeObject("small");
+		encoder.writeObject("small");
+		decode();
+
+		assertEquals(ints.length, ((int[]) decoder.readObject()).length);
+		assertEquals("small", decoder.readObject());
+		assertEquals("small", decoder.readObject());
+
+		// A frame longer than the maximum can not be skipped
+		encoder.writeObject(new int[MAX_FRAME_LENGTH / 4]);
+		decode();
+
+		try
+		{
+			decoder.hasFrame();
+			fail("A frame longer than the maximum was accepted");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+
+	/**
+	 * Feeds the frames written by the encoder to the decoder in one piece.
+	 */
+	private void decode()
+	{
+		decoder.feed(encoder.getOutput().getBuffer(), 0, encoder.getOutput().size());
+		encoder.clear();
+	}
+}
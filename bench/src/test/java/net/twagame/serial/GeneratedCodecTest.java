@@ -0,0 +1,114 @@
+package net.twagame.serial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+import net.twagame.serial.util.ClassDescriptor;
+import net.twagame.serial.util.ClassDescriptorsCache;
+import net.twagame.serial.util.FieldCodec;
+import net.twagame.serial.util.GeneratedCodec;
+
+import org.junit.Test;
+
+/**
+ * Checks that the codecs generated by the annotation processor for the test models are found and used by the {@link ClassDescriptor}s,
+ * and that the fields they do not handle fall back to the built-in codecs.
+ * 
+ * @author hadadzhi
+ */
+public class GeneratedCodecTest
+{
+	/**
+	 * A class with a private field, which the generated codec can not access.
+	 */
+	@TWASerializable
+	public static class Mixed
+	{
+		public int visible;
+		private String hidden;
+
+		public String getHidden()
+		{
+			return hidden;
+		}
+
+		public void setHidden(String hidden)
+		{
+			this.hidden = hidden;
+		}
+	}
+
+	@Test
+	public void codecClassName()
+	{
+		assertEquals("pkg.Outer_InnerTWACodec", GeneratedCodec.codecClassName("pkg.Outer$Inner"));
+		assertEquals("pkg.TopTWACodec", GeneratedCodec.codecClassName("pkg.Top"));
+		assertEquals("DefaultTWACodec", GeneratedCodec.codecClassName("Default"));
+	}
+
+	@Test
+	public void generatedCodecsAreFound() throws ClassNotFoundException
+	{
+		GeneratedCodec codec = GeneratedCodec.forClass(Item.class);
+
+		assertEquals(generatedClass(Item.class), codec.getClass());
+		assertSame(codec, GeneratedCodec.forClass(Item.class));
+		assertNull(GeneratedCodec.forClass(String.class));
+		assertNull(GeneratedCodec.forClass(GeneratedCodecTest.class));
+	}
+
+	@Test
+	public void descriptorsUseTheGeneratedFieldCodecs() throws ClassNotFoundException
+	{
+		ClassDescriptor itemDesc = ClassDescriptorsCache.getInstance().forClass(Item.class);
+
+		for (FieldCodec codec : itemDesc.getFieldCodecs())
+		{
+			assertEquals(generatedClass(Item.class), codec.getClass().getEnclosingClass());
+		}
+
+		ClassDescriptor mixedDesc = ClassDescriptorsCache.getInstance().forClass(Mixed.class);
+		assertEquals(2, mixedDesc.getFieldCodecs().length);
+
+		for (FieldCodec codec : mixedDesc.getFieldCodecs())
+		{
+			Class<?> enclosingClass = codec.getClass().getEnclosingClass();
+
+			if (codec.getFieldDescriptor().getName().equals("hidden"))
+			{
+				assertNotSame(generatedClass(Mixed.class), enclosingClass);
+			}
+			else
+			{
+				assertEquals(generatedClass(Mixed.class), enclosingClass);
+			}
+		}
+	}
+
+	@Test
+	public void roundTrip()
+	{
+		Mixed mixed = new Mixed();
+		mixed.visible = -5;
+		mixed.setHidden("hidden");
+
+		MemoryOutput out = new MemoryOutput();
+		new TWASerializer(out, new TWASerializationConfig()).writeObject(mixed);
+
+		Mixed read = (Mixed) new TWADeserializer(new MemoryInput(out.getBytes()), new TWASerializationConfig()).readObject();
+
+		assertEquals(mixed.visible, read.visible);
+		assertEquals(mixed.getHidden(), read.getHidden());
+	}
+
+	private static Class<?> generatedClass(Class<?> clazz) throws ClassNotFoundException
+	{
+		return Class.forName(GeneratedCodec.codecClassName(clazz.getName()));
+	}
+}
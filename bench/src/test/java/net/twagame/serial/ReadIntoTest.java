@@ -0,0 +1,158 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.assertStateEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static net.twagame.serial.RoundTripModels.newState;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Color;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.Position;
+import net.twagame.serial.RoundTripModels.State;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Test;
+
+/**
+ * Reads objects into existing instances with {@link TWADeserializer#readObjectInto(Object)}, reusing the objects and arrays they
+ * reference.
+ * 
+ * @author hadadzhi
+ */
+public class ReadIntoTest extends AbstractRoundTripTest
+{
+	public ReadIntoTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Test
+	public void readInto()
+	{
+		Bag bag = newBag();
+		Bag target = new Bag();
+		target.items.add(new Item(99, "stale"));
+
+		assertSame(target, readInto(write(bag), target));
+		assertBagEquals(bag, target);
+	}
+
+	@Test
+	public void referencedObjectsAndArraysAreReused()
+	{
+		Position position = new Position();
+		position.x = 3;
+		position.y = -4;
+		position.owner = new Item(1, "owner");
+		byte[] bytes = write(position);
+
+		Position target = new Position();
+		Item owner = new Item();
+		target.owner = owner;
+
+		readInto(bytes, target);
+		assertSame(owner, target.owner);
+		assertEquals(position.owner, owner);
+		assertEquals(position.y, target.y);
+
+		// Read again into the same graph
+		owner.id = -1;
+		readInto(bytes, target);
+		assertSame(owner, target.owner);
+		assertEquals(position.owner, owner);
+
+		Bag bag = newBag();
+		bytes = write(bag);
+
+		Bag bagTarget = new Bag();
+		int[] ints = new int[bag.ints.length];
+		bagTarget.ints = ints;
+
+		readInto(bytes, bagTarget);
+		assertSame(ints, bagTarget.ints);
+		assertBagEquals(bag, bagTarget);
+
+		// An array of another length is replaced
+		bagTarget.ints = new int[bag.ints.length + 1];
+		readInto(bytes, bagTarget);
+		assertArrayEquals(bag.ints, bagTarget.ints);
+	}
+
+	@Test
+	public void objectArraysReuseTheirElements()
+	{
+		Item[] items = { new Item(1, "one"), new Item(2, "two"), null, new Item(4, null) };
+		byte[] bytes = write(items);
+
+		Item[] target = { new Item(), null, new Item(), new Item() };
+		Item first = target[0];
+		Item last = target[3];
+
+		assertSame(target, readInto(bytes, target));
+		assertArrayEquals(items, target);
+		assertSame(first, target[0]);
+		assertSame(last, target[3]);
+		assertNotNull(target[1]);
+
+		// An array of another length can not be read into
+		try
+		{
+			readInto(bytes, new Item[items.length - 1]);
+			fail("An array was read into an array of another length");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void immutableObjectsAreReplaced()
+	{
+		State state = newState();
+		State target = new State();
+		Color color = new Color(state.color.rgb, state.color.name);
+		target.color = color;
+
+		readInto(write(state), target);
+		assertStateEquals(state, target);
+		assertNotSame(color, target.color);
+	}
+
+	@Test
+	public void targetOfAnotherClass()
+	{
+		byte[] bytes = write(newBag());
+
+		try
+		{
+			readInto(bytes, newState());
+			fail("A bag was read into a state");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+
+		// The deserializer is still usable
+		Bag target = new Bag();
+		readInto(bytes, target);
+		assertBagEquals(newBag(), target);
+	}
+
+	private Object readInto(byte[] bytes, Object target)
+	{
+		in.reset(bytes);
+		deserializer.resetHandles();
+		deserializer.readObjectInto(target);
+		assertEquals(0, in.remaining());
+		return target;
+	}
+}
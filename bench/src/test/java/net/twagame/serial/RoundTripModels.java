@@ -0,0 +1,249 @@
+package net.twagame.serial;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import net.twagame.serial.annotation.TWAElementType;
+import net.twagame.serial.annotation.TWASerializable;
+
+/**
+ * The classes written by the round-trip tests, with factories of filled instances and assertions comparing them.
+ * 
+ * @author hadadzhi
+ */
+public final class RoundTripModels
+{
+	@TWASerializable
+	public static class Item
+	{
+		public int id;
+		public String name;
+		public long stamp;
+		public double weight;
+
+		public Item()
+		{
+		}
+
+		public Item(int id, String name)
+		{
+			this.id = id;
+			this.name = name;
+			this.stamp = -1000000000000L * id;
+			this.weight = id / 3.0;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Item))
+			{
+				return false;
+			}
+
+			Item other = (Item) o;
+			return (id == other.id) && Objects.equals(name, other.name) && (stamp == other.stamp) && (weight == other.weight);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return id;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Item(" + id + ", " + name + ")";
+		}
+	}
+
+	@TWASerializable(immutable = true)
+	public static class Color
+	{
+		public int rgb;
+		public String name;
+
+		public Color()
+		{
+		}
+
+		public Color(int rgb, String name)
+		{
+			this.rgb = rgb;
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return (o instanceof Color) && (rgb == ((Color) o).rgb) && Objects.equals(name, ((Color) o).name);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return rgb;
+		}
+	}
+
+	@TWASerializable
+	public static class Node
+	{
+		public int value;
+		public List<Node> children = new ArrayList<>();
+
+		public Node()
+		{
+		}
+
+		public Node(int value)
+		{
+			this.value = value;
+		}
+	}
+
+	@TWASerializable
+	public static class Bag
+	{
+		public Item first;
+		public List<Item> items = new ArrayList<>();
+		public Map<String, Item> byName = new HashMap<>();
+		public Map<Integer, Long> counts = new HashMap<>();
+		public List<Integer> numbers = new ArrayList<>();
+		public List<Color> colors = new ArrayList<>();
+		public List<Object> mixed = new ArrayList<>();
+
+		@TWAElementType(Item.class)
+		public List<Item> declared = new ArrayList<>();
+
+		@TWAElementType(key = Integer.class, value = Long.class)
+		public Map<Integer, Long> declaredCounts = new HashMap<>();
+
+		public int[] ints;
+		public int total;
+	}
+
+	@TWASerializable
+	public static class State
+	{
+		public int x;
+		public int y;
+		public long tick;
+		public double speed;
+		public String label;
+		public Color color;
+
+		public State copy()
+		{
+			State copy = new State();
+			copy.x = x;
+			copy.y = y;
+			copy.tick = tick;
+			copy.speed = speed;
+			copy.label = label;
+			copy.color = color;
+			return copy;
+		}
+	}
+
+	/**
+	 * The class with an id, see {@link ClassRegistryTest}.
+	 */
+	@TWASerializable(id = 1)
+	public static class Position
+	{
+		public int x;
+		public int y;
+		public Item owner;
+	}
+
+	public static Bag newBag()
+	{
+		Bag bag = new Bag();
+
+		for (int i = 1; i <= 4; i++)
+		{
+			bag.items.add(new Item(i, "item" + i));
+		}
+		bag.items.add(2, bag.items.get(0));
+		bag.first = bag.items.get(0);
+		bag.byName.put("item1", bag.items.get(0));
+		bag.byName.put("item4", bag.items.get(4));
+		bag.declared.add(bag.items.get(1));
+		bag.declared.add(new Item(5, null));
+
+		for (int i = -3; i <= 3; i++)
+		{
+			bag.counts.put(i * 1000, Long.valueOf(i * 3000000000L));
+			bag.declaredCounts.put(-i, Long.valueOf(Long.MIN_VALUE + i));
+			bag.numbers.add(Integer.valueOf(i * 100000));
+		}
+		bag.numbers.add(Integer.valueOf(Integer.MAX_VALUE));
+
+		bag.colors.add(new Color(0xFF0000, "red"));
+		bag.colors.add(new Color(0x00FF00, "green"));
+		bag.colors.add(new Color(0xFF0000, "red"));
+
+		bag.mixed.add("text");
+		bag.mixed.add(new Item(6, "six"));
+		bag.mixed.add(Long.valueOf(-1));
+
+		bag.ints = new int[] { 1, -1, Integer.MIN_VALUE, 0 };
+		bag.total = 12345;
+
+		return bag;
+	}
+
+	public static State newState()
+	{
+		State state = new State();
+		state.x = 10;
+		state.y = -20;
+		state.tick = 1L << 40;
+		state.speed = 2.5;
+		state.label = "player";
+		state.color = new Color(0x0000FF, "blue");
+		return state;
+	}
+
+	public static void assertBagEquals(Bag expected, Bag actual)
+	{
+		assertEquals(expected.first, actual.first);
+		assertEquals(expected.items, actual.items);
+		assertEquals(expected.byName, actual.byName);
+		assertEquals(expected.counts, actual.counts);
+		assertEquals(expected.numbers, actual.numbers);
+		assertEquals(expected.colors, actual.colors);
+		assertEquals(expected.mixed, actual.mixed);
+		assertEquals(expected.declared, actual.declared);
+		assertEquals(expected.declaredCounts, actual.declaredCounts);
+		assertArrayEquals(expected.ints, actual.ints);
+		assertEquals(expected.total, actual.total);
+	}
+
+	public static void assertStateEquals(State expected, State actual)
+	{
+		assertEquals(expected.x, actual.x);
+		assertEquals(expected.y, actual.y);
+		assertEquals(expected.tick, actual.tick);
+		assertEquals(expected.speed, actual.speed, 0.0);
+		assertEquals(expected.label, actual.label);
+		assertEquals(expected.color, actual.color);
+		assertFalse(actual.color == null);
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private RoundTripModels()
+	{
+	}
+}
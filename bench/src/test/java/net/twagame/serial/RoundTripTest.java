@@ -0,0 +1,145 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION_TYPED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.Node;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Test;
+
+/**
+ * Writes and reads back collections and maps whose elements are of one class, which are written with the element type once, under each
+ * combination of the {@link TWASerializationConfig} settings, and the collections and maps that are written as usual.
+ * 
+ * @author hadadzhi
+ */
+public class RoundTripTest extends AbstractRoundTripTest
+{
+	public RoundTripTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Test
+	public void typedCollectionsAndMaps()
+	{
+		Bag bag = newBag();
+		Bag read = (Bag) roundTrip(bag);
+
+		assertBagEquals(bag, read);
+		assertShared(read.first, read.items.get(0));
+		assertShared(read.items.get(0), read.items.get(2));
+		assertShared(read.first, read.byName.get("item1"));
+		assertShared(read.items.get(1), read.declared.get(0));
+	}
+
+	@Test
+	public void elementTypeIsWrittenOnce()
+	{
+		List<Integer> numbers = new ArrayList<>(Arrays.asList(1, 2, 3));
+		byte[] three = write(numbers);
+		numbers.add(4);
+		byte[] four = write(numbers);
+
+		// Boxed numbers take no tags, and ints are varints in compact mode
+		assertEquals(TAG_COLLECTION_TYPED, three[0]);
+		assertEquals(config.isCompact() ? 1 : 4, four.length - three.length);
+		assertEquals(numbers, read(four));
+
+		// Objects take no tags and class names
+		List<Item> items = new ArrayList<>(Arrays.asList(new Item(1, "a"), new Item(2, "b")));
+		byte[] two = write(items);
+		assertEquals(items, read(two));
+
+		// Read in the order they were written, since the symbols of a message may be defined by earlier ones
+		items.add(new Item(3, "c"));
+		byte[] more = write(items);
+		assertEquals(items, read(more));
+		assertTrue((more.length - two.length) < write(new Item(3, "c")).length);
+	}
+
+	@Test
+	public void typedElementsReferringToEarlierAndNestedObjects()
+	{
+		// The third node is first written as a child of the first one, so its handle is below the last handle when the list reaches it
+		Node n0 = new Node(0);
+		Node n1 = new Node(1);
+		Node n2 = new Node(2);
+		n0.children.add(n2);
+		n1.children.add(n0);
+
+		List<Node> nodes = new ArrayList<>(Arrays.asList(n0, n1, n2, n1));
+
+		@SuppressWarnings("unchecked")
+		List<Node> read = (List<Node>) roundTrip(nodes);
+
+		assertEquals(4, read.size());
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(i, read.get(i).value);
+		}
+		assertEquals(2, read.get(0).children.get(0).value);
+		assertEquals(0, read.get(1).children.get(0).value);
+		assertShared(read.get(2), read.get(0).children.get(0));
+		assertShared(read.get(0), read.get(1).children.get(0));
+		assertShared(read.get(1), read.get(3));
+	}
+
+	@Test
+	public void typedElementRepeatingTheLastHandle()
+	{
+		// Without nested objects, the handle of a repeated element equals the last handle read
+		Item p = new Item(7, null);
+		Item q = new Item(8, null);
+		List<Item> items = new ArrayList<>(Arrays.asList(p, p, q, q, p));
+
+		@SuppressWarnings("unchecked")
+		List<Item> read = (List<Item>) roundTrip(items);
+
+		assertEquals(items, read);
+		assertShared(read.get(0), read.get(1));
+		assertShared(read.get(2), read.get(3));
+		assertShared(read.get(0), read.get(4));
+	}
+
+	@Test
+	public void untypedCollectionsWithNullsAndMixedClasses()
+	{
+		Bag bag = newBag();
+		bag.items.add(null);
+		bag.byName.put("none", null);
+		bag.mixed.add(Integer.valueOf(Integer.MIN_VALUE));
+		bag.mixed.add(null);
+		bag.numbers.add(null);
+
+		assertBagEquals(bag, (Bag) roundTrip(bag));
+	}
+
+	@Test
+	public void declaredElementTypeRejectsOtherElements()
+	{
+		Bag bag = newBag();
+		bag.declared.add(null);
+
+		try
+		{
+			serializer.writeObject(bag);
+			fail("A null element of a declared element type was written");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+}
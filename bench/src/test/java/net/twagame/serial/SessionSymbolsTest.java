@@ -0,0 +1,199 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.util.TWASerializationConstants.TAG_STRING;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_DEF;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_RESET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import net.twagame.serial.RoundTripModels.Color;
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Writes strings and immutable objects through the session symbol table, and resets and resynchronizes the tables of both peers.
+ * 
+ * @author hadadzhi
+ */
+@RunWith(Parameterized.class)
+public class SessionSymbolsTest
+{
+	private static final int SYMBOL_TABLE_SIZE = 4;
+	private static final int MAGIC = 0x7E57;
+
+	@Parameters(name = "compact={0}")
+	public static Collection<Object[]> configs()
+	{
+		return Arrays.asList(new Object[][] { { false }, { true } });
+	}
+
+	private final TWASerializationConfig config = new TWASerializationConfig();
+
+	private MemoryOutput out;
+	private MemoryInput in;
+	private TWASerializer serializer;
+	private TWADeserializer deserializer;
+
+	public SessionSymbolsTest(boolean compact)
+	{
+		config.setCompact(compact);
+		config.setSymbolTableSize(SYMBOL_TABLE_SIZE);
+	}
+
+	@Before
+	public void createPair()
+	{
+		out = new MemoryOutput();
+		in = new MemoryInput(new byte[0]);
+		serializer = new TWASerializer(out, config);
+		deserializer = new TWADeserializer(in, config);
+	}
+
+	@Test
+	public void symbolsAreWrittenInFullOnce()
+	{
+		Color red = new Color(0xFF0000, "red");
+		byte[] first = write(red);
+		byte[] second = write(new Color(0xFF0000, "red"));
+
+		assertEquals(TAG_SYMBOL_DEF, first[0]);
+		assertEquals(config.isCompact() ? 2 : 5, second.length);
+		assertEquals(red, read(first));
+		assertEquals(red, read(second));
+
+		// Evicted symbols are written in full again
+		for (int i = 0; i < (2 * SYMBOL_TABLE_SIZE); i++)
+		{
+			assertEquals("symbol" + i, read(write("symbol" + i)));
+		}
+
+		byte[] third = write(red);
+		assertEquals(first.length, third.length);
+		assertEquals(red, read(third));
+	}
+
+	@Test
+	public void symbolReset()
+	{
+		byte[] first = write("text");
+		assertEquals("text", read(first));
+
+		out.reset();
+		serializer.resetHandles();
+		serializer.writeSymbolReset();
+		serializer.writeObject("text");
+		byte[] afterReset = out.getBytes();
+
+		assertEquals(TAG_SYMBOL_RESET, afterReset[0]);
+		assertEquals(first.length + 1, afterReset.length);
+		assertEquals("text", read(afterReset));
+
+		// A reference to a slot that was not defined after the reset fails
+		byte[] reference = write("text");
+		byte[] stale = new byte[reference.length + 1];
+		stale[0] = TAG_SYMBOL_RESET;
+		System.arraycopy(reference, 0, stale, 1, reference.length);
+
+		try
+		{
+			read(stale);
+			fail("A symbol was read after the symbol table was reset");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void framesResumeAfterADroppedFrame()
+	{
+		TWAFrameEncoder encoder = new TWAFrameEncoder(config, MAGIC);
+		TWAFrameDecoder decoder = new TWAFrameDecoder(config, MAGIC, TWAFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+
+		for (int i = 0; i < SYMBOL_TABLE_SIZE; i++)
+		{
+			encoder.writeObject("old" + i);
+		}
+		decode(encoder, decoder);
+
+		// The slots are redefined by a frame that gets corrupted, so the decoder still holds the old symbols
+		int corrupt = encoder.getOutput().size();
+		for (int i = 0; i < SYMBOL_TABLE_SIZE; i++)
+		{
+			encoder.writeObject("new" + i);
+		}
+		assertEquals(TAG_STRING, encoder.getOutput().getBuffer()[corrupt + TWAFrameEncoder.HEADER_SIZE + 1]);
+		Arrays.fill(encoder.getOutput().getBuffer(), corrupt + TWAFrameEncoder.HEADER_SIZE + 2, corrupt + TWAFrameEncoder.HEADER_SIZE
+			+ (config.isCompact() ? 3 : 6), (byte) 0x7F);
+
+		encoder.writeObject("new0");
+		encoder.writeObject("new1");
+		assertEquals(0, decode(encoder, decoder).size());
+
+		// Every frame fails instead of decoding to the old symbols, until the encoder resets
+		assertEquals(SYMBOL_TABLE_SIZE + 2, decoder.getDroppedFrames());
+
+		encoder.resetHandles();
+		encoder.resetSymbols();
+		encoder.writeObject("new0");
+		encoder.writeObject("new0");
+
+		assertEquals(Arrays.<Object> asList("new0", "new0"), decode(encoder, decoder));
+		assertEquals(SYMBOL_TABLE_SIZE + 2, decoder.getDroppedFrames());
+	}
+
+	/**
+	 * Feeds the frames written by the encoder to the decoder, and returns the objects of the frames that were not dropped.
+	 */
+	private static List<Object> decode(TWAFrameEncoder encoder, TWAFrameDecoder decoder)
+	{
+		decoder.feed(encoder.getOutput().getBuffer(), 0, encoder.getOutput().size());
+		encoder.clear();
+
+		List<Object> read = new ArrayList<>();
+
+		while (decoder.hasFrame())
+		{
+			try
+			{
+				read.add(decoder.readObject());
+			}
+			catch (TWASerializationException e)
+			{
+				// Dropped
+			}
+		}
+
+		return read;
+	}
+
+	private byte[] write(Object o)
+	{
+		out.reset();
+		serializer.resetHandles();
+		serializer.writeObject(o);
+		return out.getBytes();
+	}
+
+	private Object read(byte[] bytes)
+	{
+		in.reset(bytes);
+		deserializer.resetHandles();
+		Object o = deserializer.readObject();
+		assertEquals(0, in.remaining());
+		return o;
+	}
+}
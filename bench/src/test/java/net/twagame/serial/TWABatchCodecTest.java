@@ -0,0 +1,236 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Encodes and decodes batches with a {@link TWABatchCodec}, in the calling thread and on a parallel pool, and decodes corrupt batch
+ * headers.
+ * 
+ * @author hadadzhi
+ */
+public class TWABatchCodecTest extends AbstractRoundTripTest
+{
+	private static final int CHUNK_SIZE = 3;
+	private static final int BATCH_SIZE = 20;
+
+	private ForkJoinPool pool;
+
+	public TWABatchCodecTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Before
+	public void createPool()
+	{
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void shutdownPool()
+	{
+		pool.shutdown();
+	}
+
+	@Test
+	public void invalidArguments()
+	{
+		try
+		{
+			new TWABatchCodec(new TWASerializationConfig(), pool, 0);
+			fail("A chunk size of 0 was accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			new TWABatchCodec(config, pool, CHUNK_SIZE);
+			assertEquals(0, config.getSymbolTableSize());
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(8, config.getSymbolTableSize());
+		}
+	}
+
+	@Test
+	public void encodeAndDecode()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		List<Object> batch = newBatch();
+		TWABatchCodec codec = new TWABatchCodec(config, pool, CHUNK_SIZE);
+		byte[] bytes = codec.encode(batch);
+
+		assertBatchEquals(batch, codec.decode(bytes));
+
+		// The same payload is encoded in the calling thread, and the decoder takes the chunk size from the payload
+		ForkJoinPool sequential = new ForkJoinPool(1);
+
+		try
+		{
+			TWABatchCodec sequentialCodec = new TWABatchCodec(config, sequential, BATCH_SIZE);
+			assertArrayEquals(bytes, new TWABatchCodec(config, sequential, CHUNK_SIZE).encode(batch));
+			assertBatchEquals(batch, sequentialCodec.decode(bytes));
+		}
+		finally
+		{
+			sequential.shutdown();
+		}
+
+		// A payload in the middle of an array
+		byte[] padded = new byte[bytes.length + 6];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		assertBatchEquals(batch, codec.decode(padded, 3, bytes.length));
+	}
+
+	@Test
+	public void emptyBatch()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		TWABatchCodec codec = new TWABatchCodec(config, pool, CHUNK_SIZE);
+		assertEquals(Collections.emptyList(), codec.decode(codec.encode(Collections.emptyList())));
+	}
+
+	@Test
+	public void objectsAreNotShared()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		Item item = new Item(1, "item");
+		List<Object> batch = new ArrayList<>();
+		for (int i = 0; i < BATCH_SIZE; i++)
+		{
+			batch.add(item);
+		}
+
+		TWABatchCodec codec = new TWABatchCodec(config, pool, CHUNK_SIZE);
+		List<Object> read = codec.decode(codec.encode(batch));
+
+		assertEquals(batch, read);
+		for (int i = 1; i < BATCH_SIZE; i++)
+		{
+			assertNotSame(read.get(0), read.get(i));
+		}
+	}
+
+	@Test
+	public void corruptHeaders()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		TWABatchCodec codec = new TWABatchCodec(config, pool, CHUNK_SIZE);
+		byte[] message = codec.encode(Collections.singletonList(new Item(1, "item")));
+		int length = message.length - 12;
+
+		assertCorrupt(codec, header(-1, CHUNK_SIZE));
+		assertCorrupt(codec, header(Integer.MAX_VALUE, CHUNK_SIZE));
+		assertCorrupt(codec, header(0, 0));
+		assertCorrupt(codec, header(1, CHUNK_SIZE, -1));
+		assertCorrupt(codec, header(1, CHUNK_SIZE, length + 1));
+		assertCorrupt(codec, new byte[7]);
+
+		// A message shorter than its contents
+		MemoryOutput truncated = header(1, CHUNK_SIZE, length - 1);
+		truncated.write(message, 12, length - 1);
+		assertCorrupt(codec, truncated);
+
+		// A message longer than its contents
+		MemoryOutput padded = header(1, CHUNK_SIZE, length + 1);
+		padded.write(message, 12, length);
+		padded.write(0);
+		assertCorrupt(codec, padded);
+	}
+
+	private static List<Object> newBatch()
+	{
+		List<Object> batch = new ArrayList<>();
+
+		for (int i = 0; i < BATCH_SIZE; i++)
+		{
+			switch (i % 3)
+			{
+				case 0:
+					batch.add(newBag());
+					break;
+				case 1:
+					batch.add(new Item(i, "item" + i));
+					break;
+				default:
+					batch.add(null);
+					break;
+			}
+		}
+
+		return batch;
+	}
+
+	private static void assertBatchEquals(List<Object> expected, List<Object> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++)
+		{
+			if (expected.get(i) instanceof Bag)
+			{
+				assertBagEquals((Bag) expected.get(i), (Bag) actual.get(i));
+			}
+			else
+			{
+				assertEquals(expected.get(i), actual.get(i));
+			}
+		}
+	}
+
+	private static MemoryOutput header(int count, int chunkSize, int... lengths)
+	{
+		MemoryOutput out = new MemoryOutput();
+		out.writeInt(count);
+		out.writeInt(chunkSize);
+		out.writeInts(lengths, 0, lengths.length);
+		return out;
+	}
+
+	private static void assertCorrupt(TWABatchCodec codec, MemoryOutput payload)
+	{
+		assertCorrupt(codec, payload.getBytes());
+	}
+
+	private static void assertCorrupt(TWABatchCodec codec, byte[] payload)
+	{
+		try
+		{
+			codec.decode(payload);
+			fail("A corrupt batch was decoded");
+		}
+		catch (TWASerializationException e)
+		{
+			assertTrue(e.getMessage() != null);
+		}
+	}
+}
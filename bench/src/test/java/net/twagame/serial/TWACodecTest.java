@@ -0,0 +1,173 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Test;
+
+/**
+ * Encodes and decodes messages with a {@link TWACodec}, from one thread and from several threads sharing the codec.
+ * 
+ * @author hadadzhi
+ */
+public class TWACodecTest extends AbstractRoundTripTest
+{
+	private static final int THREADS = 4;
+	private static final int MESSAGES_PER_THREAD = 200;
+
+	public TWACodecTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Test
+	public void symbolTableIsRejected()
+	{
+		try
+		{
+			new TWACodec(config);
+			assertEquals(0, config.getSymbolTableSize());
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(8, config.getSymbolTableSize());
+		}
+	}
+
+	@Test
+	public void encodeAndDecode()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		Bag bag = newBag();
+		TWACodec codec = new TWACodec(config);
+		byte[] bytes = codec.encode(bag);
+
+		// The same message as the one written by a serializer
+		assertArrayEquals(write(bag), bytes);
+		assertBagEquals(bag, (Bag) codec.decode(bytes));
+		assertNull(codec.decode(codec.encode(null)));
+
+		// A message in the middle of an array
+		byte[] padded = new byte[bytes.length + 6];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		assertBagEquals(bag, (Bag) codec.decode(padded, 3, bytes.length));
+	}
+
+	@Test
+	public void encodeIntoABuffer()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		Bag bag = newBag();
+		TWACodec codec = new TWACodec(config);
+		byte[] bytes = codec.encode(bag);
+
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+		buffer.position(3);
+		assertEquals(bytes.length, codec.encode(bag, buffer));
+		assertEquals(buffer.capacity(), buffer.position());
+		assertArrayEquals(bytes, Arrays.copyOfRange(buffer.array(), 3, buffer.capacity()));
+
+		// Nothing is written when the message does not fit
+		ByteBuffer small = ByteBuffer.allocate(bytes.length - 1);
+
+		try
+		{
+			codec.encode(bag, small);
+			fail("A message was written past the limit of the buffer");
+		}
+		catch (BufferOverflowException e)
+		{
+			assertEquals(0, small.position());
+		}
+	}
+
+	@Test
+	public void usableAfterAFailure()
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		Bag bag = newBag();
+		TWACodec codec = new TWACodec(config);
+		byte[] bytes = codec.encode(bag);
+
+		try
+		{
+			codec.decode(bytes, 0, bytes.length / 2);
+			fail("A truncated message was decoded");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+
+		assertBagEquals(bag, (Bag) codec.decode(bytes));
+		assertArrayEquals(bytes, codec.encode(bag));
+	}
+
+	@Test
+	public void concurrentCalls() throws Exception
+	{
+		assumeTrue(config.getSymbolTableSize() == 0);
+
+		final TWACodec codec = new TWACodec(config);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		try
+		{
+			List<Future<?>> results = new ArrayList<>();
+
+			for (int t = 0; t < THREADS; t++)
+			{
+				final int thread = t;
+
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call()
+					{
+						for (int i = 0; i < MESSAGES_PER_THREAD; i++)
+						{
+							Bag bag = newBag();
+							bag.total = (thread * MESSAGES_PER_THREAD) + i;
+							Item item = new Item(bag.total, "item" + bag.total);
+
+							assertBagEquals(bag, (Bag) codec.decode(codec.encode(bag)));
+							assertEquals(item, codec.decode(codec.encode(item)));
+						}
+
+						return null;
+					}
+				}));
+			}
+
+			for (Future<?> result : results)
+			{
+				result.get();
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_INT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_REFERENCE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Feeds corrupt frames to a {@link TWAFrameDecoder} and checks that each one is dropped with a {@link TWASerializationException}, and
+ * that the frames after it are still decoded.
+ * 
+ * @author hadadzhi
+ */
+public class TWAFrameDecoderTest
+{
+	private static final int MAGIC = 0x7E57;
+
+	private TWASerializationConfig config;
+	private TWAFrameDecoder decoder;
+
+	@Before
+	public void createDecoder()
+	{
+		config = new TWASerializationConfig();
+		decoder = new TWAFrameDecoder(config, MAGIC, TWAFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	@Test
+	public void handleAboveTheNextHandle() throws IOException
+	{
+		assertDropped(string(0x7fffffff, "text"));
+	}
+
+	@Test
+	public void negativeHandle() throws IOException
+	{
+		assertDropped(string(-1, "text"));
+	}
+
+	@Test
+	public void skippedHandle() throws IOException
+	{
+		assertDropped(string(1, "text"));
+	}
+
+	@Test
+	public void referenceToAnUnassignedHandle() throws IOException
+	{
+		MemoryOutput message = new MemoryOutput();
+		message.write(TAG_REFERENCE);
+		message.writeInt(5);
+
+		assertDropped(message);
+	}
+
+	@Test
+	public void sizeAboveTheBytesRemaining() throws IOException
+	{
+		MemoryOutput message = new MemoryOutput();
+		message.write(TAG_ARRAY_INT);
+		message.writeInt(0);
+		message.writeInt(Integer.MAX_VALUE);
+
+		assertDropped(message);
+	}
+
+	@Test
+	public void negativeSize() throws IOException
+	{
+		MemoryOutput message = new MemoryOutput();
+		message.write(TAG_ARRAY_INT);
+		message.writeInt(0);
+		message.writeInt(-1);
+
+		assertDropped(message);
+	}
+
+	/**
+	 * Returns a message holding a string with the specified handle.
+	 */
+	private static MemoryOutput string(int handle, String str) throws IOException
+	{
+		MemoryOutput message = new MemoryOutput();
+		message.write(TAG_STRING);
+		message.writeInt(handle);
+		message.writeString(str);
+		return message;
+	}
+
+	/**
+	 * Feeds the message in a frame and checks that it is dropped.
+	 */
+	private void assertDropped(MemoryOutput message)
+	{
+		MemoryOutput frame = new MemoryOutput();
+		frame.writeInt(MAGIC);
+		frame.writeInt(message.size());
+		frame.write(message.getBuffer(), 0, message.size());
+
+		decoder.feed(frame.getBuffer(), 0, frame.size());
+		assertDroppedAndRecovered();
+	}
+
+	/**
+	 * Reads the fed frame, which must be dropped, and then a valid frame from a new session.
+	 */
+	private void assertDroppedAndRecovered()
+	{
+		long dropped = decoder.getDroppedFrames();
+
+		try
+		{
+			decoder.readObject();
+			fail("A corrupt frame was read");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+
+		assertEquals(dropped + 1, decoder.getDroppedFrames());
+		assertFalse(decoder.hasFrame());
+
+		TWAFrameEncoder encoder = new TWAFrameEncoder(config, MAGIC);
+		encoder.resetHandles();
+		encoder.writeObject("valid");
+		encoder.writeObject("valid");
+		byte[] bytes = encoder.getOutput().getBytes();
+		decoder.feed(bytes, 0, bytes.length);
+
+		assertEquals("valid", decoder.readObject());
+		assertEquals("valid", decoder.readObject());
+		assertEquals(dropped + 1, decoder.getDroppedFrames());
+	}
+}
@@ -0,0 +1,161 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.RoundTripModels.assertBagEquals;
+import static net.twagame.serial.RoundTripModels.newBag;
+import static net.twagame.serial.RoundTripModels.newState;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.RoundTripModels.Item;
+import net.twagame.serial.RoundTripModels.Position;
+import net.twagame.serial.RoundTripModels.State;
+import net.twagame.serial.exception.TWASerializationException;
+
+import org.junit.Test;
+
+/**
+ * Reads selected fields of messages written with length prefixes through a {@link TWAView}.
+ * 
+ * @author hadadzhi
+ */
+public class TWAViewTest extends AbstractRoundTripTest
+{
+	public TWAViewTest(String name, TWASerializationConfig config)
+	{
+		super(name, config);
+	}
+
+	@Test
+	public void lengthPrefixesAreRequired()
+	{
+		try
+		{
+			new TWAView(config);
+			assertTrue(config.isLengthPrefixed());
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertFalse(config.isLengthPrefixed());
+		}
+	}
+
+	@Test
+	public void views()
+	{
+		assumeTrue(config.isLengthPrefixed());
+
+		Bag bag = newBag();
+		TWAView view = new TWAView(config);
+		view.reset(write(bag));
+
+		assertEquals(Bag.class, view.getRootClass());
+		assertEquals(bag.total, view.getInt(view.indexOf("total")));
+		assertArrayEquals(bag.ints, (int[]) view.getObject(view.indexOf("ints")));
+		assertEquals(bag.counts, view.getObject(view.indexOf("counts")));
+		assertEquals(bag.numbers, view.getObject(view.indexOf("numbers")));
+		assertEquals(bag.items, view.getObject(view.indexOf("items")));
+		assertEquals(bag.declaredCounts, view.getObject(view.indexOf("declaredCounts")));
+		assertBagEquals(bag, (Bag) view.decodeRoot());
+
+		State state = newState();
+		view.reset(write(state));
+
+		assertEquals(state.tick, view.getLong(view.indexOf("tick")));
+		assertEquals(state.label, view.getObject(view.indexOf("label")));
+		assertEquals(state.y, view.getInt(view.indexOf("y")));
+	}
+
+	@Test
+	public void fieldsInAnyOrder()
+	{
+		assumeTrue(config.isLengthPrefixed());
+
+		State state = newState();
+		TWAView view = new TWAView(config);
+		byte[] bytes = write(state);
+
+		// A message in the middle of an array
+		byte[] padded = new byte[bytes.length + 6];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		view.reset(padded, 3, bytes.length);
+
+		assertEquals(6, view.getFieldCount());
+		assertEquals(-1, view.indexOf("missing"));
+		assertEquals(state.color, view.getObject(view.indexOf("color")));
+		assertEquals(state.x, view.getInt(view.indexOf("x")));
+		assertEquals(state.speed, view.getDouble(view.indexOf("speed")), 0.0);
+		assertEquals(state.label, view.getObject(view.indexOf("label")));
+		assertEquals(state.color, view.getObject(view.indexOf("color")));
+		assertEquals(state.tick, view.getLong(view.indexOf("tick")));
+	}
+
+	@Test
+	public void registeredRootClass()
+	{
+		assumeTrue(config.isLengthPrefixed());
+
+		Position position = new Position();
+		position.x = 5;
+		position.y = -6;
+		TWAView view = new TWAView(config);
+		view.reset(write(position));
+
+		assertEquals(Position.class, view.getRootClass());
+		assertNull(view.getObject(view.indexOf("owner")));
+		assertEquals(position.y, view.getInt(view.indexOf("y")));
+
+		position.owner = new Item(7, "owner");
+		view.reset(write(position));
+
+		assertEquals(position.owner, view.getObject(view.indexOf("owner")));
+		assertEquals(position.x, view.getInt(view.indexOf("x")));
+	}
+
+	@Test
+	public void invalidAccesses()
+	{
+		assumeTrue(config.isLengthPrefixed());
+
+		TWAView view = new TWAView(config);
+		view.reset(write(newState()));
+
+		try
+		{
+			view.getLong(view.indexOf("x"));
+			fail("An int field was read as a long");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			view.getObject(view.indexOf("x"));
+			fail("A primitive field was read as an object");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+
+		try
+		{
+			view.reset(write(new ArrayList<>(Arrays.asList(1, 2, 3))));
+			fail("A view of a collection was created");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package net.twagame.serial.io;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializationConfig;
+import net.twagame.serial.TWASerializer;
+
+import org.junit.Test;
+
+/**
+ * Writes primitive arrays in bulk and reads them back, with arrays much longer than the buffers of the stream implementations and
+ * unaligned to their chunk boundaries.
+ * 
+ * @author hadadzhi
+ */
+public class BulkArraysTest
+{
+	private static final int ARRAY_LENGTH = 1001;
+
+	@Test
+	public void memory() throws IOException
+	{
+		MemoryOutput out = new MemoryOutput(16);
+		IOTestData.write(out, ARRAY_LENGTH);
+
+		IOTestData.verify(new MemoryInput(out.getBytes()), ARRAY_LENGTH);
+	}
+
+	@Test
+	public void streamsWithSmallBuffers() throws IOException
+	{
+		MemoryOutput expected = new MemoryOutput();
+		IOTestData.write(expected, ARRAY_LENGTH);
+
+		// Buffer sizes that are not multiples of the element sizes, so elements straddle the chunks
+		for (int bufferSize : new int[] { StreamOutput.MIN_BUFFER_SIZE, 17, 23, 4096 })
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			StreamOutput out = new StreamOutput(bytes, StandardCharsets.UTF_8, bufferSize);
+			IOTestData.write(out, ARRAY_LENGTH);
+
+			assertArrayEquals(expected.getBytes(), bytes.toByteArray());
+
+			for (int maxRead : new int[] { 1, 7, Integer.MAX_VALUE })
+			{
+				StreamInput in = new StreamInput(new TrickleInputStream(bytes.toByteArray(), maxRead), StandardCharsets.UTF_8, bufferSize);
+				IOTestData.verify(in, ARRAY_LENGTH);
+			}
+		}
+	}
+
+	@Test
+	public void serializedArrays() throws IOException
+	{
+		int[] ints = new int[ARRAY_LENGTH];
+		long[] longs = new long[ARRAY_LENGTH];
+		double[] doubles = new double[ARRAY_LENGTH];
+		short[] shorts = new short[ARRAY_LENGTH];
+		for (int i = 0; i < ARRAY_LENGTH; i++)
+		{
+			ints[i] = i * 31 - 500;
+			longs[i] = (long) i << 40;
+			doubles[i] = i * Math.PI;
+			shorts[i] = (short) -i;
+		}
+		Object[] arrays = { ints, longs, doubles, shorts };
+
+		TWASerializationConfig config = new TWASerializationConfig();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TWASerializer serializer = new TWASerializer(new StreamOutput(bytes, StandardCharsets.UTF_8, 19), config);
+		serializer.writeObject(arrays);
+		serializer.flush();
+
+		StreamInput in = new StreamInput(new TrickleInputStream(bytes.toByteArray(), 5), StandardCharsets.UTF_8, 19);
+		Object[] read = (Object[]) new TWADeserializer(in, config).readObject();
+
+		assertArrayEquals(ints, (int[]) read[0]);
+		assertArrayEquals(longs, (long[]) read[1]);
+		assertArrayEquals(doubles, (double[]) read[2], 0.0);
+		assertArrayEquals(shorts, (short[]) read[3]);
+	}
+}
@@ -0,0 +1,100 @@
+package net.twagame.serial.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.twagame.serial.RoundTripModels;
+import net.twagame.serial.RoundTripModels.Bag;
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializationConfig;
+import net.twagame.serial.TWASerializer;
+
+import org.junit.Test;
+
+/**
+ * Writes with {@link ByteBufferOutput} and reads back with {@link ByteBufferInput}, into heap and direct buffers.
+ * 
+ * @author hadadzhi
+ */
+public class ByteBufferIOTest
+{
+	private static final int ARRAY_LENGTH = 1000;
+
+	@Test
+	public void heapBuffer() throws IOException
+	{
+		writeAndRead(false);
+	}
+
+	@Test
+	public void directBuffer() throws IOException
+	{
+		writeAndRead(true);
+	}
+
+	@Test
+	public void fullBuffer() throws IOException
+	{
+		ByteBufferOutput out = new ByteBufferOutput(ByteBuffer.allocate(6));
+		out.writeInt(1);
+
+		try
+		{
+			out.writeInt(2);
+			fail("A full buffer grew");
+		}
+		catch (IOException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void objects()
+	{
+		TWASerializationConfig config = new TWASerializationConfig();
+		config.setCompact(true);
+
+		ByteBufferOutput out = new ByteBufferOutput(16, 1 << 20, true);
+		Bag bag = RoundTripModels.newBag();
+		new TWASerializer(out, config).writeObject(bag);
+
+		ByteBuffer buffer = out.getBuffer();
+		buffer.flip();
+		ByteBufferInput in = new ByteBufferInput(buffer);
+
+		RoundTripModels.assertBagEquals(bag, (Bag) new TWADeserializer(in, config).readObject());
+		assertEquals(0, buffer.remaining());
+	}
+
+	/**
+	 * Writes the test data into a buffer that has to grow several times, checks that the bytes are those {@link MemoryOutput} writes, and
+	 * reads them back.
+	 */
+	private static void writeAndRead(boolean direct) throws IOException
+	{
+		ByteBufferOutput out = new ByteBufferOutput(16, 1 << 20, direct);
+		ByteBuffer initial = out.getBuffer();
+		IOTestData.write(out, ARRAY_LENGTH);
+
+		MemoryOutput expected = new MemoryOutput();
+		IOTestData.write(expected, ARRAY_LENGTH);
+
+		ByteBuffer buffer = out.getBuffer();
+		assertNotSame(initial, buffer);
+		assertEquals(direct, buffer.isDirect());
+		assertEquals(expected.size(), out.size());
+
+		buffer.flip();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		assertArrayEquals(expected.getBytes(), bytes);
+
+		IOTestData.verify(new ByteBufferInput(buffer), ARRAY_LENGTH);
+	}
+}
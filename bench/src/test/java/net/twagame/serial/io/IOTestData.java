@@ -0,0 +1,230 @@
+package net.twagame.serial.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A sequence of values of every kind a {@link SerializationOutput} writes, to be written to one implementation and read back from another
+ * with {@link SerializationInput}. The arrays are written with an offset, and have the specified length, so that large arrays span the
+ * buffers of the implementations.
+ * 
+ * @author hadadzhi
+ */
+final class IOTestData
+{
+	static final String LONG_STRING = longString(20000);
+
+	private static final String[] STRINGS = { "", "ascii", "\u00e9t\u00e9 \u2713 \ud83d\ude00", LONG_STRING };
+	private static final int[] INTS = { 0, 1, -1, 127, 128, -64, -65, 300, Integer.MIN_VALUE, Integer.MAX_VALUE };
+	private static final long[] LONGS = { 0, -1, 1L << 35, -(1L << 56), Long.MIN_VALUE, Long.MAX_VALUE };
+
+	static void write(SerializationOutput out, int arrayLength) throws IOException
+	{
+		out.write(0xAB);
+		out.write(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+		out.writeByte(Byte.MIN_VALUE);
+		out.writeBoolean(true);
+		out.writeBoolean(false);
+		out.writeShort(Short.MIN_VALUE);
+		out.writeFloat(Float.NaN);
+		out.writeDouble(-0.0);
+
+		for (int v : INTS)
+		{
+			out.writeInt(v);
+			out.writeVarInt(v);
+		}
+
+		for (long v : LONGS)
+		{
+			out.writeLong(v);
+			out.writeVarLong(v);
+		}
+
+		for (String str : STRINGS)
+		{
+			out.writeString(str);
+		}
+
+		out.writeBooleans(booleans(arrayLength + 1), 1, arrayLength);
+		out.writeShorts(shorts(arrayLength + 1), 1, arrayLength);
+		out.writeInts(ints(arrayLength + 1), 1, arrayLength);
+		out.writeLongs(longs(arrayLength + 1), 1, arrayLength);
+		out.writeFloats(floats(arrayLength + 1), 1, arrayLength);
+		out.writeDoubles(doubles(arrayLength + 1), 1, arrayLength);
+
+		byte[] bytes = new byte[arrayLength];
+		for (int i = 0; i < arrayLength; i++)
+		{
+			bytes[i] = (byte) i;
+		}
+		out.write(bytes, 0, arrayLength);
+
+		out.flush();
+	}
+
+	static void verify(SerializationInput in, int arrayLength) throws IOException
+	{
+		assertEquals(0xAB, in.read());
+		assertArrayEquals(new byte[] { 2, 3, 4 }, readFully(in, 3));
+		assertEquals(Byte.MIN_VALUE, in.readByte());
+		assertTrue(in.readBoolean());
+		assertFalse(in.readBoolean());
+		assertEquals(Short.MIN_VALUE, in.readShort());
+		assertEquals(Float.NaN, in.readFloat(), 0.0f);
+		assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(in.readDouble()));
+
+		for (int v : INTS)
+		{
+			assertEquals(v, in.readInt());
+			assertEquals(v, in.readVarInt());
+		}
+
+		for (long v : LONGS)
+		{
+			assertEquals(v, in.readLong());
+			assertEquals(v, in.readVarLong());
+		}
+
+		for (String str : STRINGS)
+		{
+			assertEquals(str, in.readString());
+		}
+
+		// Read at offset 0, while they were written from offset 1
+		int n = arrayLength + 1;
+
+		boolean[] booleans = new boolean[arrayLength];
+		in.readBooleans(booleans, 0, arrayLength);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(booleans(n), 1, n), booleans));
+
+		short[] shorts = new short[arrayLength];
+		in.readShorts(shorts, 0, arrayLength);
+		assertArrayEquals(Arrays.copyOfRange(shorts(n), 1, n), shorts);
+
+		int[] ints = new int[arrayLength];
+		in.readInts(ints, 0, arrayLength);
+		assertArrayEquals(Arrays.copyOfRange(ints(n), 1, n), ints);
+
+		long[] longs = new long[arrayLength];
+		in.readLongs(longs, 0, arrayLength);
+		assertArrayEquals(Arrays.copyOfRange(longs(n), 1, n), longs);
+
+		float[] floats = new float[arrayLength];
+		in.readFloats(floats, 0, arrayLength);
+		assertArrayEquals(Arrays.copyOfRange(floats(n), 1, n), floats, 0.0f);
+
+		double[] doubles = new double[arrayLength];
+		in.readDoubles(doubles, 0, arrayLength);
+		assertArrayEquals(Arrays.copyOfRange(doubles(n), 1, n), doubles, 0.0);
+
+		byte[] bytes = readFully(in, arrayLength);
+		for (int i = 0; i < arrayLength; i++)
+		{
+			assertEquals((byte) i, bytes[i]);
+		}
+
+		assertEquals(-1, in.read());
+	}
+
+	/**
+	 * Reads the specified number of bytes, which inputs may return in several parts.
+	 */
+	private static byte[] readFully(SerializationInput in, int length) throws IOException
+	{
+		byte[] bytes = new byte[length];
+
+		for (int read = 0, n; read < length; read += n)
+		{
+			n = in.read(bytes, read, length - read);
+
+			if (n < 0)
+				throw new EOFException();
+		}
+
+		return bytes;
+	}
+
+	private static String longString(int length)
+	{
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+		{
+			sb.append((char) ('a' + (i % 26)));
+		}
+		return sb.toString();
+	}
+
+	private static boolean[] booleans(int length)
+	{
+		boolean[] a = new boolean[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = (i % 3) == 0;
+		}
+		return a;
+	}
+
+	private static short[] shorts(int length)
+	{
+		short[] a = new short[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = (short) (i * 7919);
+		}
+		return a;
+	}
+
+	private static int[] ints(int length)
+	{
+		int[] a = new int[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = i * -1640531527;
+		}
+		return a;
+	}
+
+	private static long[] longs(int length)
+	{
+		long[] a = new long[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = i * -7046029254386353131L;
+		}
+		return a;
+	}
+
+	private static float[] floats(int length)
+	{
+		float[] a = new float[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = i / 7.0f - 100;
+		}
+		return a;
+	}
+
+	private static double[] doubles(int length)
+	{
+		double[] a = new double[length];
+		for (int i = 0; i < length; i++)
+		{
+			a[i] = i / -3.0 + 1e300;
+		}
+		return a;
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private IOTestData()
+	{
+	}
+}
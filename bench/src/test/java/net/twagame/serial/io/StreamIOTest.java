@@ -0,0 +1,163 @@
+package net.twagame.serial.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Writes with {@link StreamOutput} and reads back with {@link StreamInput}, checking how both use their internal buffers: values split
+ * across refills, strings and byte arrays longer than the buffer, and the end of the stream.
+ * 
+ * @author hadadzhi
+ */
+public class StreamIOTest
+{
+	private static final int BUFFER_SIZE = StreamInput.MIN_BUFFER_SIZE;
+
+	@Test
+	public void valuesSplitAcrossRefills() throws IOException
+	{
+		// Each long starts one byte later in the buffer than the previous one, so every split position occurs
+		MemoryOutput expected = new MemoryOutput();
+		for (int i = 0; i < (2 * BUFFER_SIZE); i++)
+		{
+			expected.write(i);
+			expected.writeLong(-1L - i);
+			expected.writeVarLong(Long.MIN_VALUE + i);
+		}
+
+		for (int maxRead : new int[] { 1, 3, BUFFER_SIZE })
+		{
+			StreamInput in = input(expected.getBytes(), maxRead);
+
+			for (int i = 0; i < (2 * BUFFER_SIZE); i++)
+			{
+				assertEquals(i, in.read());
+				assertEquals(-1L - i, in.readLong());
+				assertEquals(Long.MIN_VALUE + i, in.readVarLong());
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void stringsAroundTheBufferSize() throws IOException
+	{
+		String[] strings = new String[4 * BUFFER_SIZE];
+		for (int i = 0; i < strings.length; i++)
+		{
+			strings[i] = IOTestData.LONG_STRING.substring(0, i);
+		}
+		strings[strings.length - 1] = IOTestData.LONG_STRING;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		StreamOutput out = new StreamOutput(bytes, StandardCharsets.UTF_8, BUFFER_SIZE);
+		for (String str : strings)
+		{
+			out.writeString(str);
+			out.writeInt(str.length());
+		}
+		out.flush();
+
+		for (int maxRead : new int[] { 1, 5, Integer.MAX_VALUE })
+		{
+			StreamInput in = input(bytes.toByteArray(), maxRead);
+
+			for (String str : strings)
+			{
+				assertEquals(str, in.readString());
+				assertEquals(str.length(), in.readInt());
+			}
+			assertNull(in.readString());
+		}
+	}
+
+	@Test
+	public void largeByteArraysBypassTheBuffer() throws IOException
+	{
+		byte[] large = new byte[10 * BUFFER_SIZE];
+		Arrays.fill(large, (byte) 7);
+
+		CountingOutputStream bytes = new CountingOutputStream();
+		StreamOutput out = new StreamOutput(bytes, StandardCharsets.UTF_8, BUFFER_SIZE);
+		out.writeInt(1);
+		assertEquals(0, bytes.size());
+
+		out.write(large, 0, large.length);
+		assertEquals(4 + large.length, bytes.size());
+		assertEquals(2, bytes.writes);
+
+		out.writeInt(2);
+		out.flush();
+		assertEquals(8 + large.length, bytes.size());
+
+		StreamInput in = input(bytes.toByteArray(), Integer.MAX_VALUE);
+		byte[] read = new byte[large.length];
+		assertEquals(1, in.readInt());
+		for (int n = 0, r; n < read.length; n += r)
+		{
+			r = in.read(read, n, read.length - n);
+
+			if (r < 0)
+				throw new EOFException();
+		}
+		assertArrayEquals(large, read);
+		assertEquals(2, in.readInt());
+	}
+
+	@Test
+	public void truncatedStream() throws IOException
+	{
+		MemoryOutput out = new MemoryOutput();
+		out.writeLong(42);
+		byte[] truncated = Arrays.copyOf(out.getBytes(), 5);
+
+		StreamInput in = input(truncated, 2);
+		assertEquals(0, in.readInt());
+
+		try
+		{
+			in.readInt();
+			fail("An int was read from one byte");
+		}
+		catch (EOFException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void bufferTooSmall()
+	{
+		new StreamInput(new TrickleInputStream(new byte[0], 1), StandardCharsets.UTF_8, StreamInput.MIN_BUFFER_SIZE - 1);
+	}
+
+	private static StreamInput input(byte[] bytes, int maxRead)
+	{
+		return new StreamInput(new TrickleInputStream(bytes, maxRead), StandardCharsets.UTF_8, BUFFER_SIZE);
+	}
+
+	/**
+	 * Counts the writes that reach the stream.
+	 */
+	private static class CountingOutputStream extends ByteArrayOutputStream
+	{
+		int writes;
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len)
+		{
+			writes++;
+			super.write(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package net.twagame.serial.io;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * An input stream returning at most a few bytes per read, like a socket does when the data arrives in small packets.
+ * 
+ * @author hadadzhi
+ */
+class TrickleInputStream extends ByteArrayInputStream
+{
+	private final int maxRead;
+
+	TrickleInputStream(byte[] bytes, int maxRead)
+	{
+		super(bytes);
+		this.maxRead = maxRead;
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len)
+	{
+		return super.read(b, off, Math.min(len, maxRead));
+	}
+}
@@ -0,0 +1,74 @@
+package net.twagame.serial.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.util.prewarmed.PrewarmModels;
+
+import org.junit.Test;
+
+/**
+ * Prewarms descriptors from the class index generated by the annotation processor and from explicit classes. The descriptors of a class
+ * exist once {@link ClassDescriptorsCache#registerInstantiator(Class, Instantiator)} refuses it.
+ * 
+ * @author hadadzhi
+ */
+public class ClassDescriptorsCacheTest
+{
+	private static final ClassDescriptorsCache cache = ClassDescriptorsCache.getInstance();
+
+	@TWASerializable
+	public static class CachedRoot
+	{
+		public CachedLeaf leaf;
+	}
+
+	@TWASerializable
+	public static class CachedLeaf
+	{
+		public int x;
+	}
+
+	@Test
+	public void prewarmIndexed()
+	{
+		ClassLoader loader = getClass().getClassLoader();
+
+		// Package names must match whole segments
+		assertEquals(0, cache.prewarmIndexed(loader, "net.twagame.serial.util.prewarm"));
+		assertEquals(3, cache.prewarmIndexed(loader, PrewarmModels.class.getPackage().getName()));
+
+		assertCreated(PrewarmModels.Root.class);
+		assertCreated(PrewarmModels.Leaf.class);
+		assertCreated(PrewarmModels.ArrayLeaf.class);
+	}
+
+	@Test
+	public void prewarmFieldTypesOfCachedClasses()
+	{
+		cache.forClass(CachedRoot.class);
+		cache.prewarm(CachedRoot.class);
+
+		assertCreated(CachedLeaf.class);
+	}
+
+	private static void assertCreated(Class<?> clazz)
+	{
+		try
+		{
+			cache.registerInstantiator(clazz, new Instantiator() {
+				@Override
+				public Object instantiate()
+				{
+					throw new AssertionError();
+				}
+			});
+			fail("The descriptor of " + clazz.getName() + " was not created");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package net.twagame.serial.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializationConfig;
+import net.twagame.serial.TWASerializer;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+import org.junit.Test;
+
+/**
+ * Checks which {@link Instantiator} {@link Instantiators} selects for classes with and without no-argument constructors and collection
+ * fields, and that a registered instantiator is used by deserialization.
+ * 
+ * @author hadadzhi
+ */
+public class InstantiatorsTest
+{
+	public static class PublicConstructor
+	{
+		public boolean constructed;
+
+		public PublicConstructor()
+		{
+			constructed = true;
+		}
+	}
+
+	public static class PrivateConstructor
+	{
+		public boolean constructed;
+
+		private PrivateConstructor()
+		{
+			constructed = true;
+		}
+	}
+
+	public static class NoConstructor
+	{
+		public int value;
+		public List<String> list;
+		public ArrayList<String> arrayList;
+		public HashMap<String, String> map;
+
+		public NoConstructor(int value)
+		{
+			this.value = value;
+		}
+	}
+
+	@TWASerializable
+	public static class Registered
+	{
+		public int value;
+	}
+
+	@Test
+	public void publicConstructor()
+	{
+		Instantiator instantiator = Instantiators.forClass(PublicConstructor.class, true, null);
+
+		assertTrue(instantiator.getClass().getName().contains("$$Lambda"));
+		assertTrue(((PublicConstructor) instantiator.instantiate()).constructed);
+	}
+
+	@Test
+	public void privateConstructor()
+	{
+		Instantiator instantiator = Instantiators.forClass(PrivateConstructor.class, true, null);
+
+		assertTrue(instantiator.getClass().getName().endsWith("$ReflectiveInstantiator"));
+		assertTrue(((PrivateConstructor) instantiator.instantiate()).constructed);
+	}
+
+	@Test
+	public void withoutConstructor()
+	{
+		// Not constructed, but the collection and map fields declared with a concrete type are initialized
+		Instantiator instantiator = Instantiators.forClass(NoConstructor.class, false, fields(NoConstructor.class));
+		NoConstructor o = (NoConstructor) instantiator.instantiate();
+
+		assertTrue(instantiator.getClass().getName().endsWith("$UnsafeInstantiator"));
+		assertEquals(0, o.value);
+		assertNull(o.list);
+		assertNotNull(o.arrayList);
+		assertNotNull(o.map);
+		assertFalse(o.arrayList == ((NoConstructor) instantiator.instantiate()).arrayList);
+
+		// Safe instantiation can not be forced
+		instantiator = Instantiators.forClass(NoConstructor.class, true, fields(NoConstructor.class));
+
+		try
+		{
+			instantiator.instantiate();
+			fail("A class without a no-argument constructor was instantiated safely");
+		}
+		catch (TWASerializationException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void withoutCollections()
+	{
+		Instantiator instantiator = Instantiators.forClass(PublicConstructor.class, false, fields(PublicConstructor.class));
+
+		assertTrue(instantiator.getClass().getName().endsWith("$UnsafeInstantiator"));
+		assertFalse(((PublicConstructor) instantiator.instantiate()).constructed);
+	}
+
+	@Test
+	public void registeredInstantiator()
+	{
+		final List<Registered> created = new ArrayList<>();
+
+		ClassDescriptorsCache.getInstance().registerInstantiator(Registered.class, new Instantiator() {
+			@Override
+			public Object instantiate()
+			{
+				Registered o = new Registered();
+				created.add(o);
+				return o;
+			}
+		});
+
+		Registered registered = new Registered();
+		registered.value = 42;
+
+		MemoryOutput out = new MemoryOutput();
+		new TWASerializer(out, new TWASerializationConfig()).writeObject(registered);
+		Object read = new TWADeserializer(new MemoryInput(out.getBytes()), new TWASerializationConfig()).readObject();
+
+		assertEquals(1, created.size());
+		assertSame(created.get(0), read);
+		assertEquals(42, created.get(0).value);
+	}
+
+	private static FieldDescriptor[] fields(Class<?> clazz)
+	{
+		List<FieldDescriptor> fields = new ArrayList<>();
+
+		for (Field f : clazz.getDeclaredFields())
+		{
+			fields.add(new FieldDescriptor(f));
+		}
+
+		return fields.toArray(new FieldDescriptor[0]);
+	}
+}
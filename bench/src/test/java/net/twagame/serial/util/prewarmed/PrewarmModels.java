@@ -0,0 +1,41 @@
+package net.twagame.serial.util.prewarmed;
+
+import java.util.List;
+
+import net.twagame.serial.annotation.TWASerializable;
+
+/**
+ * The classes prewarmed by {@link net.twagame.serial.util.ClassDescriptorsCacheTest}, in a package of their own so that no other test
+ * creates their descriptors first.
+ * 
+ * @author hadadzhi
+ */
+public final class PrewarmModels
+{
+	@TWASerializable
+	public static class Root
+	{
+		public Leaf leaf;
+		public ArrayLeaf[][] leaves;
+		public List<Object> objects;
+	}
+
+	@TWASerializable
+	public static class Leaf
+	{
+		public int x;
+	}
+
+	@TWASerializable
+	public static class ArrayLeaf
+	{
+		public int y;
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private PrewarmModels()
+	{
+	}
+}
@@ -0,0 +1,348 @@
+package net.twagame.serial;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+/**
+ * Serializes batches of independent root objects, e.g. the entities of a world snapshot, in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The batch is split into chunks of consecutive objects. Each chunk is encoded by its own {@link TWASerializer} into its own
+ * {@link MemoryOutput}, and each object is a separate message with its own handle space, so objects of a batch cannot share references.
+ * Class ids are kept for the whole chunk, so the name of a class is written once per chunk rather than once per object, and the messages of
+ * a chunk must be decoded in order. The encoded chunks are then concatenated into a single payload:
+ * 
+ * <pre>
+ * (int)count (int)chunk_size (int)length... message...
+ * </pre>
+ * 
+ * The lengths of all messages precede the messages, so the decoder can locate every chunk up front and decode the chunks in parallel as
+ * well. Batches of at most one chunk, and all batches when the pool is not parallel, are processed in the calling thread.
+ * 
+ * @author hadadzhi
+ */
+public class TWABatchCodec
+{
+	/**
+	 * The default number of objects processed by a single task.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64;
+
+	private final TWASerializationConfig config;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	/**
+	 * Creates a batch codec with the default {@link TWASerializationConfig} that runs on the common pool.
+	 */
+	public TWABatchCodec()
+	{
+		this(new TWASerializationConfig(), ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a batch codec. Peers must use equal configs.
+	 * 
+	 * @param config
+	 * @param pool
+	 *            the pool to run the tasks on.
+	 * @param chunkSize
+	 *            the number of consecutive objects processed by a single task. Smaller chunks balance the load better, larger chunks have
+	 *            less overhead.
+	 * @throws IllegalArgumentException
+	 *             if the config enables the session symbol table, which is not supported since messages are decoded independently.
+	 */
+	public TWABatchCodec(TWASerializationConfig config, ForkJoinPool pool, int chunkSize)
+	{
+		if (chunkSize <= 0)
+		{
+			throw new IllegalArgumentException("chunkSize <= 0");
+		}
+
+		if (config.getSymbolTableSize() != 0)
+		{
+			throw new IllegalArgumentException("The session symbol table requires a persistent serializer and deserializer pair");
+		}
+
+		this.config = config;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Serializes the specified objects into a new batch payload.
+	 * 
+	 * @param objects
+	 *            the objects to serialize, may contain {@code null}s. The list must not be modified until this method returns.
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization.
+	 */
+	public byte[] encode(List<?> objects)
+	{
+		int count = objects.size();
+		int[] lengths = new int[count];
+		MemoryOutput[] chunks = new MemoryOutput[chunkCount(count, chunkSize)];
+
+		run(new EncodeTask(objects, lengths, chunks, 0, chunks.length));
+
+		int size = 8 + (4 * count);
+		for (MemoryOutput chunk : chunks)
+		{
+			size += chunk.size();
+		}
+
+		MemoryOutput out = new MemoryOutput(size);
+
+		out.writeInt(count);
+		out.writeInt(chunkSize);
+		out.writeInts(lengths, 0, count);
+
+		for (MemoryOutput chunk : chunks)
+		{
+			out.write(chunk.getBuffer(), 0, chunk.size());
+		}
+
+		assert out.size() == out.capacity();
+
+		return out.getBuffer();
+	}
+
+	/**
+	 * Deserializes all objects from the specified batch payload.
+	 * 
+	 * @param bytes
+	 * @return the objects, in the order they were encoded.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public List<Object> decode(byte[] bytes)
+	{
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Deserializes all objects from the batch payload contained in <code>len</code> bytes of the specified array starting at
+	 * <code>off</code>. The array must not be modified until this method returns.
+	 * 
+	 * @param bytes
+	 * @param off
+	 * @param len
+	 * @return the objects, in the order they were encoded.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public List<Object> decode(byte[] bytes, int off, int len)
+	{
+		MemoryInput in = new MemoryInput(bytes);
+		in.reset(bytes, off, len);
+
+		int[] offsets;
+		int[] lengths;
+		int encodedChunkSize;
+
+		try
+		{
+			int count = in.readInt();
+			encodedChunkSize = in.readInt();
+
+			if ((count < 0) || (count > (in.remaining() / 4)))
+			{
+				throw new TWASerializationException("Invalid message count: " + count);
+			}
+
+			if (encodedChunkSize <= 0)
+			{
+				throw new TWASerializationException("Invalid chunk size: " + encodedChunkSize);
+			}
+
+			lengths = new int[count];
+			offsets = new int[count];
+			in.readInts(lengths, 0, count);
+
+			int offset = off + (len - in.remaining());
+			int end = off + len;
+			for (int i = 0; i < count; i++)
+			{
+				if ((lengths[i] < 0) || (lengths[i] > (end - offset)))
+				{
+					throw new TWASerializationException("Invalid message length: " + lengths[i]);
+				}
+
+				offsets[i] = offset;
+				offset += lengths[i];
+			}
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+
+		Object[] objects = new Object[offsets.length];
+
+		run(new DecodeTask(bytes, offsets, lengths, objects, encodedChunkSize, 0, chunkCount(objects.length, encodedChunkSize)));
+
+		return Arrays.asList(objects);
+	}
+
+	private static int chunkCount(int count, int chunkSize)
+	{
+		return (int) ((count + (long) chunkSize - 1) / chunkSize);
+	}
+
+	private void run(ChunksTask task)
+	{
+		if (((task.hi - task.lo) <= 1) || (pool.getParallelism() <= 1))
+		{
+			task.compute();
+		}
+		else
+		{
+			pool.invoke(task);
+		}
+	}
+
+	/**
+	 * Splits a range of chunks in halves until a single chunk is left, then processes it.
+	 */
+	private abstract class ChunksTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		final int chunkSize;
+		final int lo;
+		final int hi;
+
+		ChunksTask(int chunkSize, int lo, int hi)
+		{
+			this.chunkSize = chunkSize;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ((hi - lo) <= 1)
+			{
+				if (hi > lo)
+				{
+					processChunk(lo * chunkSize, (int) Math.min((lo + 1L) * chunkSize, size()), lo);
+				}
+			}
+			else
+			{
+				int mid = (lo + hi) >>> 1;
+				invokeAll(split(lo, mid), split(mid, hi));
+			}
+		}
+
+		abstract int size();
+
+		abstract ChunksTask split(int lo, int hi);
+
+		abstract void processChunk(int from, int to, int chunk);
+	}
+
+	private final class EncodeTask extends ChunksTask
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<?> objects;
+		private final int[] lengths;
+		private final MemoryOutput[] chunks;
+
+		EncodeTask(List<?> objects, int[] lengths, MemoryOutput[] chunks, int lo, int hi)
+		{
+			super(TWABatchCodec.this.chunkSize, lo, hi);
+			this.objects = objects;
+			this.lengths = lengths;
+			this.chunks = chunks;
+		}
+
+		@Override
+		int size()
+		{
+			return lengths.length;
+		}
+
+		@Override
+		ChunksTask split(int lo, int hi)
+		{
+			return new EncodeTask(objects, lengths, chunks, lo, hi);
+		}
+
+		@Override
+		void processChunk(int from, int to, int chunk)
+		{
+			MemoryOutput out = new MemoryOutput();
+			TWASerializer serializer = new TWASerializer(out, config);
+
+			for (int i = from; i < to; i++)
+			{
+				int start = out.size();
+				serializer.resetObjectHandles();
+				serializer.writeObject(objects.get(i));
+				lengths[i] = out.size() - start;
+			}
+
+			chunks[chunk] = out;
+		}
+	}
+
+	private final class DecodeTask extends ChunksTask
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] bytes;
+		private final int[] offsets;
+		private final int[] lengths;
+		private final Object[] objects;
+
+		DecodeTask(byte[] bytes, int[] offsets, int[] lengths, Object[] objects, int chunkSize, int lo, int hi)
+		{
+			super(chunkSize, lo, hi);
+			this.bytes = bytes;
+			this.offsets = offsets;
+			this.lengths = lengths;
+			this.objects = objects;
+		}
+
+		@Override
+		int size()
+		{
+			return objects.length;
+		}
+
+		@Override
+		ChunksTask split(int lo, int hi)
+		{
+			return new DecodeTask(bytes, offsets, lengths, objects, chunkSize, lo, hi);
+		}
+
+		@Override
+		void processChunk(int from, int to, int chunk)
+		{
+			MemoryInput in = new MemoryInput(bytes);
+			TWADeserializer deserializer = new TWADeserializer(in, config);
+
+			for (int i = from; i < to; i++)
+			{
+				in.reset(bytes, offsets[i], lengths[i]);
+				deserializer.resetObjectHandles();
+				objects[i] = deserializer.readObject();
+
+				if (in.remaining() != 0)
+				{
+					throw new TWASerializationException("The message " + i + " is " + in.remaining() + " bytes longer than its contents");
+				}
+			}
+		}
+	}
+}
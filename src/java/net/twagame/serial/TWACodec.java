@@ -0,0 +1,274 @@
+package net.twagame.serial;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.io.MemoryOutput;
+
+/**
+ * A thread-safe facade over {@link TWASerializer} and {@link TWADeserializer} that encodes each object into a self-contained message.
+ * Any number of threads can call the same codec concurrently.
+ * <p>
+ * Each thread gets its own serializer, deserializer and buffers, which are reset before and reused after each call, so encoding and
+ * decoding in a steady state allocate only the objects and the resulting arrays themselves. Buffers that have grown beyond
+ * {@link TWACodec#MAX_RETAINED_CAPACITY} are trimmed after use. A serializer or deserializer that has thrown an exception is discarded,
+ * since its state is undefined.
+ * <p>
+ * Handles are reset for each message, so references can only be shared within one encoded object graph.
+ * 
+ * @author hadadzhi
+ */
+public class TWACodec
+{
+	/**
+	 * The maximum buffer capacity each thread retains between calls, in bytes.
+	 */
+	public static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private final TWASerializationConfig config;
+
+	private final ThreadLocal<Encoder> localEncoder = new ThreadLocal<Encoder>() {
+		@Override
+		protected Encoder initialValue()
+		{
+			return new Encoder(config);
+		}
+	};
+
+	private final ThreadLocal<Decoder> localDecoder = new ThreadLocal<Decoder>() {
+		@Override
+		protected Decoder initialValue()
+		{
+			return new Decoder(config);
+		}
+	};
+
+	/**
+	 * Creates a codec with the default {@link TWASerializationConfig}.
+	 */
+	public TWACodec()
+	{
+		this(new TWASerializationConfig());
+	}
+
+	/**
+	 * Creates a codec with the specified config. Peers must use equal configs.
+	 * 
+	 * @param config
+	 * @throws IllegalArgumentException
+	 *             if the config enables the session symbol table, which is not supported since messages are decoded independently.
+	 */
+	public TWACodec(TWASerializationConfig config)
+	{
+		if (config.getSymbolTableSize() != 0)
+		{
+			throw new IllegalArgumentException("The session symbol table requires a persistent serializer and deserializer pair");
+		}
+
+		this.config = config;
+	}
+
+	/**
+	 * Serializes an object into a new array.
+	 * 
+	 * @param o
+	 *            the object to serialize, may be {@code null}.
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization.
+	 */
+	public byte[] encode(Object o)
+	{
+		Encoder encoder = acquireEncoder();
+
+		try
+		{
+			encoder.encode(o);
+			byte[] bytes = Arrays.copyOf(encoder.out.getBuffer(), encoder.out.size());
+			encoder.release();
+
+			return bytes;
+		}
+		catch (RuntimeException | Error e)
+		{
+			localEncoder.remove();
+			throw e;
+		}
+	}
+
+	/**
+	 * Serializes an object into the specified buffer, starting at its position, without creating an intermediate array.
+	 * 
+	 * @param o
+	 *            the object to serialize, may be {@code null}.
+	 * @param target
+	 * @return the number of bytes written.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization.
+	 * @throws BufferOverflowException
+	 *             if there is insufficient space in the buffer; nothing is written in that case.
+	 */
+	public int encode(Object o, ByteBuffer target)
+	{
+		Encoder encoder = acquireEncoder();
+		int size;
+		boolean fits;
+
+		try
+		{
+			encoder.encode(o);
+			size = encoder.out.size();
+			fits = target.remaining() >= size;
+
+			if (fits)
+			{
+				encoder.out.writeTo(target);
+			}
+
+			encoder.release();
+		}
+		catch (RuntimeException | Error e)
+		{
+			localEncoder.remove();
+			throw e;
+		}
+
+		if (!fits)
+		{
+			throw new BufferOverflowException();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Deserializes an object from the specified array.
+	 * 
+	 * @param bytes
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public Object decode(byte[] bytes)
+	{
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Deserializes an object from <code>len</code> bytes of the specified array starting at <code>off</code>. The array is not modified or
+	 * retained.
+	 * 
+	 * @param bytes
+	 * @param off
+	 * @param len
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public Object decode(byte[] bytes, int off, int len)
+	{
+		if ((off < 0) || (len < 0) || (len > (bytes.length - off)))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		Decoder decoder = acquireDecoder();
+
+		try
+		{
+			decoder.in.reset(bytes, off, len);
+			Object o = decoder.deserializer.readObject();
+			decoder.release();
+
+			return o;
+		}
+		catch (RuntimeException | Error e)
+		{
+			localDecoder.remove();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the current thread's encoder, or a new one if it is in use, e.g. when an object being encoded is encoded again from within
+	 * a call to this codec.
+	 */
+	private Encoder acquireEncoder()
+	{
+		Encoder encoder = localEncoder.get();
+
+		if (encoder.inUse)
+		{
+			encoder = new Encoder(config);
+		}
+
+		encoder.inUse = true;
+
+		return encoder;
+	}
+
+	private Decoder acquireDecoder()
+	{
+		Decoder decoder = localDecoder.get();
+
+		if (decoder.inUse)
+		{
+			decoder = new Decoder(config);
+		}
+
+		decoder.inUse = true;
+
+		return decoder;
+	}
+
+	private static final class Encoder
+	{
+		final MemoryOutput out = new MemoryOutput();
+		final TWASerializer serializer;
+		boolean inUse;
+
+		Encoder(TWASerializationConfig config)
+		{
+			serializer = new TWASerializer(out, config);
+		}
+
+		void encode(Object o)
+		{
+			out.reset();
+			serializer.resetHandles();
+			serializer.writeObject(o);
+		}
+
+		void release()
+		{
+			serializer.resetHandles(); // Do not keep the encoded objects reachable
+			out.reset();
+			out.trim(MAX_RETAINED_CAPACITY);
+			inUse = false;
+		}
+	}
+
+	private static final class Decoder
+	{
+		private static final byte[] EMPTY = new byte[0];
+
+		final MemoryInput in = new MemoryInput(null);
+		final TWADeserializer deserializer;
+		boolean inUse;
+
+		Decoder(TWASerializationConfig config)
+		{
+			deserializer = new TWADeserializer(in, config);
+		}
+
+		void release()
+		{
+			deserializer.resetHandles(); // Do not keep the decoded objects reachable
+			in.reset(EMPTY, 0, 0);
+			inUse = false;
+		}
+	}
+}
@@ -8,12 +8,20 @@ import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_INT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_LONG;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_OBJECT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_SHORT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_CLASSDESC;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION_TYPED;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_DELTA;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP_TYPED;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_NEWOBJECT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_NULL;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_REFERENCE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_RESET;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_STRING;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_DEF;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_RESET;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BOOLEAN;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BYTE;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_DOUBLE;
@@ -26,17 +34,22 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
 import net.twagame.serial.io.SerializationInput;
 import net.twagame.serial.util.ClassDescriptor;
 import net.twagame.serial.util.ClassDescriptorsCache;
-import net.twagame.serial.util.FieldDescriptor;
+import net.twagame.serial.util.ClassRegistry;
+import net.twagame.serial.util.FieldCodec;
+import net.twagame.serial.util.PrimitiveFieldCodec;
+import net.twagame.serial.util.ReferenceFieldCodec;
 import net.twagame.serial.util.TWASerializationConstants;
-import net.twagame.serial.util.unsafe.UnsafeField;
+import net.twagame.serial.util.TWASerializationConstants.ClassType;
 
 /**
  * The deserializer. This class is not thread safe.
@@ -46,21 +59,78 @@ import net.twagame.serial.util.unsafe.UnsafeField;
 public class TWADeserializer
 {
 	private final HandleTable handles = new HandleTable();
+	private final HandleTable classes = new HandleTable();
+	private final ClassDescriptorsCache descriptors = ClassDescriptorsCache.getInstance();
+	private final ClassRegistry registry;
+	private final boolean compact;
+	private final boolean lengthPrefixed;
+	private final boolean acyclic;
 	private final SerializationInput in;
 
-	private ClassDescriptor currentClassDesc;
-	private FieldDescriptor currentFieldDesc;
+	/**
+	 * The input, if it is a {@link MemoryInput}, which knows how many bytes remain
+	 */
+	private final MemoryInput memoryIn;
 
+	/**
+	 * The session symbol table, indexed by slot. Empty if the symbol table is disabled.
+	 */
+	private final Object[] symbols;
+
+	/**
+	 * The handle of the last new object read, used to tell new elements of typed collections from references, see
+	 * {@link TWASerializationConstants#TAG_COLLECTION_TYPED}. Handles are assigned in ascending order, so it is the highest handle of the
+	 * current message even if the serializer reset its handles without writing {@link TWASerializationConstants#TAG_RESET TAG_RESET}.
+	 */
+	private int lastHandle = -1;
+
+	/**
+	 * The field currently being read, used to reuse collections and maps the field was initialized with.
+	 */
+	private ReferenceFieldCodec currentFieldCodec;
 	private Object currentNewObject;
 
+	/**
+	 * The component type of the declared type of the array currently being read, used to instantiate arrays of objects.
+	 */
+	private Class<?> currentComponentType;
+
+	/**
+	 * {@code true} while reading with {@link TWADeserializer#readObjectInto(Object)}
+	 */
+	private boolean inPlace = false;
+
+	/**
+	 * The existing object the next object read is stored into, if possible. Consumed by {@link TWADeserializer#readObject()}.
+	 */
+	private Object currentReuseTarget;
+
 	/**
 	 * Creates a new TWADeserializer that uses the specified {@link SerializationInput}.
 	 * 
 	 * @param in
 	 */
 	public TWADeserializer(SerializationInput in)
+	{
+		this(in, new TWASerializationConfig());
+	}
+
+	/**
+	 * Creates a new TWADeserializer that uses the specified {@link SerializationInput} and {@link TWASerializationConfig}. The serializer
+	 * must use an equal config.
+	 * 
+	 * @param in
+	 * @param config
+	 */
+	public TWADeserializer(SerializationInput in, TWASerializationConfig config)
 	{
 		this.in = in;
+		this.memoryIn = (in instanceof MemoryInput) ? (MemoryInput) in : null;
+		this.registry = config.getRegistry();
+		this.compact = config.isCompact();
+		this.lengthPrefixed = config.isLengthPrefixed();
+		this.acyclic = config.isAcyclic();
+		this.symbols = new Object[config.getSymbolTableSize()];
 	}
 
 	/**
@@ -72,6 +142,9 @@ public class TWADeserializer
 	 */
 	public Object readObject()
 	{
+		Object reuse = currentReuseTarget;
+		currentReuseTarget = null;
+
 		try
 		{
 			int tag = in.read();
@@ -79,7 +152,12 @@ public class TWADeserializer
 			{
 				case TAG_REFERENCE:
 				{
-					return handles.get(in.readInt());
+					if (acyclic)
+					{
+						throw new TWASerializationException("TWASerialization: unexpected reference in an acyclic message");
+					}
+
+					return handles.get(readUnsigned());
 				}
 				case TAG_NULL:
 				{
@@ -87,7 +165,42 @@ public class TWADeserializer
 				}
 				case TAG_NEWOBJECT:
 				{
-					return readNewObject();
+					return readNewObject(reuse);
+				}
+				case TAG_CLASSDESC:
+				{
+					readClassDesc();
+					currentReuseTarget = reuse;
+					return readObject();
+				}
+				case TAG_RESET:
+				{
+					resetHandles();
+					currentReuseTarget = reuse;
+					return readObject();
+				}
+				case TAG_SYMBOL_RESET:
+				{
+					clearSymbols();
+					currentReuseTarget = reuse;
+					return readObject();
+				}
+				case TAG_SYMBOL:
+				{
+					int slot = readSymbolSlot();
+
+					if (symbols[slot] == null)
+					{
+						throw new TWASerializationException("TWASerialization: undefined symbol slot " + slot);
+					}
+
+					return symbols[slot];
+				}
+				case TAG_SYMBOL_DEF:
+				{
+					Object o = readObject();
+					symbols[readSymbolSlot()] = o;
+					return o;
 				}
 				case TAG_ARRAY_BOOLEAN:
 				case TAG_ARRAY_BYTE:
@@ -98,7 +211,7 @@ public class TWADeserializer
 				case TAG_ARRAY_SHORT:
 				case TAG_ARRAY_OBJECT:
 				{
-					return readArray(tag);
+					return readArray(tag, reuse);
 				}
 				case TAG_WRAPPER_BOOLEAN:
 				case TAG_WRAPPER_BYTE:
@@ -115,12 +228,14 @@ public class TWADeserializer
 					return readString();
 				}
 				case TAG_COLLECTION:
+				case TAG_COLLECTION_TYPED:
 				{
-					return readCollection();
+					return readCollection(tag);
 				}
 				case TAG_MAP:
+				case TAG_MAP_TYPED:
 				{
-					return readMap();
+					return readMap(tag);
 				}
 				case -1:
 				{
@@ -128,7 +243,7 @@ public class TWADeserializer
 				}
 				default:
 				{
-					throw new AssertionError("Unknown tag");
+					throw new TWASerializationException("TWASerialization: unknown tag " + tag);
 				}
 			}
 		}
@@ -136,6 +251,193 @@ public class TWADeserializer
 		{
 			throw new TWASerializationException(e);
 		}
+		catch (TWASerializationException e)
+		{
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			// E.g. a field or an element of the wrong class, from a corrupt message
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Reads the next object into the specified existing object instead of creating a new one, which must be of the class of the object
+	 * that was written. Objects referenced by the target are reused the same way, recursively: an existing value of a field is populated
+	 * in place if it is of the class of the value read, and an existing array if it also has the same length, in which case its elements
+	 * are reused as well. Collections and maps are refilled in place, as usual. Values that can not be reused are created and replace the
+	 * existing ones, and objects of {@link net.twagame.serial.annotation.TWASerializable#immutable() immutable} classes are never reused.
+	 * <p>
+	 * This avoids allocating a new object graph for each message when the decoded state is copied into long-lived objects anyway. The
+	 * existing graph should have the shape of the graph that was written: an existing object referenced from several places is populated
+	 * each time it is reached.
+	 * 
+	 * @param target
+	 * @return the target.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization, or the next object is not of the class of the target, in which case it has
+	 *             been read nevertheless.
+	 */
+	public Object readObjectInto(Object target)
+	{
+		boolean oldInPlace = inPlace;
+		inPlace = true;
+
+		try
+		{
+			currentReuseTarget = target;
+
+			if (readObject() != target)
+			{
+				throw new TWASerializationException("TWASerialization: the next object can not be read into "
+					+ target.getClass().getName());
+			}
+
+			return target;
+		}
+		finally
+		{
+			inPlace = oldInPlace;
+			currentReuseTarget = null;
+		}
+	}
+
+	/**
+	 * Reads a delta written by {@link TWASerializer#writeDelta(Object, Object)} and applies it to the specified object, which must be of
+	 * the class the delta was written for. Only the fields marked as changed are set, the others keep their values. Collections and maps
+	 * of changed fields are refilled in place, like when a new object is read.
+	 * 
+	 * @param target
+	 * @return the target.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization, the next object is not a delta, or the delta was written for another
+	 *             class.
+	 */
+	public Object readDeltaInto(Object target)
+	{
+		try
+		{
+			int tag;
+
+			while (((tag = in.read()) == TAG_CLASSDESC) || (tag == TAG_RESET) || (tag == TAG_SYMBOL_RESET))
+			{
+				if (tag == TAG_CLASSDESC)
+				{
+					readClassDesc();
+				}
+				else if (tag == TAG_RESET)
+				{
+					resetHandles();
+				}
+				else
+				{
+					clearSymbols();
+				}
+			}
+
+			if (tag != TAG_DELTA)
+			{
+				throw new TWASerializationException("TWASerialization: expected a delta, found tag " + tag);
+			}
+
+			ClassDescriptor classDesc = readClassId();
+
+			if (classDesc.getReflectedClass() != target.getClass())
+			{
+				throw new TWASerializationException("TWASerialization: the delta for " + classDesc.getName() + " can not be applied to "
+					+ target.getClass().getName());
+			}
+
+			FieldCodec[] fieldCodecs = classDesc.getFieldCodecs();
+			byte[] mask = new byte[(fieldCodecs.length + 7) >>> 3];
+
+			for (int read = 0, n; read < mask.length; read += n)
+			{
+				n = in.read(mask, read, mask.length - read);
+
+				if (n < 0)
+					throw new EOFException();
+			}
+
+			for (int i = 0; i < fieldCodecs.length; i++)
+			{
+				if ((mask[i >>> 3] & (1 << (i & 7))) != 0)
+				{
+					readField(target, fieldCodecs[i]);
+				}
+			}
+
+			return target;
+		}
+		catch (IOException | ClassNotFoundException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Reads the next value as a value of the specified reference field, without an object to store it into: arrays get the component type
+	 * of the field, and collections and maps are created as {@link ArrayList}s and {@link HashMap}s, as they are for fields left
+	 * {@code null} by the instantiation of their object. Used by {@link TWAView} to decode single fields.
+	 * 
+	 * @param codec
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	Object readFieldValue(ReferenceFieldCodec codec)
+	{
+		currentComponentType = codec.getComponentType();
+
+		try
+		{
+			return readObject();
+		}
+		finally
+		{
+			currentComponentType = null;
+		}
+	}
+
+	/**
+	 * Forgets all objects and class ids read so far. Call this between independent messages written by a {@link TWASerializer} whose
+	 * handles were reset, so that the objects of the previous message can be garbage collected and stale handles can not be resolved. The
+	 * session symbol table is kept.
+	 */
+	public void resetHandles()
+	{
+		handles.clear();
+		classes.clear();
+		lastHandle = -1;
+	}
+
+	/**
+	 * Forgets all symbols of the session symbol table, as if {@link TWASerializationConstants#TAG_SYMBOL_RESET TAG_SYMBOL_RESET} had been
+	 * read. References to the cleared slots fail until they are defined again.
+	 */
+	void clearSymbols()
+	{
+		Arrays.fill(symbols, null);
+	}
+
+	/**
+	 * Forgets all objects and class ids read so far, and expects the next new object to have the specified handle. Used by {@link TWAView}
+	 * to decode a value from the middle of a message.
+	 */
+	void resetHandles(int nextHandle)
+	{
+		resetHandles();
+		lastHandle = nextHandle - 1;
+	}
+
+	/**
+	 * Forgets all objects read so far, but keeps the class ids. This is the counterpart of {@link TWASerializer#resetObjectHandles()}.
+	 */
+	void resetObjectHandles()
+	{
+		handles.clear();
+		lastHandle = -1;
 	}
 
 	/**
@@ -150,251 +452,534 @@ public class TWADeserializer
 
 	private Object readString() throws IOException
 	{
-		int handle = in.readInt();
+		int handle = readHandle();
 		String str = in.readString();
-		handles.put(handle, str);
+		putHandle(handle, str);
 		return str;
 	}
 
-	private Object readNewObject() throws IOException, ClassNotFoundException
+	private Object readNewObject(Object reuse) throws IOException, ClassNotFoundException
 	{
-		int handle = in.readInt();
+		int handle = readHandle();
+
+		ClassDescriptor classDesc = readClassId();
 
-		currentClassDesc = ClassDescriptorsCache.getInstance().forName(in.readString());
+		boolean reusable = (reuse != null) && (reuse.getClass() == classDesc.getReflectedClass()) && !classDesc.isImmutable();
 
-		Object o = currentClassDesc.instantiate();
+		return readObjectContents(handle, classDesc, reusable ? reuse : null);
+	}
 
-		readFields(o, currentClassDesc.getFieldDescriptors());
+	/**
+	 * Reads the fields of a new object into the specified object, or into a new instance if it is {@code null}.
+	 */
+	private Object readObjectContents(int handle, ClassDescriptor classDesc, Object o) throws IOException, ClassNotFoundException
+	{
+		skipLength();
 
-		handles.put(handle, o);
+		if (o == null)
+		{
+			o = classDesc.instantiate();
+		}
+
+		// Registered before the fields are read, so that references back to the object resolve
+		putHandle(handle, o);
+
+		readFields(o, classDesc.getFieldCodecs());
 
 		return o;
 	}
 
-	private void readFields(Object o, FieldDescriptor[] fieldDescriptors) throws IOException, ClassNotFoundException
+	/**
+	 * Reads a slot of the symbol table.
+	 */
+	private int readSymbolSlot() throws IOException
+	{
+		int slot = readUnsigned();
+
+		if ((slot < 0) || (slot >= symbols.length))
+		{
+			throw new TWASerializationException("TWASerialization: invalid symbol slot " + slot);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Skips a length prefix, if length prefixes are enabled. The deserializer reads everything anyway, so it does not need the lengths.
+	 */
+	private void skipLength() throws IOException
+	{
+		if (lengthPrefixed)
+		{
+			in.readInt();
+		}
+	}
+
+	/**
+	 * Reads the handle of a new object, or returns {@code -1} in acyclic mode, where handles are not written.
+	 */
+	private int readHandle() throws IOException
+	{
+		if (acyclic)
+		{
+			return -1;
+		}
+
+		return checkNewHandle(readUnsigned());
+	}
+
+	/**
+	 * Checks the handle of a new object and makes it the last handle. The serializer assigns handles in the order it writes the objects,
+	 * so the handle of each new object is one more than the last one, or {@code 0} if the serializer has reset its handles with
+	 * {@link TWASerializer#resetHandles()} while this deserializer was not reset, in which case the previous objects are forgotten.
+	 */
+	private int checkNewHandle(int handle)
+	{
+		if ((handle == 0) && (lastHandle >= 0))
+		{
+			handles.clear();
+		}
+		else if (handle != (lastHandle + 1))
+		{
+			throw new TWASerializationException("TWASerialization: invalid handle " + handle + " after " + lastHandle);
+		}
+
+		lastHandle = handle;
+
+		return handle;
+	}
+
+	private void putHandle(int handle, Object o)
+	{
+		if (handle != -1)
+		{
+			handles.put(handle, o);
+		}
+	}
+
+	/**
+	 * Reads a handle, a class id or a size, written as a varint in compact mode or as a 4-byte int otherwise.
+	 */
+	private int readUnsigned() throws IOException
+	{
+		return compact ? in.readVarInt() : in.readInt();
+	}
+
+	/**
+	 * Reads the size of an array, a collection or a map. Each element takes at least one byte, so when the input is a {@link MemoryInput},
+	 * a size above the number of bytes remaining is rejected before anything is allocated for it.
+	 */
+	private int readSize() throws IOException
+	{
+		int size = readUnsigned();
+
+		if ((size < 0) || ((memoryIn != null) && (size > memoryIn.remaining())))
+		{
+			throw new TWASerializationException("TWASerialization: invalid size " + size);
+		}
+
+		return size;
+	}
+
+	private void readClassDesc() throws IOException, ClassNotFoundException
+	{
+		int classId = readUnsigned();
+		classes.put(classId, descriptors.forName(in.readString()));
+	}
+
+	/**
+	 * Reads a class id and returns the descriptor of the class it was assigned to, either by {@link TWASerializationConstants#TAG_CLASSDESC
+	 * TAG_CLASSDESC} or by the {@link ClassRegistry}.
+	 */
+	private ClassDescriptor readClassId() throws IOException
 	{
-		UnsafeField f;
-		loop: for (FieldDescriptor fdesc : fieldDescriptors)
+		int classId = readUnsigned();
+
+		ClassDescriptor classDesc = (ClassDescriptor) classes.find(classId);
+
+		if (classDesc == null)
 		{
-			currentClassDesc = ClassDescriptorsCache.getInstance().forClass(fdesc.getUnsafeField().getField().getType());
-			currentFieldDesc = fdesc;
-			f = fdesc.getUnsafeField();
-			switch (currentClassDesc.getType())
+			Class<?> registered = registry.getClass(classId);
+
+			if (registered == null)
 			{
-				case PRIMITIVE:
-				{
-					switch (currentClassDesc.getSubType())
-					{
-						case BYTE:
-						{
-							f.setByte(o, in.readByte());
-							continue loop;
-						}
-						case BOOLEAN:
-						{
-							f.setBoolean(o, in.readBoolean());
-							continue loop;
-						}
-						case SHORT:
-						{
-							f.setShort(o, in.readShort());
-							continue loop;
-						}
-						case INT:
-						{
-							f.setInt(o, in.readInt());
-							continue loop;
-						}
-						case LONG:
-						{
-							f.setLong(o, in.readLong());
-							continue loop;
-						}
-						case FLOAT:
-						{
-							f.setFloat(o, in.readFloat());
-							continue loop;
-						}
-						case DOUBLE:
-						{
-							f.setDouble(o, in.readDouble());
-							continue loop;
-						}
-						default:
-						{
-							throw new AssertionError();
-						}
-					}
-				}
-				default:
-				{
-					currentNewObject = o;
-					f.set(o, readObject());
-					continue loop;
-				}
+				throw new TWASerializationException("TWASerialization: unknown class id " + classId);
 			}
+
+			// Registered classes are resolved once and then stay in the table, since their ids never get reassigned
+			classDesc = descriptors.forClass(registered);
+			classes.put(classId, classDesc);
 		}
+
+		return classDesc;
 	}
 
-	private Object readArray(int tag) throws IOException, ArrayIndexOutOfBoundsException, IllegalArgumentException, ClassNotFoundException
+	private void readFields(Object o, FieldCodec[] fieldCodecs) throws IOException, ClassNotFoundException
 	{
-		int handle = in.readInt();
-		int size = in.readInt();
+		for (FieldCodec codec : fieldCodecs)
+		{
+			readField(o, codec);
+		}
+	}
+
+	private void readField(Object o, FieldCodec codec) throws IOException
+	{
+		if (codec.isPrimitive())
+		{
+			((PrimitiveFieldCodec) codec).read(o, in);
+		}
+		else
+		{
+			ReferenceFieldCodec referenceCodec = (ReferenceFieldCodec) codec;
+
+			currentNewObject = o;
+			currentFieldCodec = referenceCodec;
+			currentComponentType = codec.getComponentType();
+
+			if (inPlace)
+			{
+				currentReuseTarget = referenceCodec.get(o);
+			}
+
+			referenceCodec.set(o, readObject());
+
+			currentFieldCodec = null;
+			currentComponentType = null;
+		}
+	}
+
+	/**
+	 * Reads an array, into the specified existing array if it is of the same type and length.
+	 */
+	private Object readArray(int tag, Object reuse) throws IOException, ArrayIndexOutOfBoundsException, IllegalArgumentException,
+		ClassNotFoundException
+	{
+		int handle = readHandle();
+		int size = readSize();
 
 		switch (tag)
 		{
 			case TAG_ARRAY_BYTE:
 			{
-				byte[] bytes = new byte[size];
+				byte[] bytes = ((reuse instanceof byte[]) && (((byte[]) reuse).length == size)) ? (byte[]) reuse : new byte[size];
+
+				for (int read = 0, n; read < size; read += n)
+				{
+					// Inputs may return fewer bytes than requested
+					n = in.read(bytes, read, size - read);
 
-				in.read(bytes, 0, size);
+					if (n < 0)
+						throw new EOFException();
+				}
 
-				handles.put(handle, bytes);
+				putHandle(handle, bytes);
 
 				return bytes;
 			}
 			case TAG_ARRAY_BOOLEAN:
 			{
-				boolean[] booleans = new boolean[size];
+				boolean[] booleans = ((reuse instanceof boolean[]) && (((boolean[]) reuse).length == size)) ? (boolean[]) reuse
+					: new boolean[size];
 
-				for (int i = 0; i < size; i++)
-					booleans[i] = in.readBoolean();
+				in.readBooleans(booleans, 0, size);
 
-				handles.put(handle, booleans);
+				putHandle(handle, booleans);
 
 				return booleans;
 			}
 			case TAG_ARRAY_SHORT:
 			{
-				short[] shorts = new short[size];
+				short[] shorts = ((reuse instanceof short[]) && (((short[]) reuse).length == size)) ? (short[]) reuse : new short[size];
 
-				for (int i = 0; i < size; i++)
-					shorts[i] = in.readShort();
+				in.readShorts(shorts, 0, size);
 
-				handles.put(handle, shorts);
+				putHandle(handle, shorts);
 
 				return shorts;
 			}
 			case TAG_ARRAY_INT:
 			{
-				int[] ints = new int[size];
+				int[] ints = ((reuse instanceof int[]) && (((int[]) reuse).length == size)) ? (int[]) reuse : new int[size];
 
-				for (int i = 0; i < size; i++)
-					ints[i] = in.readInt();
+				in.readInts(ints, 0, size);
 
-				handles.put(handle, ints);
+				putHandle(handle, ints);
 
 				return ints;
 			}
 			case TAG_ARRAY_LONG:
 			{
-				long[] longs = new long[size];
+				long[] longs = ((reuse instanceof long[]) && (((long[]) reuse).length == size)) ? (long[]) reuse : new long[size];
 
-				for (int i = 0; i < size; i++)
-					longs[i] = in.readLong();
+				in.readLongs(longs, 0, size);
 
-				handles.put(handle, longs);
+				putHandle(handle, longs);
 
 				return longs;
 			}
 			case TAG_ARRAY_FLOAT:
 			{
-				float[] floats = new float[size];
+				float[] floats = ((reuse instanceof float[]) && (((float[]) reuse).length == size)) ? (float[]) reuse : new float[size];
 
-				for (int i = 0; i < size; i++)
-					floats[i] = in.readFloat();
+				in.readFloats(floats, 0, size);
 
-				handles.put(handle, floats);
+				putHandle(handle, floats);
 
 				return floats;
 			}
 			case TAG_ARRAY_DOUBLE:
 			{
-				double[] doubles = new double[size];
+				double[] doubles = ((reuse instanceof double[]) && (((double[]) reuse).length == size)) ? (double[]) reuse
+					: new double[size];
 
-				for (int i = 0; i < size; i++)
-					doubles[i] = in.readDouble();
+				in.readDoubles(doubles, 0, size);
 
-				handles.put(handle, doubles);
+				putHandle(handle, doubles);
 
 				return doubles;
 			}
 			case TAG_ARRAY_OBJECT:
 			{
-				Object array = Array.newInstance(currentClassDesc.getComponentType(), size);
+				// Arrays that are not values of fields (e.g. collection elements) are read as Object[], unless they are read into an array
+				Class<?> componentType = currentComponentType;
+				Object[] array;
 
-				// This might help with the the multi-dimensional arrays.
-				currentClassDesc = ClassDescriptorsCache.getInstance().forClass(currentClassDesc.getComponentType());
+				if (componentType == null)
+				{
+					componentType = (reuse instanceof Object[]) ? reuse.getClass().getComponentType() : Object.class;
+				}
+
+				skipLength();
+
+				if ((reuse != null) && (reuse.getClass().getComponentType() == componentType) && (((Object[]) reuse).length == size))
+				{
+					array = (Object[]) reuse;
+				}
+				else
+				{
+					array = (Object[]) Array.newInstance(componentType, size);
+				}
+
+				putHandle(handle, array);
 
 				for (int i = 0; i < size; i++)
-					Array.set(array, i, readObject());
+				{
+					// Elements of multi-dimensional arrays are arrays of the component type
+					currentComponentType = componentType.getComponentType();
+
+					if (inPlace)
+					{
+						currentReuseTarget = array[i];
+					}
 
-				handles.put(handle, array);
+					array[i] = readObject();
+				}
 
 				return array;
 			}
 			default:
 			{
-				throw new AssertionError();
+				throw new TWASerializationException("TWASerialization: unknown array tag " + tag);
 			}
 		}
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private Collection readCollection() throws IOException, ClassNotFoundException
+	private Collection readCollection(int tag) throws IOException, ClassNotFoundException
 	{
-		int handle = in.readInt();
-		int size = in.readInt();
+		int handle = readHandle();
+		int size = readSize();
+		ClassDescriptor elementDesc = (tag == TAG_COLLECTION_TYPED) ? readElementType() : null;
+		skipLength();
 
 		Collection c = null;
 
-		if (currentFieldDesc != null)
-			c = (Collection) currentFieldDesc.getUnsafeField().get(currentNewObject);
+		if (currentFieldCodec != null)
+			c = (Collection) currentFieldCodec.get(currentNewObject);
+
+		currentFieldCodec = null; // Elements are not values of the field
+		currentComponentType = null;
 
 		if (c == null)
 			c = new ArrayList();
 
 		c.clear();
+		putHandle(handle, c);
 
 		for (int i = 0; i < size; i++)
 		{
-			c.add(readObject());
+			c.add(readElement(elementDesc));
 		}
 
-		handles.put(handle, c);
-
 		return c;
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private Map readMap() throws IOException, ClassNotFoundException
+	private Map readMap(int tag) throws IOException, ClassNotFoundException
 	{
-		int handle = in.readInt();
-		int size = in.readInt();
+		int handle = readHandle();
+		int size = readSize();
+		ClassDescriptor keyDesc = (tag == TAG_MAP_TYPED) ? readElementType() : null;
+		ClassDescriptor valueDesc = (tag == TAG_MAP_TYPED) ? readElementType() : null;
+		skipLength();
 
 		Map m = null;
 
-		if (currentFieldDesc != null) // Get the map from the current field, if there is one
-			m = (Map) currentFieldDesc.getUnsafeField().get(currentNewObject);
+		if (currentFieldCodec != null) // Get the map from the current field, if there is one
+			m = (Map) currentFieldCodec.get(currentNewObject);
+
+		currentFieldCodec = null; // Keys and values are not values of the field
+		currentComponentType = null;
 
 		if (m == null) // If there is no current field, or it is not initialized with a map implementation, use default
 			m = new HashMap();
 
 		m.clear();
+		putHandle(handle, m);
 
 		Object key, value;
 		for (int i = 0; i < size; i++)
 		{
-			key = readObject();
-			value = readObject();
+			key = readElement(keyDesc);
+			value = readElement(valueDesc);
 			m.put(key, value);
 		}
 
-		handles.put(handle, m);
-
 		return m;
 	}
 
+	/**
+	 * Reads the element type of a typed collection or map, see {@link TWASerializationConstants#TAG_COLLECTION_TYPED}. Returns
+	 * {@code null} for elements written as usual.
+	 */
+	private ClassDescriptor readElementType() throws IOException
+	{
+		int tag = in.read();
+
+		switch (tag)
+		{
+			case TAG_NULL:
+			{
+				return null;
+			}
+			case TAG_NEWOBJECT:
+			{
+				ClassDescriptor classDesc = readClassId();
+
+				if (classDesc.getType() != ClassType.TWASERIALIZABLE)
+				{
+					throw new TWASerializationException("TWASerialization: " + classDesc.getName() + " is not an element type");
+				}
+
+				return classDesc;
+			}
+			case TAG_WRAPPER_BYTE:
+			{
+				return descriptors.forClass(Byte.class);
+			}
+			case TAG_WRAPPER_BOOLEAN:
+			{
+				return descriptors.forClass(Boolean.class);
+			}
+			case TAG_WRAPPER_SHORT:
+			{
+				return descriptors.forClass(Short.class);
+			}
+			case TAG_WRAPPER_INT:
+			{
+				return descriptors.forClass(Integer.class);
+			}
+			case TAG_WRAPPER_LONG:
+			{
+				return descriptors.forClass(Long.class);
+			}
+			case TAG_WRAPPER_FLOAT:
+			{
+				return descriptors.forClass(Float.class);
+			}
+			case TAG_WRAPPER_DOUBLE:
+			{
+				return descriptors.forClass(Double.class);
+			}
+			default:
+			{
+				throw new TWASerializationException("TWASerialization: unexpected element type " + tag);
+			}
+		}
+	}
+
+	/**
+	 * Reads an element of a collection or map of the specified element type, or as usual if the type is {@code null}.
+	 */
+	private Object readElement(ClassDescriptor elementDesc) throws IOException, ClassNotFoundException
+	{
+		if (elementDesc == null)
+		{
+			return readObject();
+		}
+
+		switch (elementDesc.getSubType())
+		{
+			case BYTE:
+			{
+				return Byte.valueOf(in.readByte());
+			}
+			case BOOLEAN:
+			{
+				return Boolean.valueOf(in.readBoolean());
+			}
+			case SHORT:
+			{
+				return Short.valueOf(in.readShort());
+			}
+			case INT:
+			{
+				if (compact)
+				{
+					int v = in.readVarInt();
+					return Integer.valueOf((v >>> 1) ^ -(v & 1));
+				}
+
+				return Integer.valueOf(in.readInt());
+			}
+			case LONG:
+			{
+				if (compact)
+				{
+					long v = in.readVarLong();
+					return Long.valueOf((v >>> 1) ^ -(v & 1));
+				}
+
+				return Long.valueOf(in.readLong());
+			}
+			case FLOAT:
+			{
+				return Float.valueOf(in.readFloat());
+			}
+			case DOUBLE:
+			{
+				return Double.valueOf(in.readDouble());
+			}
+			default:
+			{
+				if (acyclic)
+				{
+					return readObjectContents(-1, elementDesc, null);
+				}
+
+				int handle = readUnsigned();
+
+				// Handles are assigned in ascending order, so a handle not above the last one refers to an existing object
+				if (handle <= lastHandle)
+				{
+					return handles.get(handle);
+				}
+
+				return readObjectContents(checkNewHandle(handle), elementDesc, null);
+			}
+		}
+	}
+
 	private Object readWrapper(int tag) throws IOException
 	{
 		switch (tag)
@@ -429,7 +1014,7 @@ public class TWADeserializer
 			}
 			default:
 			{
-				throw new AssertionError();
+				throw new TWASerializationException("TWASerialization: unknown wrapper tag " + tag);
 			}
 		}
 	}
@@ -443,8 +1028,23 @@ public class TWADeserializer
 	{
 		private static final int INITIAL_SIZE = 16;
 
+		/**
+		 * Tables grown beyond this size by a large object graph are released on clear rather than kept for the next graph
+		 */
+		private static final int MAX_RETAINED_SIZE = 1 << 16;
+
+		/**
+		 * The maximum size of the table, the maximum array size of common VMs
+		 */
+		private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
 		private Object[] values = new Object[INITIAL_SIZE];
 
+		/**
+		 * One more than the highest handle put since the last clear
+		 */
+		private int used = 0;
+
 		/**
 		 * Creates a Handle-to-Object mapping for the specified handle and object.
 		 * 
@@ -458,30 +1058,70 @@ public class TWADeserializer
 
 			if (handle > (values.length - 1))
 			{
-				Object[] newArray = new Object[handle * 2];
-				System.arraycopy(values, 0, newArray, 0, values.length);
-				values = newArray;
+				if (handle >= MAX_SIZE)
+				{
+					throw new TWASerializationException("TWASerialization: too many handles");
+				}
+
+				// Doubled, or more if a view starts from a handle beyond that
+				long newSize = Math.max((long) values.length * 2, (long) handle + 1);
+				values = Arrays.copyOf(values, (int) Math.min(newSize, MAX_SIZE));
 			}
 
 			values[handle] = object;
+
+			if (handle >= used)
+			{
+				used = handle + 1;
+			}
+		}
+
+		/**
+		 * Removes all mappings, releasing the table if it has grown beyond {@link #MAX_RETAINED_SIZE}.
+		 */
+		public void clear()
+		{
+			if (values.length > MAX_RETAINED_SIZE)
+			{
+				values = new Object[INITIAL_SIZE];
+			}
+			else
+			{
+				Arrays.fill(values, 0, used, null);
+			}
+			used = 0;
+		}
+
+		/**
+		 * Returns an object for a given handle, or {@code null} if no object has been put for that handle.
+		 * 
+		 * @param handle
+		 * @return
+		 */
+		public Object find(int handle)
+		{
+			return ((handle >= 0) && (handle < values.length)) ? values[handle] : null;
 		}
 
 		/**
-		 * Returns an object for a given handle.
-		 * <p>
-		 * This method should never return {@code null} assuming that the {@link TWASerializer} works properly and does not write references
-		 * to the objects that have not been written yet, and the {@link TWADeserializer} works properly and requests objects only for
-		 * handles read after the {@link TWASerializationConstants#TAG_REFERENCE TAG_REFERENCE}.
+		 * Returns the object for a given handle. The {@link TWASerializer} only writes references to objects it has written before, so a
+		 * handle without an object comes from a corrupt message, or from a message whose earlier parts were lost.
 		 * 
 		 * @param handle
 		 * @return
+		 * @throws TWASerializationException
+		 *             if no object has been put for the handle.
 		 */
 		public Object get(int handle)
 		{
-			assert (handle < (values.length - 1));
-			assert (values[handle] != null);
+			Object o = find(handle);
+
+			if (o == null)
+			{
+				throw new TWASerializationException("TWASerialization: reference to an unknown handle " + handle);
+			}
 
-			return values[handle];
+			return o;
 		}
 	}
 }
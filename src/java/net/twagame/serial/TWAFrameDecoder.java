@@ -0,0 +1,401 @@
+package net.twagame.serial;
+
+import java.nio.ByteBuffer;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+
+/**
+ * Reads objects from frames written by a {@link TWAFrameEncoder}, as the bytes arrive. Intended for non-blocking I/O:
+ * received bytes are passed to {@link TWAFrameDecoder#feed(byte[], int, int)} in chunks of any size, and a frame is only decoded once it
+ * has arrived completely, so neither partial reads nor blocking can occur.
+ * <p>
+ * A typical read loop:
+ * 
+ * <pre>
+ * decoder.feed(buffer);
+ * while (decoder.hasFrame())
+ * {
+ * 	handle(decoder.readObject());
+ * }
+ * </pre>
+ * 
+ * The decoder keeps its handles across frames, like the encoder does, and resets them when a frame starts with a reset tag. The bytes of
+ * incomplete frames are kept until the rest of the frame is fed, so no progress is lost between calls. The buffer grows to hold a large
+ * frame and shrinks back once that frame is consumed.
+ * <p>
+ * Frame headers are validated before anything is decoded. A frame with a wrong magic number is dropped once it has arrived, see
+ * {@link TWAFrameDecoder#getDroppedFrames()}. A frame that can not be decoded is dropped as well, after its exception is thrown, so the next
+ * frame can still be read; frames referring to objects of a dropped frame fail as well, until the encoder resets its handles. A frame
+ * length above the maximum is an error, since the frame boundaries can no longer be trusted.
+ * <p>
+ * To recover from a dropped frame, the receiving peer reports it (e.g. when {@link TWAFrameDecoder#getDroppedFrames()} grows), and the
+ * sending peer calls {@link TWAFrameEncoder#resetHandles()} and, if the session symbol table is enabled,
+ * {@link TWAFrameEncoder#resetSymbols()}. The next frame then carries the resets, and the frames from it on decode again. The symbol table
+ * of the decoder is cleared when a frame is dropped, so that no frame decodes to the wrong symbols in the meantime.
+ * 
+ * @author hadadzhi
+ */
+public class TWAFrameDecoder
+{
+	/**
+	 * The default maximum message length, in bytes.
+	 */
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	/**
+	 * A buffer grown beyond this capacity by a large frame is replaced by one of the initial capacity once the large frame is consumed
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private final int magic;
+	private final int maxFrameLength;
+	private final MemoryInput in;
+	private final TWADeserializer deserializer;
+
+	private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * The position of the first byte not read yet
+	 */
+	private int start = 0;
+
+	/**
+	 * The position after the last byte fed
+	 */
+	private int end = 0;
+
+	private long droppedFrames = 0;
+
+	/**
+	 * Creates a frame decoder with the default {@link TWASerializationConfig}, {@link TWAFrameEncoder#DEFAULT_MAGIC} and
+	 * {@link TWAFrameDecoder#DEFAULT_MAX_FRAME_LENGTH}.
+	 */
+	public TWAFrameDecoder()
+	{
+		this(new TWASerializationConfig(), TWAFrameEncoder.DEFAULT_MAGIC, DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	/**
+	 * Creates a frame decoder with the specified config and magic number. The encoder must use an equal config and the same magic number.
+	 * 
+	 * @param config
+	 * @param magic
+	 *            the magic number assigned to the connection.
+	 * @param maxFrameLength
+	 *            the maximum message length, in bytes. Longer frames are rejected as soon as their length prefix arrives.
+	 */
+	public TWAFrameDecoder(TWASerializationConfig config, int magic, int maxFrameLength)
+	{
+		if (maxFrameLength < 0)
+		{
+			throw new IllegalArgumentException("maxFrameLength < 0");
+		}
+
+		this.magic = magic;
+		this.maxFrameLength = maxFrameLength;
+		in = new MemoryInput(buffer);
+		deserializer = new TWADeserializer(in, config);
+	}
+
+	/**
+	 * Appends <code>len</code> received bytes from the specified array starting at <code>off</code>. The array is not retained.
+	 * 
+	 * @param b
+	 * @param off
+	 * @param len
+	 */
+	public void feed(byte[] b, int off, int len)
+	{
+		if ((off < 0) || (len < 0) || (len > (b.length - off)))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		require(len);
+		System.arraycopy(b, off, buffer, end, len);
+		end += len;
+	}
+
+	/**
+	 * Appends the remaining bytes of the specified buffer, advancing its position to its limit.
+	 * 
+	 * @param src
+	 */
+	public void feed(ByteBuffer src)
+	{
+		int len = src.remaining();
+
+		require(len);
+		src.get(buffer, end, len);
+		end += len;
+	}
+
+	/**
+	 * Returns whether a complete frame has been fed and not read yet. Complete frames with a wrong magic number are dropped.
+	 * 
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the length of the next frame is invalid.
+	 */
+	public boolean hasFrame()
+	{
+		return bytesNeeded() == 0;
+	}
+
+	/**
+	 * Returns the minimum number of bytes that must be fed before the next frame is complete, or {@code 0} if it already is. Until the
+	 * header of the next frame has arrived, only the bytes missing from the header are counted. Complete frames with a wrong magic number
+	 * are dropped.
+	 * 
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the length of the next frame is invalid.
+	 */
+	public int bytesNeeded()
+	{
+		for (;;)
+		{
+			int buffered = end - start;
+
+			if (buffered < TWAFrameEncoder.HEADER_SIZE)
+			{
+				return TWAFrameEncoder.HEADER_SIZE - buffered;
+			}
+
+			int needed = (TWAFrameEncoder.HEADER_SIZE + frameLength()) - buffered;
+
+			if (needed > 0)
+			{
+				return needed;
+			}
+
+			if (getInt(start) == magic)
+			{
+				return 0;
+			}
+
+			droppedFrames++;
+			consumeFrame();
+		}
+	}
+
+	/**
+	 * Returns the number of frames dropped so far, either with a wrong magic number or because they could not be decoded.
+	 * 
+	 * @return
+	 */
+	public long getDroppedFrames()
+	{
+		return droppedFrames;
+	}
+
+	/**
+	 * Deserializes the object from the next frame.
+	 * 
+	 * @return
+	 * @throws IllegalStateException
+	 *             if no complete frame has been fed, see {@link TWAFrameDecoder#hasFrame()}.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization, or the object does not take up the whole frame. The frame is dropped.
+	 */
+	public Object readObject()
+	{
+		beginFrame();
+
+		try
+		{
+			Object o = deserializer.readObject();
+			checkFrameEnd();
+
+			return o;
+		}
+		catch (TWASerializationException e)
+		{
+			dropFrame();
+			throw e;
+		}
+		finally
+		{
+			consumeFrame();
+		}
+	}
+
+	/**
+	 * Deserializes the object from the next frame into the specified existing object, see {@link TWADeserializer#readObjectInto(Object)}.
+	 * 
+	 * @param target
+	 * @return the target.
+	 * @throws IllegalStateException
+	 *             if no complete frame has been fed, see {@link TWAFrameDecoder#hasFrame()}.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization, or the frame does not contain an object of the class of the target. The
+	 *             frame is dropped.
+	 */
+	public Object readObjectInto(Object target)
+	{
+		beginFrame();
+
+		try
+		{
+			deserializer.readObjectInto(target);
+			checkFrameEnd();
+
+			return target;
+		}
+		catch (TWASerializationException e)
+		{
+			dropFrame();
+			throw e;
+		}
+		finally
+		{
+			consumeFrame();
+		}
+	}
+
+	/**
+	 * Applies the delta from the next frame to the specified object, see {@link TWADeserializer#readDeltaInto(Object)}.
+	 * 
+	 * @param target
+	 * @return the target.
+	 * @throws IllegalStateException
+	 *             if no complete frame has been fed, see {@link TWAFrameDecoder#hasFrame()}.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization, or the frame does not contain a delta for the class of the target. The
+	 *             frame is dropped.
+	 */
+	public Object readDeltaInto(Object target)
+	{
+		beginFrame();
+
+		try
+		{
+			deserializer.readDeltaInto(target);
+			checkFrameEnd();
+
+			return target;
+		}
+		catch (TWASerializationException e)
+		{
+			dropFrame();
+			throw e;
+		}
+		finally
+		{
+			consumeFrame();
+		}
+	}
+
+	/**
+	 * Counts a frame that could not be decoded. The symbols it defined may be partly missing, so the symbol table is cleared: frames
+	 * referring to symbols then fail instead of returning the wrong objects, until the encoder resets its symbols.
+	 */
+	private void dropFrame()
+	{
+		droppedFrames++;
+		deserializer.clearSymbols();
+	}
+
+	/**
+	 * Returns the length of the next frame. The header must be buffered.
+	 */
+	private int frameLength()
+	{
+		int length = getInt(start + 4);
+
+		if ((length < 0) || (length > maxFrameLength))
+		{
+			throw new TWASerializationException("Invalid frame length: " + length);
+		}
+
+		return length;
+	}
+
+	/**
+	 * Points the input at the message of the next frame.
+	 */
+	private void beginFrame()
+	{
+		if (!hasFrame())
+		{
+			throw new IllegalStateException("No complete frame has been fed");
+		}
+
+		in.reset(buffer, start + TWAFrameEncoder.HEADER_SIZE, frameLength());
+	}
+
+	/**
+	 * Checks that the message took up the whole frame.
+	 */
+	private void checkFrameEnd()
+	{
+		if (in.remaining() != 0)
+		{
+			throw new TWASerializationException("The frame has " + in.remaining() + " unread bytes");
+		}
+	}
+
+	/**
+	 * Skips the next frame, which must be complete. Shrinks the buffer back to its initial capacity if it has grown beyond
+	 * {@link #MAX_RETAINED_CAPACITY} and the unread bytes fit.
+	 */
+	private void consumeFrame()
+	{
+		start += TWAFrameEncoder.HEADER_SIZE + frameLength();
+
+		int buffered = end - start;
+
+		if ((buffer.length > MAX_RETAINED_CAPACITY) && (buffered <= INITIAL_CAPACITY))
+		{
+			byte[] target = new byte[INITIAL_CAPACITY];
+			System.arraycopy(buffer, start, target, 0, buffered);
+			buffer = target;
+			start = 0;
+			end = buffered;
+		}
+		else if (start == end)
+		{
+			start = 0;
+			end = 0;
+		}
+	}
+
+	private int getInt(int pos)
+	{
+		return ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16) | ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
+	}
+
+	/**
+	 * Ensures that {@code required} more bytes can be fed, moving the unread bytes to the start of the buffer or expanding it as needed.
+	 */
+	private void require(int required)
+	{
+		if ((buffer.length - end) >= required)
+		{
+			return;
+		}
+
+		int buffered = end - start;
+
+		if (((long) buffered + required) > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("The TWAFrameDecoder has exceeded the maximum byte array capacity.");
+		}
+
+		byte[] target = buffer;
+
+		if ((buffer.length - buffered) < required)
+		{
+			long newCapacity = ((long) buffered + required) * 2;
+			target = new byte[(newCapacity > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) newCapacity];
+		}
+
+		System.arraycopy(buffer, start, target, 0, buffered);
+		buffer = target;
+		start = 0;
+		end = buffered;
+	}
+}
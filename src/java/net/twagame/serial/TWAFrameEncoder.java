@@ -0,0 +1,162 @@
+package net.twagame.serial;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryOutput;
+
+/**
+ * Writes objects as frames, to be read with a {@link TWAFrameDecoder}:
+ * 
+ * <pre>
+ * (int)magic (int)length message
+ * </pre>
+ * 
+ * where <code>magic</code> is the magic number of the connection and <code>length</code> is the size of the message in bytes. The decoder
+ * drops frames with a wrong magic number without decoding them. The frames are buffered in memory until they are sent, see
+ * {@link TWAFrameEncoder#getOutput()}.
+ * <p>
+ * Like a {@link TWASerializer} writing to a stream, the encoder keeps its handles across frames, so later frames can refer to objects
+ * written in earlier ones, and so does the session symbol table. The decoder must therefore receive all frames, in order. Handles and
+ * symbols are reset in-band, see {@link TWAFrameEncoder#resetHandles()} and {@link TWAFrameEncoder#resetSymbols()}; both are needed to
+ * resume after the decoder dropped a frame.
+ * 
+ * @author hadadzhi
+ */
+public class TWAFrameEncoder
+{
+	/**
+	 * The size of a frame header, in bytes.
+	 */
+	public static final int HEADER_SIZE = 8;
+
+	/**
+	 * The magic number used by default, <code>"TWA1"</code> in ASCII.
+	 */
+	public static final int DEFAULT_MAGIC = 0x54574131;
+
+	private final int magic;
+	private final MemoryOutput out;
+	private final TWASerializer serializer;
+
+	private boolean resetPending = false;
+	private boolean symbolResetPending = false;
+
+	/**
+	 * Creates a frame encoder with the default {@link TWASerializationConfig} and {@link TWAFrameEncoder#DEFAULT_MAGIC}.
+	 */
+	public TWAFrameEncoder()
+	{
+		this(new TWASerializationConfig(), DEFAULT_MAGIC);
+	}
+
+	/**
+	 * Creates a frame encoder with the specified config and magic number. The decoder must use an equal config and the same magic number.
+	 * 
+	 * @param config
+	 * @param magic
+	 *            the magic number assigned to the connection.
+	 */
+	public TWAFrameEncoder(TWASerializationConfig config, int magic)
+	{
+		this.magic = magic;
+		out = new MemoryOutput();
+		serializer = new TWASerializer(out, config);
+	}
+
+	/**
+	 * Serializes an object into a new frame, appended to the buffered frames.
+	 * 
+	 * @param o
+	 *            the object to serialize, may be {@code null}.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization. The encoder should not be used any further in this case.
+	 */
+	public void writeObject(Object o)
+	{
+		int start = beginFrame();
+		serializer.writeObject(o);
+		endFrame(start);
+	}
+
+	/**
+	 * Writes a delta of an object against a baseline into a new frame, see {@link TWASerializer#writeDelta(Object, Object)}. The frame
+	 * must be read with {@link TWAFrameDecoder#readDeltaInto(Object)}.
+	 * 
+	 * @param current
+	 * @param baseline
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization. The encoder should not be used any further in this case.
+	 */
+	public void writeDelta(Object current, Object baseline)
+	{
+		int start = beginFrame();
+		serializer.writeDelta(current, baseline);
+		endFrame(start);
+	}
+
+	/**
+	 * Reinitializes the handle system. The reset is written at the start of the next frame (see {@link TWASerializer#writeReset()}), so the
+	 * decoder resets its handles when it reads that frame.
+	 */
+	public void resetHandles()
+	{
+		resetPending = true;
+	}
+
+	/**
+	 * Clears the session symbol table. The reset is written at the start of the next frame (see {@link TWASerializer#writeSymbolReset()}),
+	 * so the decoder clears its symbol table when it reads that frame, and the symbols are written in full again.
+	 */
+	public void resetSymbols()
+	{
+		symbolResetPending = true;
+	}
+
+	/**
+	 * Returns the output holding the frames written since the last {@link TWAFrameEncoder#clear()}. Its contents always end on a frame
+	 * boundary after {@link TWAFrameEncoder#writeObject(Object)} returns normally.
+	 * 
+	 * @return
+	 */
+	public MemoryOutput getOutput()
+	{
+		return out;
+	}
+
+	/**
+	 * Writes the frame header with a placeholder length and the pending resets, if any. Returns the position of the header.
+	 */
+	private int beginFrame()
+	{
+		int start = out.size();
+
+		out.writeInt(magic);
+		out.writeInt(0); // Length placeholder
+
+		if (resetPending)
+		{
+			serializer.writeReset();
+			resetPending = false;
+		}
+
+		if (symbolResetPending)
+		{
+			serializer.writeSymbolReset();
+			symbolResetPending = false;
+		}
+
+		return start;
+	}
+
+	private void endFrame(int start)
+	{
+		out.writeIntAt(start + 4, out.size() - start - HEADER_SIZE);
+	}
+
+	/**
+	 * Discards the buffered frames, e.g. after they have been sent. Handles are kept.
+	 */
+	public void clear()
+	{
+		out.reset();
+	}
+}
@@ -0,0 +1,134 @@
+package net.twagame.serial;
+
+import net.twagame.serial.io.SerializationOutput;
+import net.twagame.serial.util.ClassRegistry;
+
+/**
+ * Settings that affect the stream format. The {@link TWASerializer} and the {@link TWADeserializer} on both sides of a stream must use
+ * equal settings. A config should not be modified after it has been passed to a serializer or a deserializer; after that it can be shared
+ * by any number of threads.
+ * 
+ * @author hadadzhi
+ */
+public class TWASerializationConfig
+{
+	private ClassRegistry registry = new ClassRegistry();
+	private boolean compact;
+	private int symbolTableSize = 0;
+	private int maxSymbolLength = 64;
+	private boolean lengthPrefixed;
+	private boolean acyclic;
+
+	/**
+	 * Returns the {@link ClassRegistry} used to write and resolve class ids. By default the registry is empty.
+	 * 
+	 * @return
+	 */
+	public ClassRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	public void setRegistry(ClassRegistry registry)
+	{
+		this.registry = registry;
+	}
+
+	/**
+	 * Returns {@code true} if handles, class ids, and array, collection and map sizes are written as varints (see
+	 * {@link SerializationOutput#writeVarInt(int)}) instead of fixed 4-byte ints. The default is {@code false}. Values of primitive fields
+	 * and arrays are not affected.
+	 * 
+	 * @return
+	 */
+	public boolean isCompact()
+	{
+		return compact;
+	}
+
+	public void setCompact(boolean compact)
+	{
+		this.compact = compact;
+	}
+
+	/**
+	 * Returns the number of entries in the session symbol table, or {@code 0} if the table is disabled, which is the default.
+	 * <p>
+	 * The symbol table holds strings of at most {@link TWASerializationConfig#getMaxSymbolLength()} characters and objects of
+	 * {@link net.twagame.serial.annotation.TWASerializable#immutable() immutable} classes. Unlike handles, symbols survive
+	 * {@link TWASerializer#resetHandles()} and {@link TWASerializer#writeReset()}, so a value repeated in many messages of a session is
+	 * written in full once and as a short reference afterwards. When the table is full, the least recently used entry is evicted. Since the
+	 * deserializer must see every message of the session in order, the symbol table is only supported by a persistent serializer and
+	 * deserializer pair, e.g. a {@link TWAFrameEncoder} and a {@link TWAFrameDecoder}, and not by {@link TWACodec} or
+	 * {@link TWABatchCodec}.
+	 * 
+	 * @return
+	 */
+	public int getSymbolTableSize()
+	{
+		return symbolTableSize;
+	}
+
+	public void setSymbolTableSize(int symbolTableSize)
+	{
+		if (symbolTableSize < 0)
+		{
+			throw new IllegalArgumentException("symbolTableSize < 0");
+		}
+
+		this.symbolTableSize = symbolTableSize;
+	}
+
+	/**
+	 * Returns the maximum length of the strings put into the symbol table. Longer strings are always written in full. The default is
+	 * {@code 64}.
+	 * 
+	 * @return
+	 */
+	public int getMaxSymbolLength()
+	{
+		return maxSymbolLength;
+	}
+
+	public void setMaxSymbolLength(int maxSymbolLength)
+	{
+		this.maxSymbolLength = maxSymbolLength;
+	}
+
+	/**
+	 * Returns {@code true} if the contents of objects, object arrays, collections and maps are preceded by their length in bytes, as a
+	 * 4-byte int. The default is {@code false}. Length prefixes let a {@link TWAView} skip values without decoding them. Since the lengths
+	 * are filled in after the contents are written, the serializer must write to a {@link net.twagame.serial.io.MemoryOutput MemoryOutput}.
+	 * 
+	 * @return
+	 */
+	public boolean isLengthPrefixed()
+	{
+		return lengthPrefixed;
+	}
+
+	public void setLengthPrefixed(boolean lengthPrefixed)
+	{
+		this.lengthPrefixed = lengthPrefixed;
+	}
+
+	/**
+	 * Returns {@code true} if messages are written as trees: no object is written more than once per message, so the serializer does not
+	 * track the objects it has written and handles are omitted from the output. The default is {@code false}.
+	 * <p>
+	 * In this mode an object referenced from several places is written, and read back, as separate copies, and a cycle makes the serializer
+	 * recurse until the stack overflows. When assertions are enabled the serializer detects cycles and throws a
+	 * {@link net.twagame.serial.exception.TWASerializationException TWASerializationException} instead.
+	 * 
+	 * @return
+	 */
+	public boolean isAcyclic()
+	{
+		return acyclic;
+	}
+
+	public void setAcyclic(boolean acyclic)
+	{
+		this.acyclic = acyclic;
+	}
+}
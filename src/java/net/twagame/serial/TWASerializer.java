@@ -8,12 +8,20 @@ import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_INT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_LONG;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_OBJECT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_SHORT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_CLASSDESC;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION_TYPED;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_DELTA;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP_TYPED;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_NEWOBJECT;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_NULL;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_REFERENCE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_RESET;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_STRING;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_DEF;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_SYMBOL_RESET;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BOOLEAN;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BYTE;
 import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_DOUBLE;
@@ -24,19 +32,29 @@ import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_SHOR
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import net.twagame.serial.annotation.TWAElementType;
 import net.twagame.serial.exception.NotTWASerializableException;
 import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryOutput;
 import net.twagame.serial.io.SerializationOutput;
 import net.twagame.serial.util.ClassDescriptor;
 import net.twagame.serial.util.ClassDescriptorsCache;
+import net.twagame.serial.util.ClassRegistry;
+import net.twagame.serial.util.FieldCodec;
 import net.twagame.serial.util.FieldDescriptor;
+import net.twagame.serial.util.PrimitiveFieldCodec;
+import net.twagame.serial.util.ReferenceFieldCodec;
 import net.twagame.serial.util.TWASerializationConstants;
-import net.twagame.serial.util.unsafe.UnsafeField;
+import net.twagame.serial.util.TWASerializationConstants.ClassType;
 
 /**
  * The serializer. This class is not thread safe.
@@ -46,12 +64,41 @@ import net.twagame.serial.util.unsafe.UnsafeField;
 public class TWASerializer
 {
 	private final HandleTable handles = new HandleTable();
+	private final HandleTable classIds = new HandleTable();
+	private final ClassDescriptorsCache descriptors = ClassDescriptorsCache.getInstance();
+	private final ClassRegistry registry;
+	private final boolean compact;
+	private final SymbolTable symbols;
+	private final int maxSymbolLength;
+	private final boolean acyclic;
 	private final SerializationOutput out;
 
+	/**
+	 * The output, if length prefixes are enabled, {@code null} otherwise
+	 */
+	private final MemoryOutput lengthPrefixedOut;
+
+	/**
+	 * The objects being written, used to detect cycles in acyclic mode when assertions are enabled
+	 */
+	private final Set<Object> ancestors = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
 	private ClassDescriptor currentClassDesc;
 
 	private boolean collectionOrMapAllowed = true;
 
+	/**
+	 * The element and key types declared on the field being written, see {@link TWAElementType}. Consumed by
+	 * {@link TWASerializer#writeCollection(Collection)} and {@link TWASerializer#writeMap(Map)}.
+	 */
+	private Class<?> declaredElementType;
+	private Class<?> declaredKeyType;
+
+	/**
+	 * Reused for the field bitmasks of deltas
+	 */
+	private byte[] deltaMask = new byte[8];
+
 	/**
 	 * Creates a new TWASerializer that uses the specified {@link SerializationOutput}.
 	 * 
@@ -59,7 +106,43 @@ public class TWASerializer
 	 */
 	public TWASerializer(SerializationOutput out)
 	{
+		this(out, new TWASerializationConfig());
+	}
+
+	/**
+	 * Creates a new TWASerializer that uses the specified {@link SerializationOutput} and {@link TWASerializationConfig}. The deserializer
+	 * must use an equal config.
+	 * 
+	 * @param out
+	 * @param config
+	 * @throws IllegalArgumentException
+	 *             if the config enables length prefixes and the output is not a {@link MemoryOutput}.
+	 */
+	public TWASerializer(SerializationOutput out, TWASerializationConfig config)
+	{
+		if (config.isLengthPrefixed() && !(out instanceof MemoryOutput))
+		{
+			throw new IllegalArgumentException("Length prefixes require a MemoryOutput");
+		}
+
 		this.out = out;
+		this.lengthPrefixedOut = config.isLengthPrefixed() ? (MemoryOutput) out : null;
+		this.registry = config.getRegistry();
+		this.compact = config.isCompact();
+		this.symbols = (config.getSymbolTableSize() > 0) ? new SymbolTable(config.getSymbolTableSize()) : null;
+		this.maxSymbolLength = config.getMaxSymbolLength();
+		this.acyclic = config.isAcyclic();
+	}
+
+	/**
+	 * Flushes the underlying {@link SerializationOutput}, so that everything written so far reaches its destination. Call this after each
+	 * message when writing to a buffered output such as a {@link net.twagame.serial.io.StreamOutput StreamOutput}.
+	 * 
+	 * @throws IOException
+	 */
+	public void flush() throws IOException
+	{
+		out.flush();
 	}
 
 	/**
@@ -74,15 +157,78 @@ public class TWASerializer
 	}
 
 	/**
-	 * Reinitializes the handle system.
+	 * Reinitializes the handle system. Class ids are reset too, so class names are written again as needed. The session symbol table (see
+	 * {@link TWASerializationConfig#getSymbolTableSize()}) is kept, see {@link TWASerializer#writeSymbolReset()}.
 	 */
 	public void resetHandles()
 	{
 		handles.reset();
+		classIds.reset();
+	}
+
+	/**
+	 * Reinitializes the object handles only. Class ids are kept, so the classes already written are not described again; the
+	 * {@link TWADeserializer} reading the output must then call {@link TWADeserializer#resetObjectHandles()} at the same point.
+	 */
+	void resetObjectHandles()
+	{
+		handles.reset();
+	}
+
+	/**
+	 * Writes {@link TWASerializationConstants#TAG_RESET} and reinitializes the handle system. Unlike {@link TWASerializer#resetHandles()},
+	 * the reset is recorded in the output, so the {@link TWADeserializer} resets its handles at the
+	 * same point without being told out of band.
+	 * 
+	 * @throws TWASerializationException
+	 *             if an exception occurs while writing the tag.
+	 */
+	public void writeReset()
+	{
+		try
+		{
+			out.write(TAG_RESET);
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+
+		resetHandles();
+	}
+
+	/**
+	 * Writes {@link TWASerializationConstants#TAG_SYMBOL_RESET} and clears the session symbol table (see
+	 * {@link TWASerializationConfig#getSymbolTableSize()}), so that the {@link TWADeserializer} clears its table at the same point and
+	 * the symbols are written in full again. Needed to resynchronize the tables when the deserializer missed a message, e.g. a frame
+	 * dropped by a {@link TWAFrameDecoder}. Handles are kept.
+	 * 
+	 * @throws TWASerializationException
+	 *             if an exception occurs while writing the tag.
+	 */
+	public void writeSymbolReset()
+	{
+		try
+		{
+			out.write(TAG_SYMBOL_RESET);
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+
+		if (symbols != null)
+		{
+			symbols.clear();
+		}
 	}
 
 	/**
 	 * Serializes an object and writes it to the {@link SerializationOutput}.
+	 * <p>
+	 * Collections and maps whose elements (or keys, or values) are all of the same wrapper or TWASerializable class are written with the
+	 * class once, see {@link TWASerializationConstants#TAG_COLLECTION_TYPED}, so that the elements take no tags and class ids. The elements
+	 * are checked before they are written, unless their class is declared with {@link TWAElementType}.
 	 * 
 	 * @param o
 	 *            an object to serialize
@@ -101,14 +247,17 @@ public class TWASerializer
 				return;
 			}
 
-			Integer handle = handles.get(o);
-			if (handle != null)
+			if (!acyclic)
 			{
-				writeHandle(handle);
-				return;
+				int handle = handles.get(o);
+				if (handle != -1)
+				{
+					writeHandle(handle);
+					return;
+				}
 			}
 
-			currentClassDesc = ClassDescriptorsCache.getInstance().forClass(o.getClass());
+			currentClassDesc = descriptors.forClass(o.getClass());
 
 			switch (currentClassDesc.getType())
 			{
@@ -181,12 +330,30 @@ public class TWASerializer
 				}
 				case STRING:
 				{
-					writeString((String) o);
+					String str = (String) o;
+
+					if ((symbols == null) || (str.length() > maxSymbolLength))
+					{
+						writeString(str);
+					}
+					else if (!writeSymbolReference(str))
+					{
+						writeString(str);
+						writeUnsigned(symbols.assign(str));
+					}
 					return;
 				}
 				case TWASERIALIZABLE:
 				{
-					writeNewObject(o);
+					if ((symbols == null) || !currentClassDesc.isImmutable())
+					{
+						writeNewObject(o);
+					}
+					else if (!writeSymbolReference(o))
+					{
+						writeNewObject(o);
+						writeUnsigned(symbols.assign(o));
+					}
 					return;
 				}
 				default:
@@ -201,95 +368,202 @@ public class TWASerializer
 		}
 	}
 
+	/**
+	 * Writes the fields of a {@link net.twagame.serial.annotation.TWASerializable TWASerializable} object that differ from the same fields
+	 * of a baseline object of the same class, e.g. a copy of the state sent previously. The changed fields are marked in a bitmask with one
+	 * bit per field of the {@link ClassDescriptor}, so a delta of an unchanged object takes only a few bytes. Fields are compared as by
+	 * {@link FieldCodec#valueEquals(Object, Object)}; the values of changed reference fields are written in full. Since referenced objects
+	 * whose classes do not override {@link Object#equals(Object)} are compared by identity, deltas suit objects whose state is held in
+	 * primitive fields, strings and immutable values. Nested objects that change in place should be sent with deltas of their own.
+	 * <p>
+	 * The delta does not create an object on the receiving side, it is applied to an existing one with
+	 * {@link TWADeserializer#readDeltaInto(Object)}. Keeping the baseline in sync with the state of the receiving object is up to the
+	 * caller.
+	 * 
+	 * @param current
+	 * @param baseline
+	 * @throws IllegalArgumentException
+	 *             if either object is {@code null} or the objects are of different classes.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during serialization.
+	 */
+	public void writeDelta(Object current, Object baseline)
+	{
+		if ((current == null) || (baseline == null) || (current.getClass() != baseline.getClass()))
+		{
+			throw new IllegalArgumentException("The current and the baseline objects must be non-null objects of the same class");
+		}
+
+		try
+		{
+			ClassDescriptor classDesc = descriptors.forClass(current.getClass());
+
+			if (classDesc.getType() != ClassType.TWASERIALIZABLE)
+			{
+				throw new NotTWASerializableException("Deltas can only be written for TWASerializable objects");
+			}
+
+			FieldCodec[] fieldCodecs = classDesc.getFieldCodecs();
+			int maskSize = (fieldCodecs.length + 7) >>> 3;
+
+			if (deltaMask.length < maskSize)
+			{
+				deltaMask = new byte[maskSize];
+			}
+
+			Arrays.fill(deltaMask, 0, maskSize, (byte) 0);
+
+			for (int i = 0; i < fieldCodecs.length; i++)
+			{
+				if (!fieldCodecs[i].valueEquals(current, baseline))
+				{
+					deltaMask[i >>> 3] |= 1 << (i & 7);
+				}
+			}
+
+			int classId = writeClassId(classDesc);
+
+			out.write(TAG_DELTA);
+			writeUnsigned(classId);
+			out.write(deltaMask, 0, maskSize);
+
+			for (int i = 0; i < fieldCodecs.length; i++)
+			{
+				if ((deltaMask[i >>> 3] & (1 << (i & 7))) != 0)
+				{
+					writeField(current, fieldCodecs[i]);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Writes {@link TWASerializationConstants#TAG_SYMBOL} and the slot of the object and returns {@code true} if the object is in the
+	 * symbol table. Otherwise writes {@link TWASerializationConstants#TAG_SYMBOL_DEF} and returns {@code false}; the caller must then write
+	 * the object and its newly assigned slot, in that order, so that the slots of symbols defined while writing the object are assigned
+	 * first.
+	 */
+	private boolean writeSymbolReference(Object o) throws IOException
+	{
+		int slot = symbols.get(o);
+
+		if (slot != -1)
+		{
+			out.write(TAG_SYMBOL);
+			writeUnsigned(slot);
+			return true;
+		}
+
+		out.write(TAG_SYMBOL_DEF);
+		return false;
+	}
+
 	private void writeString(String str) throws IOException
 	{
 		assert (str != null);
 
-		int handle = handles.assign(str);
-
 		out.write(TAG_STRING);
-		out.writeInt(handle);
+		writeNewHandle(str);
 
 		out.writeString(str);
 	}
 
 	private void writeNewObject(Object o) throws IOException
+	{
+		ClassDescriptor classDesc = currentClassDesc;
+		int classId = writeClassId(classDesc);
+
+		out.write(TAG_NEWOBJECT);
+		writeNewHandle(o);
+		writeUnsigned(classId);
+
+		writeObjectContents(o, classDesc);
+	}
+
+	/**
+	 * Writes the fields of a new object, preceded by their length if length prefixes are enabled.
+	 */
+	private void writeObjectContents(Object o, ClassDescriptor classDesc) throws IOException
 	{
 		boolean oldCollectionAllowedFlag = collectionOrMapAllowed;
 		collectionOrMapAllowed = true;
 
-		int handle = handles.assign(o);
-
-		out.write(TAG_NEWOBJECT);
-		out.writeInt(handle);
+		assert enterAcyclic(o);
 
-		out.writeString(currentClassDesc.getName());
+		int start = beginLength();
+		writeFields(o, classDesc.getFieldCodecs());
+		endLength(start);
 
-		writeFields(o, currentClassDesc.getFieldDescriptors());
+		assert exitAcyclic(o);
 
 		collectionOrMapAllowed = oldCollectionAllowedFlag;
 	}
 
-	private void writeFields(Object o, FieldDescriptor[] fieldDescriptors) throws IOException
+	/**
+	 * Returns the id of the described class. For classes not in the {@link ClassRegistry}, assigns a new id and writes
+	 * {@link TWASerializationConstants#TAG_CLASSDESC TAG_CLASSDESC} if this is the first object of that class since the last reset.
+	 */
+	private int writeClassId(ClassDescriptor classDesc) throws IOException
 	{
-		UnsafeField f;
-		loop: for (FieldDescriptor fdesc : fieldDescriptors)
+		int classId = registry.getId(classDesc.getReflectedClass());
+
+		if (classId != -1)
 		{
-			currentClassDesc = ClassDescriptorsCache.getInstance().forClass(fdesc.getUnsafeField().getField().getType());
-			f = fdesc.getUnsafeField();
-			switch (currentClassDesc.getType())
+			return classId;
+		}
+
+		classId = classIds.get(classDesc.getReflectedClass());
+
+		if (classId != -1)
+		{
+			classId += registry.getIdLimit();
+		}
+		else
+		{
+			if (registry.isRegistrationRequired())
 			{
-				case PRIMITIVE:
-				{
-					switch (currentClassDesc.getSubType())
-					{
-						case BYTE:
-						{
-							out.writeByte(f.getByte(o));
-							continue loop;
-						}
-						case BOOLEAN:
-						{
-							out.writeBoolean(f.getBoolean(o));
-							continue loop;
-						}
-						case SHORT:
-						{
-							out.writeShort(f.getShort(o));
-							continue loop;
-						}
-						case INT:
-						{
-							out.writeInt(f.getInt(o));
-							continue loop;
-						}
-						case LONG:
-						{
-							out.writeLong(f.getLong(o));
-							continue loop;
-						}
-						case FLOAT:
-						{
-							out.writeFloat(f.getFloat(o));
-							continue loop;
-						}
-						case DOUBLE:
-						{
-							out.writeDouble(f.getDouble(o));
-							continue loop;
-						}
-						default:
-						{
-							throw new AssertionError();
-						}
-					}
-				}
-				default:
-				{
-					writeObject(f.get(o));
-					continue loop;
-				}
+				throw new NotTWASerializableException("The class " + classDesc.getName() + " is not registered");
 			}
+
+			classId = classIds.assign(classDesc.getReflectedClass()) + registry.getIdLimit();
+
+			out.write(TAG_CLASSDESC);
+			writeUnsigned(classId);
+			out.writeString(classDesc.getName());
+		}
+
+		return classId;
+	}
+
+	private void writeFields(Object o, FieldCodec[] fieldCodecs) throws IOException
+	{
+		for (FieldCodec codec : fieldCodecs)
+		{
+			writeField(o, codec);
+		}
+	}
+
+	private void writeField(Object o, FieldCodec codec) throws IOException
+	{
+		if (codec.isPrimitive())
+		{
+			((PrimitiveFieldCodec) codec).write(o, out);
+		}
+		else
+		{
+			FieldDescriptor fdesc = codec.getFieldDescriptor();
+
+			declaredElementType = fdesc.getElementType();
+			declaredKeyType = fdesc.getKeyType();
+
+			writeObject(((ReferenceFieldCodec) codec).get(o));
+
+			declaredElementType = null;
+			declaredKeyType = null;
 		}
 	}
 
@@ -300,15 +574,14 @@ public class TWASerializer
 		collectionOrMapAllowed = false; // Collections/maps within arrays are not supported.
 
 		int size = Array.getLength(a);
-		int handle = handles.assign(a);
 
 		switch (currentClassDesc.getSubType())
 		{
 			case BYTE:
 			{
 				out.write(TAG_ARRAY_BYTE);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
 				out.write((byte[]) a, 0, size);
 
@@ -317,91 +590,79 @@ public class TWASerializer
 			case BOOLEAN:
 			{
 				out.write(TAG_ARRAY_BOOLEAN);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (boolean element : (boolean[]) a)
-				{
-					out.writeBoolean(element);
-				}
+				out.writeBooleans((boolean[]) a, 0, size);
 
 				break;
 			}
 			case SHORT:
 			{
 				out.write(TAG_ARRAY_SHORT);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (short element : (short[]) a)
-				{
-					out.writeShort(element);
-				}
+				out.writeShorts((short[]) a, 0, size);
 
 				break;
 			}
 			case INT:
 			{
 				out.write(TAG_ARRAY_INT);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (int element : (int[]) a)
-				{
-					out.writeInt(element);
-				}
+				out.writeInts((int[]) a, 0, size);
 
 				break;
 			}
 			case LONG:
 			{
 				out.write(TAG_ARRAY_LONG);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (long element : (long[]) a)
-				{
-					out.writeLong(element);
-				}
+				out.writeLongs((long[]) a, 0, size);
 
 				break;
 			}
 			case FLOAT:
 			{
 				out.write(TAG_ARRAY_FLOAT);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (float element : (float[]) a)
-				{
-					out.writeFloat(element);
-				}
+				out.writeFloats((float[]) a, 0, size);
 
 				break;
 			}
 			case DOUBLE:
 			{
 				out.write(TAG_ARRAY_DOUBLE);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
 
-				for (double element : (double[]) a)
-				{
-					out.writeDouble(element);
-				}
+				out.writeDoubles((double[]) a, 0, size);
 
 				break;
 			}
 			case OBJECT:
 			{
 				out.write(TAG_ARRAY_OBJECT);
-				out.writeInt(handle);
-				out.writeInt(size);
+				writeNewHandle(a);
+				writeUnsigned(size);
+
+				assert enterAcyclic(a);
 
+				int start = beginLength();
 				for (Object element : (Object[]) a)
 				{
 					writeObject(element);
 				}
+				endLength(start);
+
+				assert exitAcyclic(a);
 
 				break;
 			}
@@ -415,6 +676,9 @@ public class TWASerializer
 	{
 		assert (c != null);
 
+		Class<?> declaredType = declaredElementType;
+		declaredElementType = null;
+
 		if (!collectionOrMapAllowed)
 		{
 			throw new TWASerializationException("TWASerialization: collections/maps within collections/maps/arrays are not supported.");
@@ -422,16 +686,34 @@ public class TWASerializer
 
 		collectionOrMapAllowed = false;
 
-		int handle = handles.assign(c);
+		ClassDescriptor elementDesc = (declaredType != null) ? descriptors.forClass(declaredType) : findElementType(c);
 
-		out.write(TAG_COLLECTION);
-		out.writeInt(handle);
-		out.writeInt(c.size());
+		if (elementDesc == null)
+		{
+			out.write(TAG_COLLECTION);
+			writeNewHandle(c);
+			writeUnsigned(c.size());
+		}
+		else
+		{
+			int classId = writeElementClassId(elementDesc);
 
+			out.write(TAG_COLLECTION_TYPED);
+			writeNewHandle(c);
+			writeUnsigned(c.size());
+			writeElementType(elementDesc, classId);
+		}
+
+		assert enterAcyclic(c);
+
+		int start = beginLength();
 		for (Object o : c)
 		{
-			writeObject(o);
+			writeElement(o, elementDesc);
 		}
+		endLength(start);
+
+		assert exitAcyclic(c);
 
 		collectionOrMapAllowed = true;
 	}
@@ -441,6 +723,11 @@ public class TWASerializer
 	{
 		assert (m != null);
 
+		Class<?> keyType = declaredKeyType;
+		Class<?> valueType = declaredElementType;
+		declaredKeyType = null;
+		declaredElementType = null;
+
 		if (!collectionOrMapAllowed)
 		{
 			throw new TWASerializationException("TWASerialization: collections/maps within collections/maps/arrays are not supported.");
@@ -448,25 +735,318 @@ public class TWASerializer
 
 		collectionOrMapAllowed = false;
 
-		int handle = handles.assign(m);
+		ClassDescriptor keyDesc = (keyType != null) ? descriptors.forClass(keyType) : findElementType(m.keySet());
+		ClassDescriptor valueDesc = (valueType != null) ? descriptors.forClass(valueType) : findElementType(m.values());
 
-		out.write(TAG_MAP);
-		out.writeInt(handle);
-		out.writeInt(m.keySet().size());
+		if ((keyDesc == null) && (valueDesc == null))
+		{
+			out.write(TAG_MAP);
+			writeNewHandle(m);
+			writeUnsigned(m.keySet().size());
+		}
+		else
+		{
+			int keyClassId = writeElementClassId(keyDesc);
+			int valueClassId = writeElementClassId(valueDesc);
+
+			out.write(TAG_MAP_TYPED);
+			writeNewHandle(m);
+			writeUnsigned(m.keySet().size());
+			writeElementType(keyDesc, keyClassId);
+			writeElementType(valueDesc, valueClassId);
+		}
 
+		assert enterAcyclic(m);
+
+		int start = beginLength();
 		for (Map.Entry entry : (Set<Map.Entry>) m.entrySet())
 		{
-			writeObject(entry.getKey());
-			writeObject(entry.getValue());
+			writeElement(entry.getKey(), keyDesc);
+			writeElement(entry.getValue(), valueDesc);
 		}
+		endLength(start);
+
+		assert exitAcyclic(m);
 
 		collectionOrMapAllowed = true;
 	}
 
-	private void writeHandle(Integer handle) throws IOException
+	/**
+	 * Returns the descriptor of the class of all elements, if they are non-null objects of the same wrapper or TWASerializable class, or
+	 * {@code null}. Immutable objects are written as usual when the session symbol table is enabled, so that they can be interned.
+	 */
+	private ClassDescriptor findElementType(Collection<?> elements)
+	{
+		Iterator<?> it = elements.iterator();
+
+		if (!it.hasNext())
+		{
+			return null;
+		}
+
+		Object first = it.next();
+
+		if (first == null)
+		{
+			return null;
+		}
+
+		Class<?> elementClass = first.getClass();
+
+		while (it.hasNext())
+		{
+			Object o = it.next();
+
+			if ((o == null) || (o.getClass() != elementClass))
+			{
+				return null;
+			}
+		}
+
+		ClassDescriptor elementDesc = descriptors.forClass(elementClass);
+
+		switch (elementDesc.getType())
+		{
+			case WRAPPER:
+			{
+				return elementDesc;
+			}
+			case TWASERIALIZABLE:
+			{
+				return ((symbols != null) && elementDesc.isImmutable()) ? null : elementDesc;
+			}
+			default:
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the class id of a TWASerializable element type, see {@link TWASerializer#writeClassId(ClassDescriptor)}, or {@code -1}.
+	 */
+	private int writeElementClassId(ClassDescriptor elementDesc) throws IOException
+	{
+		return ((elementDesc != null) && (elementDesc.getType() == ClassType.TWASERIALIZABLE)) ? writeClassId(elementDesc) : -1;
+	}
+
+	/**
+	 * Writes the element type of a typed collection or map, see {@link TWASerializationConstants#TAG_COLLECTION_TYPED}.
+	 */
+	private void writeElementType(ClassDescriptor elementDesc, int classId) throws IOException
+	{
+		if (elementDesc == null)
+		{
+			out.write(TAG_NULL);
+		}
+		else if (elementDesc.getType() == ClassType.TWASERIALIZABLE)
+		{
+			out.write(TAG_NEWOBJECT);
+			writeUnsigned(classId);
+		}
+		else
+		{
+			out.write(wrapperTag(elementDesc));
+		}
+	}
+
+	/**
+	 * Writes an element of a collection or map of the specified element type, or as usual if the type is {@code null}. Wrappers are written
+	 * without tags, <code>int</code>s and <code>long</code>s as zigzag encoded varints in compact mode. New objects are written without
+	 * tags and class ids, and already written ones as their handles only.
+	 */
+	private void writeElement(Object o, ClassDescriptor elementDesc) throws IOException
+	{
+		if (elementDesc == null)
+		{
+			writeObject(o);
+			return;
+		}
+
+		if ((o == null) || (o.getClass() != elementDesc.getReflectedClass()))
+		{
+			throw new TWASerializationException("TWASerialization: an element of a collection or map of " + elementDesc.getName() + " is "
+				+ ((o == null) ? "null" : "of " + o.getClass().getName()));
+		}
+
+		switch (elementDesc.getSubType())
+		{
+			case BYTE:
+			{
+				out.writeByte(((Byte) o).byteValue());
+				return;
+			}
+			case BOOLEAN:
+			{
+				out.writeBoolean(((Boolean) o).booleanValue());
+				return;
+			}
+			case SHORT:
+			{
+				out.writeShort(((Short) o).shortValue());
+				return;
+			}
+			case INT:
+			{
+				int v = ((Integer) o).intValue();
+
+				if (compact)
+				{
+					out.writeVarInt((v << 1) ^ (v >> 31));
+				}
+				else
+				{
+					out.writeInt(v);
+				}
+				return;
+			}
+			case LONG:
+			{
+				long v = ((Long) o).longValue();
+
+				if (compact)
+				{
+					out.writeVarLong((v << 1) ^ (v >> 63));
+				}
+				else
+				{
+					out.writeLong(v);
+				}
+				return;
+			}
+			case FLOAT:
+			{
+				out.writeFloat(((Float) o).floatValue());
+				return;
+			}
+			case DOUBLE:
+			{
+				out.writeDouble(((Double) o).doubleValue());
+				return;
+			}
+			default:
+			{
+				int handle = acyclic ? -1 : handles.get(o);
+
+				if (handle != -1)
+				{
+					writeUnsigned(handle);
+				}
+				else
+				{
+					writeNewHandle(o);
+					writeObjectContents(o, elementDesc);
+				}
+			}
+		}
+	}
+
+	private static byte wrapperTag(ClassDescriptor wrapperDesc)
+	{
+		switch (wrapperDesc.getSubType())
+		{
+			case BYTE:
+				return TAG_WRAPPER_BYTE;
+			case BOOLEAN:
+				return TAG_WRAPPER_BOOLEAN;
+			case SHORT:
+				return TAG_WRAPPER_SHORT;
+			case INT:
+				return TAG_WRAPPER_INT;
+			case LONG:
+				return TAG_WRAPPER_LONG;
+			case FLOAT:
+				return TAG_WRAPPER_FLOAT;
+			case DOUBLE:
+				return TAG_WRAPPER_DOUBLE;
+			default:
+				throw new AssertionError();
+		}
+	}
+
+	/**
+	 * Writes a handle, a class id or a size, as a varint in compact mode or as a 4-byte int otherwise.
+	 */
+	private void writeUnsigned(int v) throws IOException
+	{
+		if (compact)
+		{
+			out.writeVarInt(v);
+		}
+		else
+		{
+			out.writeInt(v);
+		}
+	}
+
+	/**
+	 * Writes a placeholder for a length prefix if length prefixes are enabled. Returns the position of the placeholder, or {@code -1}.
+	 */
+	private int beginLength()
+	{
+		if (lengthPrefixedOut == null)
+		{
+			return -1;
+		}
+
+		int start = lengthPrefixedOut.size();
+		lengthPrefixedOut.writeInt(0);
+
+		return start;
+	}
+
+	/**
+	 * Fills in the length prefix written by {@link TWASerializer#beginLength()}.
+	 */
+	private void endLength(int start)
+	{
+		if (start != -1)
+		{
+			lengthPrefixedOut.writeIntAt(start, lengthPrefixedOut.size() - start - 4);
+		}
+	}
+
+	/**
+	 * Assigns a handle to a new object and writes it, unless in acyclic mode, where objects are not tracked.
+	 */
+	private void writeNewHandle(Object o) throws IOException
+	{
+		if (!acyclic)
+		{
+			writeUnsigned(handles.assign(o));
+		}
+	}
+
+	/**
+	 * The cycle guard of acyclic mode, called in assertions so that it costs nothing when they are disabled. Records an object whose
+	 * contents are about to be written, and throws if it is already being written, i.e. it is reachable from itself.
+	 */
+	private boolean enterAcyclic(Object o)
+	{
+		if (acyclic && !ancestors.add(o))
+		{
+			ancestors.clear();
+			throw new TWASerializationException("TWASerialization: a cycle through an object of " + o.getClass().getName()
+				+ " can not be written in acyclic mode");
+		}
+
+		return true;
+	}
+
+	private boolean exitAcyclic(Object o)
+	{
+		if (acyclic)
+		{
+			ancestors.remove(o);
+		}
+
+		return true;
+	}
+
+	private void writeHandle(int handle) throws IOException
 	{
 		out.write(TAG_REFERENCE);
-		out.writeInt(handle.intValue());
+		writeUnsigned(handle);
 	}
 
 	/**
@@ -480,24 +1060,110 @@ public class TWASerializer
 	}
 
 	/**
-	 * Handles handles.
+	 * Maps symbols to slots of the session symbol table, evicting the least recently used symbol when the table is full. The deserializer
+	 * only mirrors the slots, so the eviction policy is up to this class.
+	 * 
+	 * @author hadadzhi
+	 */
+	private static class SymbolTable
+	{
+		private final int capacity;
+		private final LinkedHashMap<Object, Integer> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+		public SymbolTable(int capacity)
+		{
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Returns the slot of the given symbol, marking it as the most recently used, or {@code -1} if the symbol is not in the table.
+		 * 
+		 * @param o
+		 * @return
+		 */
+		public int get(Object o)
+		{
+			Integer slot = slots.get(o);
+			return (slot != null) ? slot : -1;
+		}
+
+		/**
+		 * Assigns a slot to the given symbol, which must not be in the table already. Returns the assigned slot, which is the slot of the
+		 * evicted symbol if the table is full.
+		 * 
+		 * @param o
+		 * @return
+		 */
+		public int assign(Object o)
+		{
+			assert !slots.containsKey(o);
+
+			int slot;
+
+			if (slots.size() < capacity)
+			{
+				slot = slots.size();
+			}
+			else
+			{
+				Iterator<Integer> eldest = slots.values().iterator();
+				slot = eldest.next();
+				eldest.remove();
+			}
+
+			slots.put(o, slot);
+
+			return slot;
+		}
+
+		/**
+		 * Removes all symbols, so that slots are assigned from {@code 0} again.
+		 */
+		public void clear()
+		{
+			slots.clear();
+		}
+	}
+
+	/**
+	 * Handles handles. An open-addressing identity hash table mapping objects to {@code int} handles. Objects are compared by reference and
+	 * hashed with {@link System#identityHashCode(Object)}, so user-defined {@code hashCode()}/{@code equals()} are never called and equal
+	 * but distinct objects get distinct handles. Nothing is boxed, and {@link HandleTable#reset()} keeps the allocated arrays.
 	 * 
 	 * @author hadadzhi
 	 */
 	private static class HandleTable
 	{
+		private static final int INITIAL_CAPACITY = 64; // Must be a power of two
+		private static final float LOAD_FACTOR = 0.5f;
+
+		/**
+		 * Tables grown beyond this capacity by a large object graph are released on reset rather than kept for the next graph
+		 */
+		private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
 		/**
 		 * Handles are assigned incrementally starting from {@code 0}.
 		 */
 		private int handleCounter = 0;
 
+		private Object[] keys;
+		private int[] values;
+
 		/**
-		 * Holds Object-to-Handle mappings.
+		 * The index in {@link #keys} of each assigned handle, so that reset clears only the used slots
 		 */
-		private final Map<Object, Integer> objToHandle = new HashMap<>();
+		private int[] slots;
+
+		private int threshold;
+
+		HandleTable()
+		{
+			allocate(INITIAL_CAPACITY);
+		}
 
 		/**
-		 * Assigns a handle to the given object. Returns the assigned handle.
+		 * Assigns a handle to the given object. Returns the assigned handle. The object must not have a handle assigned already.
 		 * 
 		 * @param o
 		 * @return
@@ -506,31 +1172,114 @@ public class TWASerializer
 		{
 			assert (o != null);
 
-			objToHandle.put(o, handleCounter);
+			if (handleCounter >= threshold)
+			{
+				grow();
+			}
+
+			int mask = keys.length - 1;
+			int i = hash(o) & mask;
+			while (keys[i] != null)
+			{
+				assert (keys[i] != o);
+				i = (i + 1) & mask;
+			}
+
+			keys[i] = o;
+			values[i] = handleCounter;
+			slots[handleCounter] = i;
 
 			return handleCounter++;
 		}
 
 		/**
-		 * Returns the handle for the given object as an {@link Integer} or {@code null} if no handle is assigned to this object.
+		 * Returns the handle for the given object or {@code -1} if no handle is assigned to this object.
 		 * 
 		 * @param o
 		 * @return
 		 */
-		public Integer get(Object o)
+		public int get(Object o)
 		{
 			assert (o != null);
 
-			return objToHandle.get(o);
+			int mask = keys.length - 1;
+			int i = hash(o) & mask;
+			Object key;
+			while ((key = keys[i]) != null)
+			{
+				if (key == o)
+				{
+					return values[i];
+				}
+				i = (i + 1) & mask;
+			}
+
+			return -1;
 		}
 
 		/**
-		 * Resets the HandleTable to its initial state.
+		 * Resets the HandleTable to its initial state. The allocated arrays are reused, clearing only the slots of the assigned handles,
+		 * unless they have grown beyond {@link #MAX_RETAINED_CAPACITY}.
 		 */
 		public void reset()
 		{
-			objToHandle.clear();
-			handleCounter = 0;
+			if (handleCounter > 0)
+			{
+				if (keys.length > MAX_RETAINED_CAPACITY)
+				{
+					allocate(INITIAL_CAPACITY);
+				}
+				else
+				{
+					for (int j = 0; j < handleCounter; j++)
+					{
+						keys[slots[j]] = null;
+					}
+				}
+				handleCounter = 0;
+			}
+		}
+
+		private void allocate(int capacity)
+		{
+			keys = new Object[capacity];
+			values = new int[capacity];
+			slots = new int[capacity];
+			threshold = (int) (capacity * LOAD_FACTOR);
+		}
+
+		private void grow()
+		{
+			Object[] oldKeys = keys;
+			int[] oldValues = values;
+
+			allocate(oldKeys.length * 2);
+
+			int mask = keys.length - 1;
+			int i;
+			for (int j = 0; j < oldKeys.length; j++)
+			{
+				if (oldKeys[j] != null)
+				{
+					i = hash(oldKeys[j]) & mask;
+					while (keys[i] != null)
+					{
+						i = (i + 1) & mask;
+					}
+					keys[i] = oldKeys[j];
+					values[i] = oldValues[j];
+					slots[oldValues[j]] = i;
+				}
+			}
+		}
+
+		/**
+		 * Spreads the identity hash code, so that linear probing does not degrade on clustered identity hashes.
+		 */
+		private static int hash(Object o)
+		{
+			int h = System.identityHashCode(o) * 0x9E3779B1;
+			return h ^ (h >>> 16);
 		}
 	}
 }
@@ -0,0 +1,908 @@
+package net.twagame.serial;
+
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_BOOLEAN;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_BYTE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_DOUBLE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_FLOAT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_INT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_LONG;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_OBJECT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_ARRAY_SHORT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_CLASSDESC;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_COLLECTION_TYPED;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_MAP_TYPED;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_NEWOBJECT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_NULL;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_REFERENCE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_RESET;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_STRING;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BOOLEAN;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_BYTE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_DOUBLE;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_FLOAT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_INT;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_LONG;
+import static net.twagame.serial.util.TWASerializationConstants.TAG_WRAPPER_SHORT;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.io.MemoryInput;
+import net.twagame.serial.util.ClassDescriptor;
+import net.twagame.serial.util.ClassDescriptorsCache;
+import net.twagame.serial.util.ClassRegistry;
+import net.twagame.serial.util.FieldCodec;
+import net.twagame.serial.util.FieldDescriptor;
+import net.twagame.serial.util.ReferenceFieldCodec;
+import net.twagame.serial.util.TWASerializationConstants.ClassType;
+
+/**
+ * A lazy view of a message whose root is a {@link net.twagame.serial.annotation.TWASerializable TWASerializable} object, written with
+ * length prefixes (see {@link TWASerializationConfig#isLengthPrefixed()}). Selected fields of the root can be read by index (see
+ * {@link TWAView#indexOf(String)}) without decoding the rest of the message: the view only locates the fields up to the requested one,
+ * jumping over objects, arrays, collections and maps by their length prefixes.
+ * <p>
+ * Reading a primitive field allocates nothing. Reading a reference field decodes just its value, unless the value refers to objects or
+ * classes written earlier in the message, in which case the whole root is decoded once and the value is taken from it. A collection or
+ * map decoded on its own is an {@link java.util.ArrayList ArrayList} or a {@link java.util.HashMap HashMap}, whatever collection the root
+ * would have been instantiated with.
+ * <p>
+ * A view can be {@link TWAView#reset(byte[], int, int) reset} to each message in turn. This class is not thread safe.
+ * 
+ * @author hadadzhi
+ */
+public class TWAView
+{
+	private final ClassRegistry registry;
+	private final boolean compact;
+	private final boolean acyclic;
+	private final ClassDescriptorsCache descriptors = ClassDescriptorsCache.getInstance();
+	private final MemoryInput in = new MemoryInput(new byte[0]);
+
+	/**
+	 * Decodes the values that can not be read in place, reading from {@link TWAView#in}
+	 */
+	private final TWADeserializer deserializer;
+
+	private byte[] bytes;
+	private int start;
+	private int end;
+
+	private ClassDescriptor rootDesc;
+	private FieldCodec[] fieldCodecs;
+
+	/**
+	 * The offsets of the fields located so far
+	 */
+	private int[] fieldOffsets = new int[16];
+	private int located;
+
+	/**
+	 * The offset after the last field located
+	 */
+	private int next;
+
+	/**
+	 * The descriptors of the classes named before the root object, by class id
+	 */
+	private ClassDescriptor[] namedClasses = new ClassDescriptor[16];
+
+	/**
+	 * The descriptors of the classes named within the value being scanned, by class id
+	 */
+	private ClassDescriptor[] scannedClasses = new ClassDescriptor[16];
+
+	/**
+	 * The root decoded by {@link TWAView#decodeRoot()}, if it was needed
+	 */
+	private Object root;
+
+	/**
+	 * The first handle assigned within the value being scanned, used to detect references to objects outside of it
+	 */
+	private int firstScannedHandle;
+
+	/**
+	 * The last handle assigned within the value being scanned, used to tell new elements of typed collections from references
+	 */
+	private int lastScannedHandle;
+
+	/**
+	 * Creates a view for messages written with the specified config.
+	 * 
+	 * @param config
+	 * @throws IllegalArgumentException
+	 *             if the config does not enable length prefixes, or enables the session symbol table.
+	 */
+	public TWAView(TWASerializationConfig config)
+	{
+		if (!config.isLengthPrefixed())
+		{
+			throw new IllegalArgumentException("Views require length prefixes");
+		}
+
+		if (config.getSymbolTableSize() != 0)
+		{
+			throw new IllegalArgumentException("Views do not support the session symbol table");
+		}
+
+		this.registry = config.getRegistry();
+		this.compact = config.isCompact();
+		this.acyclic = config.isAcyclic();
+		this.deserializer = new TWADeserializer(in, config);
+	}
+
+	/**
+	 * Points the view at a message. The array must not be modified while the view is used.
+	 * 
+	 * @param bytes
+	 */
+	public void reset(byte[] bytes)
+	{
+		reset(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Points the view at the message contained in <code>len</code> bytes of the specified array starting at <code>off</code>. The array
+	 * must not be modified while the view is used.
+	 * 
+	 * @param bytes
+	 * @param off
+	 * @param len
+	 * @throws TWASerializationException
+	 *             if the root of the message is not a TWASerializable object.
+	 */
+	public void reset(byte[] bytes, int off, int len)
+	{
+		if ((off < 0) || (len < 0) || (len > (bytes.length - off)))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		this.bytes = bytes;
+		this.start = off;
+		this.end = off + len;
+		this.root = null;
+		this.located = 0;
+
+		Arrays.fill(namedClasses, null);
+
+		try
+		{
+			seek(off);
+
+			int tag;
+			while (((tag = in.read()) == TAG_CLASSDESC) || (tag == TAG_RESET))
+			{
+				if (tag == TAG_CLASSDESC)
+				{
+					int classId = readUnsigned();
+					namedClasses = nameClass(namedClasses, classId, descriptors.forName(in.readString()));
+				}
+			}
+
+			if (tag != TAG_NEWOBJECT)
+			{
+				throw new TWASerializationException("TWASerialization: the root of the message is not a TWASerializable object");
+			}
+
+			readHandle();
+			rootDesc = classForId(namedClasses, readUnsigned());
+			in.readInt(); // Length
+
+			if (rootDesc == null)
+			{
+				throw new TWASerializationException("TWASerialization: unknown root class");
+			}
+
+			fieldCodecs = rootDesc.getFieldCodecs();
+			next = in.position();
+
+			if (fieldOffsets.length < fieldCodecs.length)
+			{
+				fieldOffsets = new int[fieldCodecs.length];
+			}
+		}
+		catch (IOException | ClassNotFoundException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Returns the class of the root object.
+	 * 
+	 * @return
+	 */
+	public Class<?> getRootClass()
+	{
+		return rootDesc.getReflectedClass();
+	}
+
+	/**
+	 * Returns the number of serialized fields of the root object.
+	 * 
+	 * @return
+	 */
+	public int getFieldCount()
+	{
+		return fieldCodecs.length;
+	}
+
+	/**
+	 * Returns the index of the serialized field of the root object with the specified name, or {@code -1} if there is no such field. If a
+	 * field hides a field of a superclass, the index of the first one in the serialized order is returned.
+	 * 
+	 * @param fieldName
+	 * @return
+	 */
+	public int indexOf(String fieldName)
+	{
+		for (int i = 0; i < fieldCodecs.length; i++)
+		{
+			if (fieldCodecs[i].getFieldDescriptor().getName().equals(fieldName))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	public byte getByte(int index)
+	{
+		try
+		{
+			seekPrimitive(index, byte.class);
+			return in.readByte();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public boolean getBoolean(int index)
+	{
+		try
+		{
+			seekPrimitive(index, boolean.class);
+			return in.readBoolean();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public short getShort(int index)
+	{
+		try
+		{
+			seekPrimitive(index, short.class);
+			return in.readShort();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public int getInt(int index)
+	{
+		try
+		{
+			if (seekPrimitive(index, int.class).isVarint())
+			{
+				int v = in.readVarInt();
+				return (v >>> 1) ^ -(v & 1);
+			}
+
+			return in.readInt();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public long getLong(int index)
+	{
+		try
+		{
+			if (seekPrimitive(index, long.class).isVarint())
+			{
+				long v = in.readVarLong();
+				return (v >>> 1) ^ -(v & 1);
+			}
+
+			return in.readLong();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public float getFloat(int index)
+	{
+		try
+		{
+			seekPrimitive(index, float.class);
+			return in.readFloat();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	public double getDouble(int index)
+	{
+		try
+		{
+			seekPrimitive(index, double.class);
+			return in.readDouble();
+		}
+		catch (IOException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Returns the value of the reference field with the specified index, decoded on demand.
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the field is of a primitive type.
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public Object getObject(int index)
+	{
+		if (fieldCodecs[index].isPrimitive())
+		{
+			throw new IllegalArgumentException("The field " + fieldCodecs[index].getFieldDescriptor().getName() + " is primitive");
+		}
+
+		ReferenceFieldCodec codec = (ReferenceFieldCodec) fieldCodecs[index];
+
+		if (root != null)
+		{
+			return codec.get(root);
+		}
+
+		try
+		{
+			locate(index);
+
+			int offset = fieldOffsets[index];
+
+			seek(offset);
+			firstScannedHandle = -1;
+			lastScannedHandle = -1;
+			Arrays.fill(scannedClasses, null);
+
+			if (!scanValue())
+			{
+				return codec.get(decodeRoot());
+			}
+
+			// Each object written before the value took at least a byte, so its first handle can not exceed the offset
+			if (firstScannedHandle > (offset - start))
+			{
+				throw new TWASerializationException("TWASerialization: invalid handle " + firstScannedHandle);
+			}
+
+			seek(offset);
+			deserializer.resetHandles(Math.max(firstScannedHandle, 0));
+
+			return deserializer.readFieldValue(codec);
+		}
+		catch (IOException | ClassNotFoundException e)
+		{
+			throw new TWASerializationException(e);
+		}
+	}
+
+	/**
+	 * Decodes the whole root object.
+	 * 
+	 * @return
+	 * @throws TWASerializationException
+	 *             if an exception occurs during deserialization.
+	 */
+	public Object decodeRoot()
+	{
+		if (root == null)
+		{
+			seek(start);
+			deserializer.resetHandles();
+			root = deserializer.readObject();
+		}
+
+		return root;
+	}
+
+	/**
+	 * Positions the input at the primitive field with the specified index. Returns the descriptor of the field.
+	 */
+	private FieldDescriptor seekPrimitive(int index, Class<?> type) throws IOException
+	{
+		FieldDescriptor fdesc = fieldCodecs[index].getFieldDescriptor();
+
+		if (fdesc.getAccessor().getField().getType() != type)
+		{
+			throw new IllegalArgumentException("The field " + fdesc.getName() + " is not of type " + type.getName());
+		}
+
+		locate(index);
+		seek(fieldOffsets[index]);
+
+		return fdesc;
+	}
+
+	/**
+	 * Locates the fields up to the one with the specified index.
+	 */
+	private void locate(int index) throws IOException
+	{
+		if (index < located)
+		{
+			return;
+		}
+
+		seek(next);
+
+		for (; located <= index; located++)
+		{
+			fieldOffsets[located] = in.position();
+			skipField(fieldCodecs[located]);
+		}
+
+		next = in.position();
+	}
+
+	private void skipField(FieldCodec codec) throws IOException
+	{
+		if (codec.isPrimitive())
+		{
+			skipPrimitive(codec.getFieldDescriptor());
+		}
+		else
+		{
+			skipValue();
+		}
+	}
+
+	private void skipPrimitive(FieldDescriptor fdesc) throws IOException
+	{
+		Class<?> type = fdesc.getAccessor().getField().getType();
+
+		if ((type == byte.class) || (type == boolean.class))
+		{
+			in.skipBytes(1);
+		}
+		else if (type == short.class)
+		{
+			in.skipBytes(2);
+		}
+		else if (fdesc.isVarint())
+		{
+			in.readVarLong();
+		}
+		else if ((type == int.class) || (type == float.class))
+		{
+			in.skipBytes(4);
+		}
+		else
+		{
+			in.skipBytes(8);
+		}
+	}
+
+	/**
+	 * Skips the next value, jumping over the contents of objects, object arrays, collections and maps.
+	 */
+	private void skipValue() throws IOException
+	{
+		int tag = in.read();
+
+		switch (tag)
+		{
+			case TAG_NULL:
+			{
+				break;
+			}
+			case TAG_REFERENCE:
+			{
+				readUnsigned();
+				break;
+			}
+			case TAG_CLASSDESC:
+			{
+				readUnsigned();
+				in.skipBytes(in.readShort() & 0xFFFF);
+				skipValue();
+				break;
+			}
+			case TAG_NEWOBJECT:
+			{
+				readHandle();
+				readUnsigned();
+				in.skipBytes(in.readInt());
+				break;
+			}
+			case TAG_STRING:
+			{
+				readHandle();
+				in.skipBytes(in.readShort() & 0xFFFF);
+				break;
+			}
+			case TAG_ARRAY_OBJECT:
+			case TAG_COLLECTION:
+			case TAG_MAP:
+			{
+				readHandle();
+				readUnsigned();
+				in.skipBytes(in.readInt());
+				break;
+			}
+			case TAG_COLLECTION_TYPED:
+			case TAG_MAP_TYPED:
+			{
+				readHandle();
+				readUnsigned();
+				skipElementType();
+
+				if (tag == TAG_MAP_TYPED)
+				{
+					skipElementType();
+				}
+
+				in.skipBytes(in.readInt());
+				break;
+			}
+			default:
+			{
+				skipFixedSizeValue(tag);
+			}
+		}
+	}
+
+	private void skipElementType() throws IOException
+	{
+		if (in.read() == TAG_NEWOBJECT)
+		{
+			readUnsigned();
+		}
+	}
+
+	/**
+	 * Skips the next value, which starts with the specified tag, if its size does not depend on other values: a wrapper or an array of
+	 * primitives.
+	 */
+	private void skipFixedSizeValue(int tag) throws IOException
+	{
+		switch (tag)
+		{
+			case TAG_WRAPPER_BYTE:
+			case TAG_WRAPPER_BOOLEAN:
+			{
+				in.skipBytes(1);
+				break;
+			}
+			case TAG_WRAPPER_SHORT:
+			{
+				in.skipBytes(2);
+				break;
+			}
+			case TAG_WRAPPER_INT:
+			case TAG_WRAPPER_FLOAT:
+			{
+				in.skipBytes(4);
+				break;
+			}
+			case TAG_WRAPPER_LONG:
+			case TAG_WRAPPER_DOUBLE:
+			{
+				in.skipBytes(8);
+				break;
+			}
+			case TAG_ARRAY_BYTE:
+			case TAG_ARRAY_BOOLEAN:
+			case TAG_ARRAY_SHORT:
+			case TAG_ARRAY_INT:
+			case TAG_ARRAY_FLOAT:
+			case TAG_ARRAY_LONG:
+			case TAG_ARRAY_DOUBLE:
+			{
+				readHandle();
+				in.skipBytes(readUnsigned() * elementSize(tag));
+				break;
+			}
+			default:
+			{
+				throw new TWASerializationException("TWASerialization: unexpected tag " + tag);
+			}
+		}
+	}
+
+	private static int elementSize(int tag)
+	{
+		switch (tag)
+		{
+			case TAG_ARRAY_BYTE:
+			case TAG_ARRAY_BOOLEAN:
+				return 1;
+			case TAG_ARRAY_SHORT:
+				return 2;
+			case TAG_ARRAY_INT:
+			case TAG_ARRAY_FLOAT:
+				return 4;
+			default:
+				return 8;
+		}
+	}
+
+	/**
+	 * Walks the next value without jumping, and returns {@code true} if it can be decoded on its own: it does not refer to objects outside
+	 * of it, and all classes it uses are either registered or named within the value.
+	 */
+	private boolean scanValue() throws IOException, ClassNotFoundException
+	{
+		int tag = in.read();
+
+		switch (tag)
+		{
+			case TAG_NULL:
+			{
+				return true;
+			}
+			case TAG_REFERENCE:
+			{
+				int handle = readUnsigned();
+				return (firstScannedHandle != -1) && (handle >= firstScannedHandle);
+			}
+			case TAG_CLASSDESC:
+			{
+				int classId = readUnsigned();
+				scannedClasses = nameClass(scannedClasses, classId, descriptors.forName(in.readString()));
+				return scanValue();
+			}
+			case TAG_NEWOBJECT:
+			{
+				scanHandle(readHandle());
+				ClassDescriptor classDesc = classForId(scannedClasses, readUnsigned());
+
+				return (classDesc != null) && scanObjectContents(classDesc);
+			}
+			case TAG_STRING:
+			{
+				scanHandle(readHandle());
+				in.skipBytes(in.readShort() & 0xFFFF);
+				return true;
+			}
+			case TAG_ARRAY_OBJECT:
+			case TAG_COLLECTION:
+			case TAG_MAP:
+			{
+				scanHandle(readHandle());
+				int count = (tag == TAG_MAP) ? (2 * readUnsigned()) : readUnsigned();
+				in.readInt(); // Length
+
+				for (int i = 0; i < count; i++)
+				{
+					if (!scanValue())
+					{
+						return false;
+					}
+				}
+
+				return true;
+			}
+			case TAG_COLLECTION_TYPED:
+			case TAG_MAP_TYPED:
+			{
+				scanHandle(readHandle());
+				int size = readUnsigned();
+
+				int keyType = (tag == TAG_MAP_TYPED) ? in.read() : -1;
+				ClassDescriptor keyDesc = (keyType == TAG_NEWOBJECT) ? classForId(scannedClasses, readUnsigned()) : null;
+				int valueType = in.read();
+				ClassDescriptor valueDesc = (valueType == TAG_NEWOBJECT) ? classForId(scannedClasses, readUnsigned()) : null;
+				in.readInt(); // Length
+
+				if (((keyType == TAG_NEWOBJECT) && (keyDesc == null)) || ((valueType == TAG_NEWOBJECT) && (valueDesc == null)))
+				{
+					return false;
+				}
+
+				for (int i = 0; i < size; i++)
+				{
+					if (((keyType != -1) && !scanElement(keyType, keyDesc)) || !scanElement(valueType, valueDesc))
+					{
+						return false;
+					}
+				}
+
+				return true;
+			}
+			case TAG_ARRAY_BYTE:
+			case TAG_ARRAY_BOOLEAN:
+			case TAG_ARRAY_SHORT:
+			case TAG_ARRAY_INT:
+			case TAG_ARRAY_FLOAT:
+			case TAG_ARRAY_LONG:
+			case TAG_ARRAY_DOUBLE:
+			{
+				scanHandle(readHandle());
+				in.skipBytes(readUnsigned() * elementSize(tag));
+				return true;
+			}
+			default:
+			{
+				skipFixedSizeValue(tag);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Walks the fields of a new object, see {@link TWAView#scanValue()}.
+	 */
+	private boolean scanObjectContents(ClassDescriptor classDesc) throws IOException, ClassNotFoundException
+	{
+		in.readInt(); // Length
+
+		for (FieldCodec codec : classDesc.getFieldCodecs())
+		{
+			if (codec.isPrimitive())
+			{
+				skipPrimitive(codec.getFieldDescriptor());
+			}
+			else if (!scanValue())
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Walks an element of a typed collection or map of the specified element type, see {@link TWAView#scanValue()}.
+	 */
+	private boolean scanElement(int elementType, ClassDescriptor elementDesc) throws IOException, ClassNotFoundException
+	{
+		switch (elementType)
+		{
+			case TAG_NULL:
+			{
+				return scanValue();
+			}
+			case TAG_NEWOBJECT:
+			{
+				if (!acyclic)
+				{
+					int handle = readUnsigned();
+
+					if (handle <= lastScannedHandle)
+					{
+						return (firstScannedHandle != -1) && (handle >= firstScannedHandle);
+					}
+
+					scanHandle(handle);
+				}
+
+				return scanObjectContents(elementDesc);
+			}
+			case TAG_WRAPPER_INT:
+			{
+				if (compact)
+				{
+					in.readVarInt();
+					return true;
+				}
+
+				in.skipBytes(4);
+				return true;
+			}
+			case TAG_WRAPPER_LONG:
+			{
+				if (compact)
+				{
+					in.readVarLong();
+					return true;
+				}
+
+				in.skipBytes(8);
+				return true;
+			}
+			default:
+			{
+				skipFixedSizeValue(elementType);
+				return true;
+			}
+		}
+	}
+
+	private void scanHandle(int handle)
+	{
+		if (handle == -1)
+		{
+			return;
+		}
+
+		if (firstScannedHandle == -1)
+		{
+			firstScannedHandle = handle;
+		}
+
+		lastScannedHandle = handle;
+	}
+
+	/**
+	 * Returns the descriptor of the TWASerializable class with the specified id, if it is one of the specified named classes or is
+	 * registered, or {@code null}.
+	 */
+	private ClassDescriptor classForId(ClassDescriptor[] named, int classId)
+	{
+		if ((classId >= 0) && (classId < named.length) && (named[classId] != null))
+		{
+			return named[classId];
+		}
+
+		Class<?> registered = registry.getClass(classId);
+
+		if (registered == null)
+		{
+			return null;
+		}
+
+		ClassDescriptor classDesc = descriptors.forClass(registered);
+		return (classDesc.getType() == ClassType.TWASERIALIZABLE) ? classDesc : null;
+	}
+
+	/**
+	 * Puts a class descriptor into the specified array at the specified class id, expanding the array as needed. Returns the array.
+	 */
+	private static ClassDescriptor[] nameClass(ClassDescriptor[] named, int classId, ClassDescriptor classDesc)
+	{
+		if (classId < 0)
+		{
+			throw new TWASerializationException("TWASerialization: invalid class id " + classId);
+		}
+
+		if (classId >= named.length)
+		{
+			named = Arrays.copyOf(named, Math.max(classId + 1, named.length * 2));
+		}
+
+		named[classId] = classDesc;
+		return named;
+	}
+
+	private void seek(int offset)
+	{
+		in.reset(bytes, offset, end - offset);
+	}
+
+	/**
+	 * Reads the handle of a new object, or returns {@code -1} in acyclic mode, where handles are not written.
+	 */
+	private int readHandle() throws IOException
+	{
+		return acyclic ? -1 : readUnsigned();
+	}
+
+	private int readUnsigned() throws IOException
+	{
+		return compact ? in.readVarInt() : in.readInt();
+	}
+}
@@ -1,14 +1,19 @@
 package net.twagame.serial.annotation;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
@@ -22,10 +27,19 @@ import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import net.twagame.serial.util.ClassDescriptorsCache;
+import net.twagame.serial.util.ClassRegistry;
+import net.twagame.serial.util.GeneratedCodec;
 
 /**
  * A compiler plugin that processes the {@link TWASerializable} annotation. Helps to prevent runtime serialization errors by finding and
- * reporting problems with serializable classes at compile time.
+ * reporting problems with serializable classes at compile time. Also checks {@link TWASerializable#id()} attributes for collisions and
+ * lists them in the {@link ClassRegistry#GENERATED_REGISTRY_RESOURCE} resource, and lists all serializable classes in the
+ * {@link ClassDescriptorsCache#GENERATED_INDEX_RESOURCE} resource, so that their descriptors can be prewarmed at startup. Finally,
+ * generates a {@link GeneratedCodec} for each serializable class, see {@link CodecGenerator}.
  * 
  * @author hadadzhi
  */
@@ -39,6 +53,17 @@ public class AnnotationProcessor extends AbstractProcessor
 	private DeclaredType collectionType;
 	private boolean collectionOrMapAllowed;
 	private boolean hasCollectionsOrMaps;
+	private CodecGenerator codecGenerator;
+
+	/**
+	 * Class ids collected over all rounds, sorted by id.
+	 */
+	private final Map<Integer, String> classNameForId = new TreeMap<>();
+
+	/**
+	 * Names of the serializable classes collected over all rounds, sorted.
+	 */
+	private final Set<String> serializableClassNames = new TreeSet<>();
 
 	@Override
 	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
@@ -50,6 +75,19 @@ public class AnnotationProcessor extends AbstractProcessor
 		for (TypeElement e : annotatedElements)
 		{
 			processElement(e);
+			processId(e);
+			serializableClassNames.add(elementUtils.getBinaryName(e).toString());
+			codecGenerator.generate(e);
+		}
+
+		if (roundEnv.processingOver() && !classNameForId.isEmpty())
+		{
+			writeRegistry();
+		}
+
+		if (roundEnv.processingOver() && !serializableClassNames.isEmpty())
+		{
+			writeIndex();
 		}
 
 		return false;
@@ -59,6 +97,7 @@ public class AnnotationProcessor extends AbstractProcessor
 	{
 		typeUtils = processingEnv.getTypeUtils();
 		elementUtils = processingEnv.getElementUtils();
+		codecGenerator = new CodecGenerator(processingEnv);
 
 		mapType = typeUtils.getDeclaredType(elementUtils.getTypeElement(Map.class.getName()),
 											typeUtils.getWildcardType(null, null),
@@ -83,15 +122,122 @@ public class AnnotationProcessor extends AbstractProcessor
 			}
 
 			checkType(field.asType(), field);
+
+			if ((field.getAnnotation(TWAVarint.class) != null)
+				&& !field.asType().getKind().equals(TypeKind.INT)
+				&& !field.asType().getKind().equals(TypeKind.LONG))
+			{
+				printError(field, "TWAVarint is only applicable to int and long fields.");
+			}
+
+			if ((field.getAnnotation(TWAElementType.class) != null)
+				&& !typeUtils.isAssignable(field.asType(), mapType)
+				&& !typeUtils.isAssignable(field.asType(), collectionType))
+			{
+				printError(field, "TWAElementType is only applicable to collections and maps.");
+			}
 		}
 
 		//Check if a class requiring safe instantiation has a default constructor.
 		//TODO: Write a bug report on Element.getAnnotation() returning null if annotation is inherited, 
 		//even though RoundEnvironment.getElementsAnnotatedWith() returns this element
 		TWASerializable annotation = e.getAnnotation(TWASerializable.class);
-		if ((((annotation != null) && annotation.forceSafeInstantiation()) || hasCollectionsOrMaps) && !hasDefaultConstructor(e))
+		if (((annotation != null) && annotation.forceSafeInstantiation()) && !hasDefaultConstructor(e))
+		{
+			printError(e, "A class requiring safe instantiation must have a no-argument constructor.");
+		}
+		else if (hasCollectionsOrMaps && !hasDefaultConstructor(e))
+		{
+			// Instantiated without a constructor call, initializing only the collections and maps of concrete types, see Instantiators
+			printWarning(e, "A class with collections or maps should have a no-argument constructor.");
+		}
+	}
+
+	private void processId(TypeElement e)
+	{
+		// Ids are not inherited, only a directly present annotation counts
+		if (!isAnnotationDirectlyPresent(e))
+		{
+			return;
+		}
+
+		TWASerializable annotation = e.getAnnotation(TWASerializable.class);
+		if (annotation.id() == -1)
+		{
+			return;
+		}
+
+		int id = annotation.id();
+		String className = elementUtils.getBinaryName(e).toString();
+
+		if (id < 0)
+		{
+			printError(e, "Class ids must not be negative.");
+		}
+		else if (classNameForId.containsKey(id) && !classNameForId.get(id).equals(className))
+		{
+			printError(e, "The class id " + id + " is already used by " + classNameForId.get(id) + ".");
+		}
+		else
 		{
-			printError(e, "A class requiring safe instantiation must have a public no-argument constructor.");
+			classNameForId.put(id, className);
+		}
+	}
+
+	private boolean isAnnotationDirectlyPresent(Element e)
+	{
+		TypeElement annotationType = elementUtils.getTypeElement(TWASerializable.class.getName());
+		for (AnnotationMirror mirror : e.getAnnotationMirrors())
+		{
+			if (mirror.getAnnotationType().asElement().equals(annotationType))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeRegistry()
+	{
+		try
+		{
+			FileObject resource = processingEnv.getFiler().createResource(	StandardLocation.CLASS_OUTPUT,
+																			"",
+																			ClassRegistry.GENERATED_REGISTRY_RESOURCE);
+			try (Writer writer = resource.openWriter())
+			{
+				writer.write("# Generated by " + AnnotationProcessor.class.getName() + ", do not edit.\n");
+				for (Map.Entry<Integer, String> entry : classNameForId.entrySet())
+				{
+					writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			processingEnv.getMessager().printMessage(Kind.ERROR, "TWASerialization: could not write the class registry: " + e);
+		}
+	}
+
+	private void writeIndex()
+	{
+		try
+		{
+			FileObject resource = processingEnv.getFiler().createResource(	StandardLocation.CLASS_OUTPUT,
+																			"",
+																			ClassDescriptorsCache.GENERATED_INDEX_RESOURCE);
+			try (Writer writer = resource.openWriter())
+			{
+				writer.write("# Generated by " + AnnotationProcessor.class.getName() + ", do not edit.\n");
+				for (String className : serializableClassNames)
+				{
+					writer.write(className + "\n");
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			processingEnv.getMessager().printMessage(Kind.ERROR, "TWASerialization: could not write the class index: " + e);
 		}
 	}
 
@@ -137,11 +283,20 @@ public class AnnotationProcessor extends AbstractProcessor
 		}
 	}
 
+	/**
+	 * Returns {@code true} if the class has a no-argument constructor of any access, which the runtime calls reflectively if it is not
+	 * public. Inner classes have none at runtime, since their constructors take the enclosing instance.
+	 */
 	private boolean hasDefaultConstructor(Element e)
 	{
+		if (e.getEnclosingElement().getKind().isClass() && !e.getModifiers().contains(Modifier.STATIC))
+		{
+			return false;
+		}
+
 		for (ExecutableElement constructor : ElementFilter.constructorsIn(e.getEnclosedElements()))
 		{
-			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+			if (constructor.getParameters().isEmpty())
 			{
 				return true;
 			}
@@ -153,4 +308,9 @@ public class AnnotationProcessor extends AbstractProcessor
 	{
 		processingEnv.getMessager().printMessage(Kind.ERROR, "TWASerialization: " + message, e);
 	}
+
+	private void printWarning(Element e, String message)
+	{
+		processingEnv.getMessager().printMessage(Kind.WARNING, "TWASerialization: " + message, e);
+	}
 }
@@ -0,0 +1,318 @@
+package net.twagame.serial.annotation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+import net.twagame.serial.util.GeneratedCodec;
+
+/**
+ * Generates the {@link GeneratedCodec} of a {@link TWASerializable} class for the {@link AnnotationProcessor}. Each serialized field
+ * declared by the class that is neither private nor final, and whose type is accessible from the package of the class, gets a field codec
+ * that accesses the field directly. Other fields are left to the built-in codecs: accessor methods are not used, since their side effects
+ * and the objects they return may differ from the field itself. No codec is generated for classes that are not accessible from their
+ * package, or have no such fields.
+ * 
+ * @author hadadzhi
+ */
+class CodecGenerator
+{
+	private final ProcessingEnvironment processingEnv;
+	private final Types typeUtils;
+	private final Elements elementUtils;
+
+	CodecGenerator(ProcessingEnvironment processingEnv)
+	{
+		this.processingEnv = processingEnv;
+		this.typeUtils = processingEnv.getTypeUtils();
+		this.elementUtils = processingEnv.getElementUtils();
+	}
+
+	/**
+	 * Generates the codec of the specified class, if possible.
+	 * 
+	 * @param e
+	 */
+	void generate(TypeElement e)
+	{
+		if (!isAccessibleFromPackage(e))
+		{
+			printNote(e, "No codec is generated for a class that is not accessible from its package.");
+			return;
+		}
+
+		String className = elementUtils.getBinaryName(e).toString();
+		String ownerType = typeUtils.erasure(e.asType()).toString();
+		List<String> cases = new ArrayList<>();
+
+		for (VariableElement field : ElementFilter.fieldsIn(e.getEnclosedElements()))
+		{
+			if (field.getModifiers().contains(Modifier.TRANSIENT) || field.getModifiers().contains(Modifier.STATIC))
+			{
+				continue;
+			}
+
+			if (isDirectlyAccessible(field, elementUtils.getPackageOf(e)))
+			{
+				cases.add(fieldCase(field, ownerType));
+			}
+		}
+
+		if (cases.isEmpty())
+		{
+			return;
+		}
+
+		String codecName = GeneratedCodec.codecClassName(className);
+		String packageName = elementUtils.getPackageOf(e).getQualifiedName().toString();
+
+		StringBuilder source = new StringBuilder();
+
+		if (!packageName.isEmpty())
+		{
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+
+		source.append("/**\n");
+		source.append(" * Generated by ").append(AnnotationProcessor.class.getName());
+		source.append(" for {@link ").append(ownerType).append("}, do not edit.\n");
+		source.append(" */\n");
+		source.append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+		source.append("public final class ").append(codecName.substring(codecName.lastIndexOf('.') + 1));
+		source.append(" extends net.twagame.serial.util.GeneratedCodec\n");
+		source.append("{\n");
+		source.append("\t@Override\n");
+		source.append("\tpublic net.twagame.serial.util.FieldCodec forField(net.twagame.serial.util.FieldDescriptor fdesc)\n");
+		source.append("\t{\n");
+		source.append("\t\tswitch (fdesc.getName())\n");
+		source.append("\t\t{\n");
+
+		for (String c : cases)
+		{
+			source.append(c);
+		}
+
+		source.append("\t\t\tdefault:\n");
+		source.append("\t\t\t\treturn null;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		try
+		{
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, e);
+			try (Writer writer = file.openWriter())
+			{
+				writer.write(source.toString());
+			}
+		}
+		catch (IOException ex)
+		{
+			processingEnv.getMessager().printMessage(Kind.ERROR, "TWASerialization: could not write the codec " + codecName + ": " + ex, e);
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the generated codec can read and assign the field directly: the field is neither private nor final, and its
+	 * erased type is accessible from the package of the codec.
+	 */
+	private boolean isDirectlyAccessible(VariableElement field, PackageElement codecPackage)
+	{
+		if (field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL))
+		{
+			return false;
+		}
+
+		TypeMirror type = typeUtils.erasure(field.asType());
+
+		while (type.getKind() == TypeKind.ARRAY)
+		{
+			type = ((ArrayType) type).getComponentType();
+		}
+
+		if (type.getKind() != TypeKind.DECLARED)
+		{
+			return true;
+		}
+
+		for (Element c = typeUtils.asElement(type); !(c instanceof PackageElement); c = c.getEnclosingElement())
+		{
+			boolean samePackage = elementUtils.getPackageOf(c).equals(codecPackage);
+
+			if (!c.getModifiers().contains(Modifier.PUBLIC) && (!samePackage || c.getModifiers().contains(Modifier.PRIVATE)))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the switch case that creates the codec of the specified field. The codec accesses the field through the template
+	 * <code>((Owner) %s).field</code>, formatted with the name of the object variable.
+	 */
+	private String fieldCase(VariableElement field, String ownerType)
+	{
+		String name = field.getSimpleName().toString();
+		TypeMirror type = field.asType();
+		String access = "((" + ownerType + ") %s)." + name;
+
+		boolean varint = field.getAnnotation(TWAVarint.class) != null;
+		StringBuilder c = new StringBuilder();
+
+		c.append("\t\t\tcase \"").append(name).append("\":\n");
+		c.append("\t\t\t\treturn new net.twagame.serial.util.");
+		c.append(type.getKind().isPrimitive() ? "PrimitiveFieldCodec" : "ReferenceFieldCodec").append("(fdesc)\n");
+		c.append("\t\t\t\t{\n");
+
+		switch (type.getKind())
+		{
+			case BOOLEAN:
+				appendPrimitive(c, access, "Boolean", "a == b");
+				break;
+			case BYTE:
+				appendPrimitive(c, access, "Byte", "a == b");
+				break;
+			case SHORT:
+				appendPrimitive(c, access, "Short", "a == b");
+				break;
+			case INT:
+				if (varint)
+				{
+					appendVarint(c, access, "int", "Int", 31);
+				}
+				else
+				{
+					appendPrimitive(c, access, "Int", "a == b");
+				}
+				break;
+			case LONG:
+				if (varint)
+				{
+					appendVarint(c, access, "long", "Long", 63);
+				}
+				else
+				{
+					appendPrimitive(c, access, "Long", "a == b");
+				}
+				break;
+			case FLOAT:
+				appendPrimitive(c, access, "Float", "Float.floatToIntBits(a) == Float.floatToIntBits(b)");
+				break;
+			case DOUBLE:
+				appendPrimitive(c, access, "Double", "Double.doubleToLongBits(a) == Double.doubleToLongBits(b)");
+				break;
+			default:
+				appendReference(c, access, typeUtils.erasure(type).toString());
+		}
+
+		c.append("\t\t\t\t};\n");
+
+		return c.toString();
+	}
+
+	private static void appendPrimitive(StringBuilder c, String access, String name, String equals)
+	{
+		String type = name.equals("Int") ? "int" : name.toLowerCase();
+
+		appendWrite(c, "out.write" + name + "(" + String.format(access, "o") + ");");
+		appendRead(c, String.format(access, "o") + " = in.read" + name + "();");
+		appendValueEquals(c, type, access, equals);
+	}
+
+	private static void appendVarint(StringBuilder c, String access, String type, String name, int signShift)
+	{
+		String field = String.format(access, "o");
+
+		appendWrite(c, type + " v = " + field + ";\n\t\t\t\t\t\tout.writeVar" + name + "((v << 1) ^ (v >> " + signShift + "));");
+		appendRead(c, type + " v = in.readVar" + name + "();\n\t\t\t\t\t\t" + field + " = (v >>> 1) ^ -(v & 1);");
+		appendValueEquals(c, type, access, "a == b");
+	}
+
+	private static void appendReference(StringBuilder c, String access, String type)
+	{
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic Object get(Object o)\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\treturn ").append(String.format(access, "o")).append(";\n");
+		c.append("\t\t\t\t\t}\n\n");
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic void set(Object o, Object value)\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\t").append(String.format(access, "o")).append(" = (").append(type).append(") value;\n");
+		c.append("\t\t\t\t\t}\n\n");
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic boolean valueEquals(Object a, Object b)\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\treturn java.util.Objects.deepEquals(get(a), get(b));\n");
+		c.append("\t\t\t\t\t}\n");
+	}
+
+	private static void appendWrite(StringBuilder c, String body)
+	{
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic void write(Object o, net.twagame.serial.io.SerializationOutput out) throws java.io.IOException\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\t").append(body).append("\n");
+		c.append("\t\t\t\t\t}\n\n");
+	}
+
+	private static void appendRead(StringBuilder c, String body)
+	{
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic void read(Object o, net.twagame.serial.io.SerializationInput in) throws java.io.IOException\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\t").append(body).append("\n");
+		c.append("\t\t\t\t\t}\n\n");
+	}
+
+	private static void appendValueEquals(StringBuilder c, String type, String access, String equals)
+	{
+		c.append("\t\t\t\t\t@Override\n");
+		c.append("\t\t\t\t\tpublic boolean valueEquals(Object o1, Object o2)\n");
+		c.append("\t\t\t\t\t{\n");
+		c.append("\t\t\t\t\t\t").append(type).append(" a = ").append(String.format(access, "o1")).append(";\n");
+		c.append("\t\t\t\t\t\t").append(type).append(" b = ").append(String.format(access, "o2")).append(";\n");
+		c.append("\t\t\t\t\t\treturn ").append(equals).append(";\n");
+		c.append("\t\t\t\t\t}\n");
+	}
+
+	/**
+	 * Returns {@code true} if the class and all classes enclosing it are accessible from its package, i.e. not private, and it is not a
+	 * local or anonymous class.
+	 */
+	private static boolean isAccessibleFromPackage(TypeElement e)
+	{
+		for (Element c = e; !(c instanceof PackageElement); c = c.getEnclosingElement())
+		{
+			if (!(c.getKind().isClass() || c.getKind().isInterface()) || c.getModifiers().contains(Modifier.PRIVATE))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void printNote(Element e, String message)
+	{
+		processingEnv.getMessager().printMessage(Kind.NOTE, "TWASerialization: " + message, e);
+	}
+}
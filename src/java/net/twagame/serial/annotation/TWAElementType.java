@@ -0,0 +1,34 @@
+package net.twagame.serial.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Declares the exact class of the elements of this {@link Collection} field, or of the values and keys of this {@link Map} field, of a
+ * {@link TWASerializable} class. The declared classes must be primitive wrappers or TWASerializable classes.
+ * <p>
+ * Collections and maps whose elements are all of the same class are written with the class once, followed by the bodies of the elements
+ * (see {@link net.twagame.serial.TWASerializer#writeObject(Object) TWASerializer.writeObject(Object)}). The serializer detects that by
+ * checking the elements before writing them; with this annotation it skips the check and fails if an element is {@code null} or of
+ * another class, including a subclass. Elements of declared classes are not interned in the session symbol table.
+ * 
+ * @author hadadzhi
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TWAElementType
+{
+	/**
+	 * The class of the elements of a collection, or of the values of a map. <code>Object.class</code> means not declared.
+	 */
+	Class<?> value() default Object.class;
+
+	/**
+	 * The class of the keys of a map. <code>Object.class</code> means not declared.
+	 */
+	Class<?> key() default Object.class;
+}
@@ -10,6 +10,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.twagame.serial.util.ClassDescriptorsCache;
+import net.twagame.serial.util.ClassRegistry;
+import net.twagame.serial.util.Instantiator;
+
 /**
  * Indicates that this class can be serialized with the TWA Serialization.
  * <p>
@@ -48,13 +52,35 @@ public @interface TWASerializable
 {
 	/**
 	 * If <code>true</code>, force safe instantiation of this class when deserializing. The default is <code>false</code>. This option may
-	 * be useful if this class needs some special initialization. This requires the class to have a public no-argument constructor that will
-	 * be invoked to create an instance of this class. All initialization should be done within that constructor.
+	 * be useful if this class needs some special initialization. This requires the class to have a no-argument constructor, of any access,
+	 * that will be invoked to create an instance of this class. All initialization should be done within that constructor.
 	 * <p>
 	 * Note: if a serializable class contains {@link Collection}s or {@link Map}s, safe instantiation is forced regardless of the value of
 	 * this attribute. That way, if a field of Collection or Map type is initialized with an implementation of Collection or Map, this
 	 * implementation will be used for deserialization, otherwise, the deserializer will create a new {@link ArrayList} for collections or a
-	 * new {@link HashMap} for maps.
+	 * new {@link HashMap} for maps. A class compiled without the {@link AnnotationProcessor} and lacking the constructor is then allocated
+	 * without a constructor call, with the fields of concrete Collection and Map types initialized.
+	 * <p>
+	 * The constructor is called directly rather than by reflection when it is public, see {@link Instantiator}. Classes that need
+	 * initialization without a no-argument constructor can register a factory with
+	 * {@link ClassDescriptorsCache#registerInstantiator(Class, Instantiator)} before their descriptor is created.
 	 */
 	boolean forceSafeInstantiation() default false;
+
+	/**
+	 * A non-negative class id, used to register this class in a {@link ClassRegistry} shared by the serializing and the deserializing side.
+	 * The default is <code>-1</code>, meaning that this class has no id. Unlike the annotation itself, the id is not inherited by
+	 * subclasses. Ids are checked for collisions at compile time by the {@link AnnotationProcessor}, which also lists them in a generated
+	 * resource that can be loaded with {@link ClassRegistry#load(ClassLoader)}.
+	 */
+	int id() default -1;
+
+	/**
+	 * If <code>true</code>, instances of this class are never modified after they have been created. The default is <code>false</code>.
+	 * Such objects can be shared between messages through the session symbol table (see
+	 * {@link net.twagame.serial.TWASerializationConfig#getSymbolTableSize() TWASerializationConfig.getSymbolTableSize()}): after their
+	 * first use in a session they are written as a short reference, and the receiving side gets the same instance each time. Objects are
+	 * matched with {@link Object#equals(Object)} and {@link Object#hashCode()}, so equal objects share a symbol.
+	 */
+	boolean immutable() default false;
 }
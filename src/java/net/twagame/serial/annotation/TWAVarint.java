@@ -0,0 +1,23 @@
+package net.twagame.serial.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import net.twagame.serial.io.SerializationOutput;
+
+/**
+ * Indicates that the value of this <code>int</code> or <code>long</code> field of a {@link TWASerializable} class should be written as a
+ * zigzag encoded varint, instead of a fixed-width big-endian value. Zigzag encoding maps signed values to unsigned ones so that values of
+ * small magnitude take few bytes, e.g. values from -64 to 63 take 1 byte, see {@link SerializationOutput#writeVarInt(int)}. Values of large
+ * magnitude take one (<code>int</code>) or two (<code>long</code>) bytes more than the fixed-width encoding, so this annotation should only
+ * be used for fields that usually hold small values.
+ * 
+ * @author hadadzhi
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TWAVarint
+{
+}
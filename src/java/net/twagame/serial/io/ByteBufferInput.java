@@ -0,0 +1,303 @@
+package net.twagame.serial.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * This class implements a {@link SerializationInput} in which the data is read from a {@link ByteBuffer}, either heap or direct, using bulk
+ * <code>get</code> operations. The data is read from the buffer's position up to its limit, and the position is advanced as data is read.
+ * <p>
+ * The byte order of the buffer is set to {@link ByteOrder#BIG_ENDIAN}, matching the data written by all {@link SerializationOutput}s.
+ * Closing a <code>ByteBufferInput</code> has no effect. This class is not thread-safe.
+ * 
+ * @author hadadzhi
+ */
+public class ByteBufferInput implements SerializationInput
+{
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+	private static final int INITIAL_STRING_BUFFER_SIZE = 16;
+
+	private final Charset charset;
+
+	private ByteBuffer buffer;
+
+	/**
+	 * Used in readString() for direct buffers
+	 */
+	private byte[] stringBuffer = new byte[INITIAL_STRING_BUFFER_SIZE];
+
+	/**
+	 * Creates a {@link ByteBufferInput} that reads from the specified buffer.
+	 * 
+	 * @param buffer
+	 */
+	public ByteBufferInput(ByteBuffer buffer)
+	{
+		this(buffer, DEFAULT_CHARSET);
+	}
+
+	/**
+	 * Creates a {@link ByteBufferInput} that reads from the specified buffer and uses the specified charset to read strings.
+	 * 
+	 * @param buffer
+	 * @param charset
+	 */
+	public ByteBufferInput(ByteBuffer buffer, Charset charset)
+	{
+		this.buffer = (buffer != null) ? buffer.order(ByteOrder.BIG_ENDIAN) : null;
+		this.charset = charset;
+	}
+
+	/**
+	 * Sets a new buffer to read from, starting at its position.
+	 * 
+	 * @param newBuffer
+	 */
+	public void reset(ByteBuffer newBuffer)
+	{
+		buffer = newBuffer.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Returns the buffer the data is read from.
+	 * 
+	 * @return
+	 */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Requires the buffer to have {@code required} more remaining bytes, otherwise EOFException is thrown.
+	 * 
+	 * @param required
+	 * @throws EOFException
+	 */
+	private void require(int required) throws EOFException
+	{
+		if (buffer.remaining() < required)
+			throw new EOFException();
+	}
+
+	/**
+	 * Reads a string from the input, assuming it was written using {@link SerializationOutput#writeString(String)}.
+	 * 
+	 * @return the read {@code String} or {@code null} if EOF has been reached.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	@Override
+	public String readString() throws IOException
+	{
+		if (buffer.remaining() < 2)
+			return null;
+
+		int size = buffer.getShort() & 0xFFFF;
+
+		require(size);
+
+		if (buffer.hasArray())
+		{
+			String str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), size, charset);
+			buffer.position(buffer.position() + size);
+			return str;
+		}
+
+		if (stringBuffer.length < size)
+			stringBuffer = new byte[size * 2];
+
+		buffer.get(stringBuffer, 0, size);
+
+		return new String(stringBuffer, 0, size, charset);
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if ((off < 0) || (len < 0) || (len > (b.length - off)))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		if (!buffer.hasRemaining())
+		{
+			return -1;
+		}
+
+		len = Math.min(len, buffer.remaining());
+		buffer.get(b, off, len);
+
+		return len;
+	}
+
+	@Override
+	public byte readByte() throws IOException
+	{
+		require(1);
+		return buffer.get();
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException
+	{
+		require(1);
+		return buffer.get() != 0;
+	}
+
+	@Override
+	public short readShort() throws IOException
+	{
+		require(2);
+		return buffer.getShort();
+	}
+
+	@Override
+	public int readInt() throws IOException
+	{
+		require(4);
+		return buffer.getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException
+	{
+		require(8);
+		return buffer.getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException
+	{
+		require(4);
+		return buffer.getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException
+	{
+		require(8);
+		return buffer.getDouble();
+	}
+
+	@Override
+	public void readBooleans(boolean[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		require(len);
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			a[i] = buffer.get() != 0;
+		}
+	}
+
+	@Override
+	public void readShorts(short[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 1;
+		if (bytes > buffer.remaining())
+			throw new EOFException();
+		buffer.asShortBuffer().get(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void readInts(int[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > buffer.remaining())
+			throw new EOFException();
+		buffer.asIntBuffer().get(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void readLongs(long[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > buffer.remaining())
+			throw new EOFException();
+		buffer.asLongBuffer().get(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void readFloats(float[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > buffer.remaining())
+			throw new EOFException();
+		buffer.asFloatBuffer().get(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void readDoubles(double[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > buffer.remaining())
+			throw new EOFException();
+		buffer.asDoubleBuffer().get(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public int readVarInt() throws IOException
+	{
+		int result = 0;
+		int b;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			require(1);
+			b = buffer.get();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	@Override
+	public long readVarLong() throws IOException
+	{
+		long result = 0;
+		int b;
+		for (int shift = 0; shift < 70; shift += 7)
+		{
+			require(1);
+			b = buffer.get();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Closing a <tt>ByteBufferInput</tt> has no effect.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+	}
+}
@@ -0,0 +1,329 @@
+package net.twagame.serial.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * This class implements a {@link SerializationOutput} in which the data is written into a {@link ByteBuffer}, either heap or direct, using
+ * bulk <code>put</code> operations. This allows serializing straight into NIO socket buffers or memory-mapped files. The data is written
+ * starting at the buffer's position, and the position is advanced as data is written.
+ * <p>
+ * The byte order of the buffer is set to {@link ByteOrder#BIG_ENDIAN}, so that the written data is identical to the data written by
+ * {@link MemoryOutput} and {@link StreamOutput} regardless of the native byte order. A {@link ByteBufferOutput} created with a maximum
+ * capacity grows its buffer as needed, replacing it with a larger one of the same kind; otherwise, an {@link IOException} is thrown when
+ * the buffer is full. Closing a <code>ByteBufferOutput</code> has no effect. This class is not thread-safe.
+ * 
+ * @author hadadzhi
+ */
+public class ByteBufferOutput implements SerializationOutput
+{
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+	private final Charset charset;
+	private final int maxCapacity;
+
+	private ByteBuffer buffer;
+
+	/**
+	 * Creates a {@link ByteBufferOutput} that writes into the specified buffer, which is never replaced.
+	 * 
+	 * @param buffer
+	 */
+	public ByteBufferOutput(ByteBuffer buffer)
+	{
+		this(buffer, buffer.capacity(), DEFAULT_CHARSET);
+	}
+
+	/**
+	 * Creates a {@link ByteBufferOutput} that writes into a newly allocated heap or direct buffer of the specified initial capacity. The
+	 * buffer grows as needed, up to <code>maxCapacity</code> bytes.
+	 * 
+	 * @param initialCapacity
+	 * @param maxCapacity
+	 * @param direct
+	 *            if {@code true}, allocate direct buffers.
+	 */
+	public ByteBufferOutput(int initialCapacity, int maxCapacity, boolean direct)
+	{
+		this(direct ? ByteBuffer.allocateDirect(initialCapacity) : ByteBuffer.allocate(initialCapacity), maxCapacity, DEFAULT_CHARSET);
+	}
+
+	/**
+	 * Creates a {@link ByteBufferOutput} that writes into the specified buffer, growing it up to <code>maxCapacity</code> bytes, and uses the
+	 * specified charset to write strings.
+	 * 
+	 * @param buffer
+	 * @param maxCapacity
+	 * @param charset
+	 */
+	public ByteBufferOutput(ByteBuffer buffer, int maxCapacity, Charset charset)
+	{
+		if (maxCapacity < buffer.capacity())
+		{
+			throw new IllegalArgumentException("The maximum capacity is less than the buffer capacity: " + maxCapacity);
+		}
+
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		this.maxCapacity = maxCapacity;
+		this.charset = charset;
+	}
+
+	/**
+	 * Ensures that the buffer has the required amount of bytes remaining, replacing it with a larger one if needed and allowed.
+	 * 
+	 * @param required
+	 * @throws IOException
+	 *             if the buffer can not grow enough.
+	 */
+	private void require(int required) throws IOException
+	{
+		if (buffer.remaining() >= required)
+			return;
+
+		long needed = (long) buffer.position() + required;
+		if (needed > maxCapacity)
+			throw new IOException("The ByteBufferOutput is full: " + needed + " bytes required, the maximum capacity is " + maxCapacity);
+
+		int newCapacity = (int) Math.min(Math.max(needed, (long) buffer.capacity() * 2), maxCapacity);
+		ByteBuffer newBuffer = buffer.isDirect() ? ByteBuffer.allocateDirect(newCapacity) : ByteBuffer.allocate(newCapacity);
+
+		buffer.flip();
+		newBuffer.order(ByteOrder.BIG_ENDIAN).put(buffer);
+		buffer = newBuffer;
+	}
+
+	/**
+	 * Returns the buffer the data is written into. The written data are the bytes before the buffer's position. If this output grows, the
+	 * buffer is replaced, so the returned buffer is only valid until the next write.
+	 * 
+	 * @return
+	 */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Sets a new buffer to write into, starting at its position.
+	 * 
+	 * @param newBuffer
+	 */
+	public void reset(ByteBuffer newBuffer)
+	{
+		buffer = newBuffer.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Returns the number of bytes written, i.e. the position of the buffer.
+	 * 
+	 * @return
+	 */
+	public int size()
+	{
+		return buffer.position();
+	}
+
+	@Override
+	public void writeString(String str) throws IOException
+	{
+		if (str == null)
+			throw new NullPointerException();
+
+		byte[] bytes = str.getBytes(charset);
+
+		if (bytes.length > 65535)
+			throw new IOException("The encoded string is too long: " + bytes.length + " bytes.");
+
+		// Write length as unsigned short
+		require(2 + bytes.length);
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		require(1);
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if ((off < 0) || (off > b.length) || (len < 0) || (((off + len) - b.length) > 0))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		require(len);
+		buffer.put(b, off, len);
+	}
+
+	@Override
+	public void writeByte(byte v) throws IOException
+	{
+		require(1);
+		buffer.put(v);
+	}
+
+	@Override
+	public void writeBoolean(boolean v) throws IOException
+	{
+		require(1);
+		buffer.put(v ? (byte) 1 : (byte) 0);
+	}
+
+	@Override
+	public void writeShort(short v) throws IOException
+	{
+		require(2);
+		buffer.putShort(v);
+	}
+
+	@Override
+	public void writeInt(int v) throws IOException
+	{
+		require(4);
+		buffer.putInt(v);
+	}
+
+	@Override
+	public void writeLong(long v) throws IOException
+	{
+		require(8);
+		buffer.putLong(v);
+	}
+
+	@Override
+	public void writeFloat(float v) throws IOException
+	{
+		require(4);
+		buffer.putFloat(v);
+	}
+
+	@Override
+	public void writeDouble(double v) throws IOException
+	{
+		require(8);
+		buffer.putDouble(v);
+	}
+
+	@Override
+	public void writeBooleans(boolean[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		require(len);
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			buffer.put(a[i] ? (byte) 1 : (byte) 0);
+		}
+	}
+
+	@Override
+	public void writeShorts(short[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 1;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("Too many elements: " + len);
+		require((int) bytes);
+		buffer.asShortBuffer().put(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void writeInts(int[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("Too many elements: " + len);
+		require((int) bytes);
+		buffer.asIntBuffer().put(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void writeLongs(long[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("Too many elements: " + len);
+		require((int) bytes);
+		buffer.asLongBuffer().put(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void writeFloats(float[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("Too many elements: " + len);
+		require((int) bytes);
+		buffer.asFloatBuffer().put(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	@Override
+	public void writeDoubles(double[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("Too many elements: " + len);
+		require((int) bytes);
+		buffer.asDoubleBuffer().put(a, off, len);
+		buffer.position(buffer.position() + (int) bytes);
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public void writeVarInt(int v) throws IOException
+	{
+		require(5);
+		while ((v & ~0x7F) != 0)
+		{
+			buffer.put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		buffer.put((byte) v);
+	}
+
+	@Override
+	public void writeVarLong(long v) throws IOException
+	{
+		require(10);
+		while ((v & ~0x7FL) != 0)
+		{
+			buffer.put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		buffer.put((byte) v);
+	}
+
+	/**
+	 * Flushing a <tt>ByteBufferOutput</tt> has no effect.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+	}
+
+	/**
+	 * Closing a <tt>ByteBufferOutput</tt> has no effect.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+	}
+}
@@ -4,6 +4,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 
+import net.twagame.serial.util.unsafe.UnsafeMemory;
+
 /**
  * This class implements a {@link SerializationInput} in which the data is read from a byte array. This class provides methods to
  * efficiently read data directly from the underlying byte array. Closing a <code>MemoryInput</code> has no effect. The methods in this
@@ -17,6 +19,7 @@ public final class MemoryInput implements SerializationInput
 
 	private byte[] buffer;
 	private int read = 0;
+	private int limit;
 
 	// Used in readString()
 	private int size;
@@ -30,6 +33,7 @@ public final class MemoryInput implements SerializationInput
 	public MemoryInput(byte[] byteArray)
 	{
 		buffer = byteArray;
+		limit = (byteArray != null) ? byteArray.length : 0;
 	}
 
 	/**
@@ -52,8 +56,63 @@ public final class MemoryInput implements SerializationInput
 	 */
 	public void reset(byte[] newByteArray)
 	{
-		read = 0;
+		reset(newByteArray, 0, newByteArray.length);
+	}
+
+	/**
+	 * Sets a new byte array to read from, so that <code>length</code> bytes are read starting at <code>offset</code>. This allows reading
+	 * directly from a buffer that holds more than one message, e.g. the buffer returned by {@link MemoryOutput#getBuffer()}, without
+	 * copying. <b>The byte array should not be modified externally while it is being read!</b>
+	 * 
+	 * @param newByteArray
+	 * @param offset
+	 * @param length
+	 * @exception IndexOutOfBoundsException
+	 *                if <code>offset</code> or <code>length</code> is negative, or <code>offset + length</code> exceeds the array length.
+	 */
+	public void reset(byte[] newByteArray, int offset, int length)
+	{
+		if ((offset < 0) || (length < 0) || (length > (newByteArray.length - offset)))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
 		buffer = newByteArray;
+		read = offset;
+		limit = offset + length;
+	}
+
+	/**
+	 * Returns the number of bytes that can be read before the end of input is reached.
+	 * 
+	 * @return
+	 */
+	public int remaining()
+	{
+		return limit - read;
+	}
+
+	/**
+	 * Returns the index of the next byte to read in the byte array.
+	 * 
+	 * @return
+	 */
+	public int position()
+	{
+		return read;
+	}
+
+	/**
+	 * Skips the specified number of bytes.
+	 * 
+	 * @param n
+	 * @throws EOFException
+	 *             if less than <code>n</code> bytes remain.
+	 */
+	public void skipBytes(int n) throws EOFException
+	{
+		require(n);
+		read += n;
 	}
 
 	/**
@@ -68,7 +127,7 @@ public final class MemoryInput implements SerializationInput
 		if (required < 0)
 			throw new IllegalArgumentException();
 
-		if ((buffer.length - read) < required)
+		if ((limit - read) < required)
 			throw new EOFException();
 	}
 
@@ -84,7 +143,7 @@ public final class MemoryInput implements SerializationInput
 	public int read()
 	{
 		//buffer[read++] is implicitly cast to int and "& 0xFF" gets rid of the sign bit.
-		return (read < buffer.length) ? (buffer[read++] & 0xFF) : -1;
+		return (read < limit) ? (buffer[read++] & 0xFF) : -1;
 	}
 
 	/**
@@ -122,12 +181,12 @@ public final class MemoryInput implements SerializationInput
 			throw new IndexOutOfBoundsException();
 		}
 
-		if (read >= buffer.length)
+		if (read >= limit)
 		{
 			return -1;
 		}
 
-		int avail = buffer.length - read;
+		int avail = limit - read;
 
 		if (len > avail)
 		{
@@ -235,6 +294,110 @@ public final class MemoryInput implements SerializationInput
 			| ((buffer[read++] & 0xFF));
 	}
 
+	@Override
+	public void readBooleans(boolean[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		require(len);
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			a[i] = buffer[read++] != 0;
+		}
+	}
+
+	@Override
+	public void readShorts(short[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 1;
+		if (bytes > (limit - read))
+			throw new EOFException();
+		UnsafeMemory.getShorts(buffer, read, a, off, len);
+		read += (int) bytes;
+	}
+
+	@Override
+	public void readInts(int[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > (limit - read))
+			throw new EOFException();
+		UnsafeMemory.getInts(buffer, read, a, off, len);
+		read += (int) bytes;
+	}
+
+	@Override
+	public void readLongs(long[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > (limit - read))
+			throw new EOFException();
+		UnsafeMemory.getLongs(buffer, read, a, off, len);
+		read += (int) bytes;
+	}
+
+	@Override
+	public void readFloats(float[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 2;
+		if (bytes > (limit - read))
+			throw new EOFException();
+		UnsafeMemory.getFloats(buffer, read, a, off, len);
+		read += (int) bytes;
+	}
+
+	@Override
+	public void readDoubles(double[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		long bytes = (long) len << 3;
+		if (bytes > (limit - read))
+			throw new EOFException();
+		UnsafeMemory.getDoubles(buffer, read, a, off, len);
+		read += (int) bytes;
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public int readVarInt() throws IOException
+	{
+		int result = 0;
+		int b;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			require(1);
+			b = buffer[read++];
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	@Override
+	public long readVarLong() throws IOException
+	{
+		long result = 0;
+		int b;
+		for (int shift = 0; shift < 70; shift += 7)
+		{
+			require(1);
+			b = buffer[read++];
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
+	}
+
 	@Override
 	public float readFloat() throws IOException
 	{
@@ -1,11 +1,17 @@
 package net.twagame.serial.io;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import net.twagame.serial.util.unsafe.UnsafeMemory;
+
 /**
  * This class implements a {@link SerializationOutput} in which the data is written into a byte array. The buffer automatically grows as
- * data is written to it. The data can be retrieved using <code>getByteArray()</code>. This class provides methods to efficiently write data
+ * data is written to it. The data can be retrieved as a copy using <code>getBytes()</code>, or without copying using
+ * <code>getBuffer()</code> and <code>size()</code>, or <code>writeTo()</code>. This class provides methods to efficiently write data
  * directly into the underlying byte array. Closing a <code>MemoryOutput</code> has no effect. The methods in this class can be called after
  * the stream has been closed without generating an IOException. This class is not thread-safe.
  * 
@@ -186,6 +192,25 @@ public class MemoryOutput implements SerializationOutput
 		buffer[written++] = (byte) (v);
 	}
 
+	/**
+	 * Overwrites 4 already written bytes at the specified position with an int, e.g. to fill in a length prefix once the length is known.
+	 * 
+	 * @param pos
+	 * @param v
+	 * @throws IndexOutOfBoundsException
+	 *             if the int would not lie entirely within the written bytes.
+	 */
+	public void writeIntAt(int pos, int v)
+	{
+		if ((pos < 0) || (pos > (written - 4)))
+			throw new IndexOutOfBoundsException();
+
+		buffer[pos] = (byte) (v >>> 24);
+		buffer[pos + 1] = (byte) (v >>> 16);
+		buffer[pos + 2] = (byte) (v >>> 8);
+		buffer[pos + 3] = (byte) (v);
+	}
+
 	/**
 	 * Writes an 8-byte long.
 	 * 
@@ -227,6 +252,108 @@ public class MemoryOutput implements SerializationOutput
 		writeLong(Double.doubleToLongBits(v));
 	}
 
+	@Override
+	public void writeBooleans(boolean[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		require(len);
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			buffer[written++] = a[i] ? (byte) 1 : (byte) 0;
+		}
+	}
+
+	@Override
+	public void writeShorts(short[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		int bytes = byteCount(len, 1);
+		require(bytes);
+		UnsafeMemory.putShorts(buffer, written, a, off, len);
+		written += bytes;
+	}
+
+	@Override
+	public void writeInts(int[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		int bytes = byteCount(len, 2);
+		require(bytes);
+		UnsafeMemory.putInts(buffer, written, a, off, len);
+		written += bytes;
+	}
+
+	@Override
+	public void writeLongs(long[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		int bytes = byteCount(len, 3);
+		require(bytes);
+		UnsafeMemory.putLongs(buffer, written, a, off, len);
+		written += bytes;
+	}
+
+	@Override
+	public void writeFloats(float[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		int bytes = byteCount(len, 2);
+		require(bytes);
+		UnsafeMemory.putFloats(buffer, written, a, off, len);
+		written += bytes;
+	}
+
+	@Override
+	public void writeDoubles(double[] a, int off, int len)
+	{
+		checkBounds(a.length, off, len);
+		int bytes = byteCount(len, 3);
+		require(bytes);
+		UnsafeMemory.putDoubles(buffer, written, a, off, len);
+		written += bytes;
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Returns the size in bytes of <code>len</code> elements of <code>1 &lt;&lt; shift</code> bytes each.
+	 */
+	private static int byteCount(int len, int shift)
+	{
+		long bytes = (long) len << shift;
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The MemoryOutput has exceeded the maximum byte array capacity.");
+		return (int) bytes;
+	}
+
+	@Override
+	public void writeVarInt(int v)
+	{
+		require(5);
+		while ((v & ~0x7F) != 0)
+		{
+			buffer[written++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[written++] = (byte) v;
+	}
+
+	@Override
+	public void writeVarLong(long v)
+	{
+		require(10);
+		while ((v & ~0x7FL) != 0)
+		{
+			buffer[written++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[written++] = (byte) v;
+	}
+
 	/**
 	 * Writes a {@code String}, prefixed by its length as unsigned short, using the specified encoding.
 	 * 
@@ -270,6 +397,67 @@ public class MemoryOutput implements SerializationOutput
 		return bytes;
 	}
 
+	/**
+	 * Returns the underlying byte array without copying. The valid contents are the first {@link MemoryOutput#size()} bytes. The returned
+	 * array is only valid until the next write or {@link MemoryOutput#trim(int)}, as the buffer may be replaced when it grows, and its
+	 * contents are overwritten after a {@link MemoryOutput#reset()}.
+	 * 
+	 * @return the underlying byte array.
+	 */
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Writes the valid contents of the buffer to the specified stream, without copying them into a new array.
+	 * 
+	 * @param ostream
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream ostream) throws IOException
+	{
+		ostream.write(buffer, 0, written);
+	}
+
+	/**
+	 * Puts the valid contents of the buffer into the specified {@link ByteBuffer}, without copying them into a new array.
+	 * 
+	 * @param byteBuffer
+	 * @throws BufferOverflowException
+	 *             if there is insufficient space in the byte buffer.
+	 */
+	public void writeTo(ByteBuffer byteBuffer)
+	{
+		byteBuffer.put(buffer, 0, written);
+	}
+
+	/**
+	 * Returns the current capacity of the buffer.
+	 * 
+	 * @return
+	 */
+	public int capacity()
+	{
+		return buffer.length;
+	}
+
+	/**
+	 * Shrinks the buffer to <code>maxCapacity</code> bytes if it is larger and the valid contents fit. Long-lived outputs should call this
+	 * method after an unusually large message, so that one such message does not hold on to a large buffer forever.
+	 * 
+	 * @param maxCapacity
+	 */
+	public void trim(int maxCapacity)
+	{
+		if ((buffer.length > maxCapacity) && (written <= maxCapacity))
+		{
+			byte[] newBuffer = new byte[maxCapacity];
+			System.arraycopy(buffer, 0, newBuffer, 0, written);
+			buffer = newBuffer;
+		}
+	}
+
 	/**
 	 * Returns the current size of valid data in the buffer.
 	 * 
@@ -292,6 +480,14 @@ public class MemoryOutput implements SerializationOutput
 		written = 0;
 	}
 
+	/**
+	 * Flushing a <tt>MemoryOutput</tt> has no effect.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+	}
+
 	/**
 	 * Closing a <tt>MemoryOutput</tt> has no effect. The methods of this class can be called after it has been closed without generating
 	 * <tt>IOException</tt>.
@@ -3,7 +3,7 @@ package net.twagame.serial.io;
 import java.io.IOException;
 
 /**
- * An input for the TWADeserializer. This interface is implemented by {@link StreamInput} and {@link MemoryInput}.
+ * An input for the TWADeserializer. This interface is implemented by {@link StreamInput}, {@link MemoryInput} and {@link ByteBufferInput}.
  * 
  * @author hadadzhi
  */
@@ -67,6 +67,52 @@ public interface SerializationInput
 	 */
 	public double readDouble() throws IOException;
 
+	/**
+	 * Reads <code>len</code> booleans into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readBoolean()</code> calls would, but with a single bounds check.
+	 */
+	public void readBooleans(boolean[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads <code>len</code> shorts into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readShort()</code> calls would, but with a single bounds check.
+	 */
+	public void readShorts(short[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads <code>len</code> ints into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readInt()</code> calls would, but with a single bounds check.
+	 */
+	public void readInts(int[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads <code>len</code> longs into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readLong()</code> calls would, but with a single bounds check.
+	 */
+	public void readLongs(long[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads <code>len</code> floats into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readFloat()</code> calls would, but with a single bounds check.
+	 */
+	public void readFloats(float[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads <code>len</code> doubles into the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>readDouble()</code> calls would, but with a single bounds check.
+	 */
+	public void readDoubles(double[] a, int off, int len) throws IOException;
+
+	/**
+	 * Reads an int written as an unsigned LEB128 varint by {@link SerializationOutput#writeVarInt(int)}.
+	 */
+	public int readVarInt() throws IOException;
+
+	/**
+	 * Reads a long written as an unsigned LEB128 varint by {@link SerializationOutput#writeVarLong(long)}.
+	 */
+	public long readVarLong() throws IOException;
+
 	/**
 	 * Closes the underlying stream, if such stream exists.
 	 */
@@ -3,7 +3,8 @@ package net.twagame.serial.io;
 import java.io.IOException;
 
 /**
- * An output for the TWASerializer. This interface is implemented by {@link StreamOutput} and {@link MemoryOutput}.
+ * An output for the TWASerializer. This interface is implemented by {@link StreamOutput}, {@link MemoryOutput} and
+ * {@link ByteBufferOutput}.
  * 
  * @author hadadzhi
  */
@@ -62,7 +63,60 @@ public interface SerializationOutput
 	public void writeDouble(double v) throws IOException;
 
 	/**
-	 * Closes the underlying stream, if such stream exists.
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeBoolean()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeBooleans(boolean[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeShort()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeShorts(short[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeInt()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeInts(int[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeLong()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeLongs(long[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeFloat()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeFloats(float[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes <code>len</code> elements of the specified array starting at <code>off</code>, the same way as a sequence of
+	 * <code>writeDouble()</code> calls would, but with a single bounds and capacity check.
+	 */
+	public void writeDoubles(double[] a, int off, int len) throws IOException;
+
+	/**
+	 * Writes an int as an unsigned LEB128 varint: 7 bits per byte, least significant group first, with the high bit of each byte set if
+	 * more bytes follow. Takes 1 byte for values below 128, and up to 5 bytes. Negative values always take 5 bytes, and should be zigzag
+	 * encoded first.
+	 */
+	public void writeVarInt(int v) throws IOException;
+
+	/**
+	 * Writes a long as an unsigned LEB128 varint, see {@link SerializationOutput#writeVarInt(int)}. Takes up to 10 bytes.
+	 */
+	public void writeVarLong(long v) throws IOException;
+
+	/**
+	 * Writes any buffered data to the underlying stream and flushes it, if such stream exists.
+	 */
+	public void flush() throws IOException;
+
+	/**
+	 * Flushes this output and closes the underlying stream, if such stream exists.
 	 */
 	public void close() throws IOException;
 }
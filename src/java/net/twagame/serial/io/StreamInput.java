@@ -1,23 +1,48 @@
 package net.twagame.serial.io;
 
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 
+import net.twagame.serial.util.unsafe.UnsafeMemory;
+
 /**
  * This class implements a {@link SerializationInput} in which the data is read from some {@link InputStream}.
+ * <p>
+ * The data is read from the underlying stream into an internal buffer, as much as is available in a single call, and the values are
+ * decoded from the buffer. Since this input may read ahead, the underlying stream should not be read directly while this input is in use.
+ * This class is not thread-safe.
  * 
  * @author hadadzhi
- * @see DataInputStream
  */
 public class StreamInput implements SerializationInput
 {
 	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 	private static final int INITIAL_STRING_BUFFER_SIZE = 16;
 
+	/**
+	 * The default size of the internal buffer, in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The smallest allowed size of the internal buffer, in bytes.
+	 */
+	public static final int MIN_BUFFER_SIZE = 16;
+
 	private final Charset charset;
-	private final DataInputStream in;
+	private final InputStream in;
+	private final byte[] buffer;
+
+	/**
+	 * The index of the next buffered byte to be read
+	 */
+	private int position;
+	/**
+	 * The number of valid bytes in the buffer
+	 */
+	private int limit;
 
 	/**
 	 * Used in readString()
@@ -43,7 +68,7 @@ public class StreamInput implements SerializationInput
 	 * 
 	 * @param istream
 	 * @param charsetName
-	 *            a {@#code String} containing the name of the charset to use.
+	 *            a {@code String} containing the name of the charset to use.
 	 */
 	public StreamInput(InputStream istream, String charsetName)
 	{
@@ -59,8 +84,92 @@ public class StreamInput implements SerializationInput
 	 */
 	public StreamInput(InputStream istream, Charset charset)
 	{
-		in = new DataInputStream(istream);
+		this(istream, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new {@link StreamInput} that uses the specified charset and an internal buffer of the specified size.
+	 * 
+	 * @param istream
+	 * @param charset
+	 *            the {@link Charset} to use.
+	 * @param bufferSize
+	 *            the size of the internal buffer, at least {@link StreamInput#MIN_BUFFER_SIZE}.
+	 * @exception IllegalArgumentException
+	 *                if the buffer size is too small.
+	 */
+	public StreamInput(InputStream istream, Charset charset, int bufferSize)
+	{
+		if (bufferSize < MIN_BUFFER_SIZE)
+		{
+			throw new IllegalArgumentException("The buffer size is too small: " + bufferSize);
+		}
+
+		in = istream;
 		this.charset = charset;
+		buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Ensures that at least the required amount of bytes is buffered, reading from the underlying stream if needed.
+	 * 
+	 * @param required
+	 *            at most the buffer size.
+	 * @return {@code false} if EOF has been reached before that many bytes were buffered.
+	 * @throws IOException
+	 */
+	private boolean fill(int required) throws IOException
+	{
+		if ((limit - position) >= required)
+			return true;
+
+		if (position > 0)
+		{
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+
+		while (limit < required)
+		{
+			int n = in.read(buffer, limit, buffer.length - limit);
+
+			if (n < 0)
+				return false;
+
+			limit += n;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Requires at least the specified amount of bytes to be buffered, otherwise EOFException is thrown.
+	 */
+	private void require(int required) throws IOException
+	{
+		if (!fill(required))
+			throw new EOFException();
+	}
+
+	/**
+	 * Buffers at least one element of <code>1 &lt;&lt; shift</code> bytes, and returns the number of such elements that are buffered.
+	 */
+	private int available(int shift) throws IOException
+	{
+		require(1 << shift);
+		return (limit - position) >> shift;
+	}
+
+	private void readFully(byte[] b, int off, int len) throws IOException
+	{
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = read(b, off, len);
+
+			if (n < 0)
+				throw new EOFException();
+		}
 	}
 
 	/**
@@ -78,10 +187,19 @@ public class StreamInput implements SerializationInput
 		if (size == -1)
 			return null;
 
+		if (size <= buffer.length)
+		{
+			// Decode in place
+			require(size);
+			String str = new String(buffer, position, size, charset);
+			position += size;
+			return str;
+		}
+
 		if (stringBuffer.length < size)
 			stringBuffer = new byte[size * 2];
 
-		in.readFully(stringBuffer, 0, size);
+		readFully(stringBuffer, 0, size);
 
 		return new String(stringBuffer, 0, size, charset);
 	}
@@ -95,65 +213,212 @@ public class StreamInput implements SerializationInput
 	 */
 	public int readShortUnsigned() throws IOException
 	{
-		int ch1 = read();
-		int ch2 = read();
-		if ((ch1 | ch2) < 0)
+		if (!fill(2))
+		{
+			position = limit;
 			return -1; // EOF
-		return (ch1 << 8) + (ch2 << 0);
+		}
+
+		return ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
 	}
 
 	@Override
 	public int read() throws IOException
 	{
-		return in.read();
+		return fill(1) ? (buffer[position++] & 0xFF) : -1;
 	}
 
 	@Override
 	public int read(byte[] b, int off, int len) throws IOException
 	{
-		return in.read(b, off, len);
+		checkBounds(b.length, off, len);
+
+		if (len == 0)
+			return 0;
+
+		if (position == limit)
+		{
+			if (len >= buffer.length)
+				return in.read(b, off, len); // Large arrays are read directly
+
+			if (!fill(1))
+				return -1;
+		}
+
+		len = Math.min(len, limit - position);
+		System.arraycopy(buffer, position, b, off, len);
+		position += len;
+
+		return len;
 	}
 
 	@Override
 	public byte readByte() throws IOException
 	{
-		return in.readByte();
+		require(1);
+		return buffer[position++];
 	}
 
 	@Override
 	public boolean readBoolean() throws IOException
 	{
-		return in.readBoolean();
+		require(1);
+		return buffer[position++] != 0;
 	}
 
 	@Override
 	public short readShort() throws IOException
 	{
-		return in.readShort();
+		require(2);
+		return (short) (((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF));
 	}
 
 	@Override
 	public int readInt() throws IOException
 	{
-		return in.readInt();
+		require(4);
+		return ((buffer[position++] & 0xFF) << 24)
+			| ((buffer[position++] & 0xFF) << 16)
+			| ((buffer[position++] & 0xFF) << 8)
+			| (buffer[position++] & 0xFF);
 	}
 
 	@Override
 	public long readLong() throws IOException
 	{
-		return in.readLong();
+		require(8);
+		return (((long) buffer[position++]) << 56)
+			| (((long) buffer[position++] & 0xFF) << 48)
+			| (((long) buffer[position++] & 0xFF) << 40)
+			| (((long) buffer[position++] & 0xFF) << 32)
+			| (((long) buffer[position++] & 0xFF) << 24)
+			| ((buffer[position++] & 0xFF) << 16)
+			| ((buffer[position++] & 0xFF) << 8)
+			| ((buffer[position++] & 0xFF));
 	}
 
 	@Override
 	public float readFloat() throws IOException
 	{
-		return in.readFloat();
+		return Float.intBitsToFloat(readInt());
 	}
 
 	@Override
 	public double readDouble() throws IOException
 	{
-		return in.readDouble();
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public void readBooleans(boolean[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(0));
+			for (int i = off, end = off + n; i < end; i++)
+			{
+				a[i] = buffer[position++] != 0;
+			}
+		}
+	}
+
+	@Override
+	public void readShorts(short[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(1));
+			UnsafeMemory.getShorts(buffer, position, a, off, n);
+			position += n << 1;
+		}
+	}
+
+	@Override
+	public void readInts(int[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(2));
+			UnsafeMemory.getInts(buffer, position, a, off, n);
+			position += n << 2;
+		}
+	}
+
+	@Override
+	public void readLongs(long[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(3));
+			UnsafeMemory.getLongs(buffer, position, a, off, n);
+			position += n << 3;
+		}
+	}
+
+	@Override
+	public void readFloats(float[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(2));
+			UnsafeMemory.getFloats(buffer, position, a, off, n);
+			position += n << 2;
+		}
+	}
+
+	@Override
+	public void readDoubles(double[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, available(3));
+			UnsafeMemory.getDoubles(buffer, position, a, off, n);
+			position += n << 3;
+		}
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public int readVarInt() throws IOException
+	{
+		int result = 0;
+		int b;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			require(1);
+			b = buffer[position++];
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	@Override
+	public long readVarLong() throws IOException
+	{
+		long result = 0;
+		int b;
+		for (int shift = 0; shift < 70; shift += 7)
+		{
+			require(1);
+			b = buffer[position++];
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("Malformed varint");
 	}
 
 	@Override
@@ -1,27 +1,49 @@
 package net.twagame.serial.io;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 
+import net.twagame.serial.util.unsafe.UnsafeMemory;
+
 /**
  * This class implements a {@link SerializationOutput} in which the data is written to some {@link OutputStream}.
+ * <p>
+ * The data is collected in an internal buffer, which is written to the underlying stream in a single call when it is full, when
+ * {@link StreamOutput#flush()} is called, or when this output is closed. Thus writing many small values costs about the same as writing
+ * them to a {@link MemoryOutput}, while graphs of any size can be streamed with a constant amount of memory. Large byte arrays bypass the
+ * buffer. Call {@link StreamOutput#flush()} when the peer needs to see the data written so far, e.g. after each message sent over a socket.
+ * This class is not thread-safe.
  * 
  * @author hadadzhi
- * @see DataOutputStream
  */
 public class StreamOutput implements SerializationOutput
 {
 	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
+	/**
+	 * The default size of the internal buffer, in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The smallest allowed size of the internal buffer, in bytes. Any single value except strings and byte arrays must fit in the buffer.
+	 */
+	public static final int MIN_BUFFER_SIZE = 16;
+
 	private final Charset charset;
-	private final DataOutputStream out;
+	private final OutputStream out;
+	private final byte[] buffer;
 
 	/**
-	 * Creates a new {@link StreamInput} that uses the {@link StreamInput#DEFAULT_CHARSET}.
+	 * The number of buffered bytes
+	 */
+	private int position;
+
+	/**
+	 * Creates a new {@link StreamOutput} that uses the {@link StreamOutput#DEFAULT_CHARSET}.
 	 * 
-	 * @param istream
+	 * @param ostream
 	 */
 	public StreamOutput(OutputStream ostream)
 	{
@@ -29,11 +51,11 @@ public class StreamOutput implements SerializationOutput
 	}
 
 	/**
-	 * Creates a new {@link StreamInput} that uses the specified charset.
+	 * Creates a new {@link StreamOutput} that uses the specified charset.
 	 * 
-	 * @param istream
+	 * @param ostream
 	 * @param charsetName
-	 *            a {@#code String} containing the name of the charset to use.
+	 *            a {@code String} containing the name of the charset to use.
 	 */
 	public StreamOutput(OutputStream ostream, String charsetName)
 	{
@@ -41,16 +63,70 @@ public class StreamOutput implements SerializationOutput
 	}
 
 	/**
-	 * Creates a new {@link StreamInput} that uses the specified charset.
+	 * Creates a new {@link StreamOutput} that uses the specified charset.
 	 * 
-	 * @param istream
+	 * @param ostream
 	 * @param charset
 	 *            the {@link Charset} to use.
 	 */
 	public StreamOutput(OutputStream ostream, Charset charset)
 	{
-		out = new DataOutputStream(ostream);
+		this(ostream, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new {@link StreamOutput} that uses the specified charset and an internal buffer of the specified size.
+	 * 
+	 * @param ostream
+	 * @param charset
+	 *            the {@link Charset} to use.
+	 * @param bufferSize
+	 *            the size of the internal buffer, at least {@link StreamOutput#MIN_BUFFER_SIZE}.
+	 * @exception IllegalArgumentException
+	 *                if the buffer size is too small.
+	 */
+	public StreamOutput(OutputStream ostream, Charset charset, int bufferSize)
+	{
+		if (bufferSize < MIN_BUFFER_SIZE)
+		{
+			throw new IllegalArgumentException("The buffer size is too small: " + bufferSize);
+		}
+
+		out = ostream;
 		this.charset = charset;
+		buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Ensures that the buffer has room for the required amount of bytes, writing the buffered data to the underlying stream if needed.
+	 * 
+	 * @param required
+	 *            at most the buffer size.
+	 * @throws IOException
+	 */
+	private void require(int required) throws IOException
+	{
+		if ((buffer.length - position) < required)
+			flushBuffer();
+	}
+
+	/**
+	 * Makes room for at least one element of <code>1 &lt;&lt; shift</code> bytes, and returns the number of such elements that fit in the
+	 * buffer.
+	 */
+	private int room(int shift) throws IOException
+	{
+		require(1 << shift);
+		return (buffer.length - position) >> shift;
+	}
+
+	private void flushBuffer() throws IOException
+	{
+		if (position > 0)
+		{
+			out.write(buffer, 0, position);
+			position = 0;
+		}
 	}
 
 	/**
@@ -76,72 +152,221 @@ public class StreamOutput implements SerializationOutput
 		if (bytes.length > 65535)
 			throw new IOException("The encoded string is too long: " + bytes.length + " bytes.");
 
-		// The magic starts here
 		// Write length as unsigned short
-		out.write((byte) ((bytes.length >>> 8) & 0xFF));
-		out.write((byte) ((bytes.length >>> 0) & 0xFF));
+		require(2);
+		buffer[position++] = (byte) (bytes.length >>> 8);
+		buffer[position++] = (byte) (bytes.length);
 		// Write string as bytes
-		out.write(bytes);
+		write(bytes, 0, bytes.length);
 	}
 
 	@Override
 	public void write(int b) throws IOException
 	{
-		out.write(b);
+		require(1);
+		buffer[position++] = (byte) b;
 	}
 
 	@Override
 	public void write(byte[] b, int off, int len) throws IOException
 	{
-		out.write(b, off, len);
+		checkBounds(b.length, off, len);
+
+		if (len >= buffer.length)
+		{
+			// Large arrays are written directly
+			flushBuffer();
+			out.write(b, off, len);
+			return;
+		}
+
+		require(len);
+		System.arraycopy(b, off, buffer, position, len);
+		position += len;
 	}
 
 	@Override
 	public void writeByte(byte v) throws IOException
 	{
-		out.writeByte(v);
+		require(1);
+		buffer[position++] = v;
 	}
 
 	@Override
 	public void writeBoolean(boolean v) throws IOException
 	{
-		out.writeBoolean(v);
+		require(1);
+		buffer[position++] = v ? (byte) 1 : (byte) 0;
 	}
 
 	@Override
 	public void writeShort(short v) throws IOException
 	{
-		out.writeShort(v);
+		require(2);
+		buffer[position++] = (byte) (v >>> 8);
+		buffer[position++] = (byte) (v);
 	}
 
 	@Override
 	public void writeInt(int v) throws IOException
 	{
-		out.writeInt(v);
+		require(4);
+		buffer[position++] = (byte) (v >>> 24);
+		buffer[position++] = (byte) (v >>> 16);
+		buffer[position++] = (byte) (v >>> 8);
+		buffer[position++] = (byte) (v);
 	}
 
 	@Override
 	public void writeLong(long v) throws IOException
 	{
-		out.writeLong(v);
+		require(8);
+		buffer[position++] = (byte) (v >>> 56);
+		buffer[position++] = (byte) (v >>> 48);
+		buffer[position++] = (byte) (v >>> 40);
+		buffer[position++] = (byte) (v >>> 32);
+		buffer[position++] = (byte) (v >>> 24);
+		buffer[position++] = (byte) (v >>> 16);
+		buffer[position++] = (byte) (v >>> 8);
+		buffer[position++] = (byte) (v);
 	}
 
 	@Override
 	public void writeFloat(float v) throws IOException
 	{
-		out.writeFloat(v);
+		writeInt(Float.floatToIntBits(v));
 	}
 
 	@Override
 	public void writeDouble(double v) throws IOException
 	{
-		out.writeDouble(v);
+		writeLong(Double.doubleToLongBits(v));
 	}
 
 	@Override
-	public void close() throws IOException
+	public void writeBooleans(boolean[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int i = off, end = off + len; i < end; i++)
+		{
+			require(1);
+			buffer[position++] = a[i] ? (byte) 1 : (byte) 0;
+		}
+	}
+
+	@Override
+	public void writeShorts(short[] a, int off, int len) throws IOException
 	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, room(1));
+			UnsafeMemory.putShorts(buffer, position, a, off, n);
+			position += n << 1;
+		}
+	}
+
+	@Override
+	public void writeInts(int[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, room(2));
+			UnsafeMemory.putInts(buffer, position, a, off, n);
+			position += n << 2;
+		}
+	}
+
+	@Override
+	public void writeLongs(long[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, room(3));
+			UnsafeMemory.putLongs(buffer, position, a, off, n);
+			position += n << 3;
+		}
+	}
+
+	@Override
+	public void writeFloats(float[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, room(2));
+			UnsafeMemory.putFloats(buffer, position, a, off, n);
+			position += n << 2;
+		}
+	}
+
+	@Override
+	public void writeDoubles(double[] a, int off, int len) throws IOException
+	{
+		checkBounds(a.length, off, len);
+		for (int n; len > 0; off += n, len -= n)
+		{
+			n = Math.min(len, room(3));
+			UnsafeMemory.putDoubles(buffer, position, a, off, n);
+			position += n << 3;
+		}
+	}
+
+	private static void checkBounds(int length, int off, int len)
+	{
+		if (((off | len) < 0) || (len > (length - off)))
+			throw new IndexOutOfBoundsException();
+	}
+
+	@Override
+	public void writeVarInt(int v) throws IOException
+	{
+		require(5);
+		while ((v & ~0x7F) != 0)
+		{
+			buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+	}
+
+	@Override
+	public void writeVarLong(long v) throws IOException
+	{
+		require(10);
+		while ((v & ~0x7FL) != 0)
+		{
+			buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buffer[position++] = (byte) v;
+	}
+
+	/**
+	 * Writes the buffered data to the underlying stream and flushes it.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		flushBuffer();
 		out.flush();
-		out.close();
+	}
+
+	/**
+	 * Flushes this output and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			out.close();
+		}
 	}
 }
@@ -9,8 +9,6 @@ import net.twagame.serial.annotation.TWASerializable;
 import net.twagame.serial.exception.TWASerializationException;
 import net.twagame.serial.util.TWASerializationConstants.ClassSubType;
 import net.twagame.serial.util.TWASerializationConstants.ClassType;
-import net.twagame.serial.util.unsafe.UnsafeStealer;
-import sun.misc.Unsafe;
 
 /**
  * Holds information about a {@link Class}, obtained by reflection and used by {@link TWASerializer} and {@link TWADeserializer}. This class
@@ -21,24 +19,32 @@ import sun.misc.Unsafe;
  */
 public class ClassDescriptor
 {
-	private static final Unsafe unsafe = UnsafeStealer.getUnsafe();
-
 	private final String name;
 	private final Class<?> reflectedClass;
 	private final Class<?> componentType;
 	private final ClassType type;
 	private final ClassSubType subType;
 	private final FieldDescriptor[] fieldDescriptors;
-	private final boolean forceSafeInstantiation;
+	private final FieldCodec[] fieldCodecs;
+	private final boolean immutable;
+	private final Instantiator instantiator;
 
-	ClassDescriptor(Class<?> reflectedClass, boolean forceSafeInstantiation, FieldDescriptor[] fieldDescriptors)
+	/**
+	 * @param reflectedClass
+	 * @param fieldDescriptors
+	 *            the serializable fields, or {@code null} if the class is not TWASerializable.
+	 * @param instantiator
+	 *            the instantiator of a TWASerializable class, or {@code null}.
+	 */
+	ClassDescriptor(Class<?> reflectedClass, FieldDescriptor[] fieldDescriptors, Instantiator instantiator)
 	{
 		this.reflectedClass = reflectedClass;
 		this.componentType = reflectedClass.getComponentType();
 		this.name = reflectedClass.getName();
 		this.fieldDescriptors = fieldDescriptors;
+		this.fieldCodecs = (fieldDescriptors != null) ? FieldCodec.forFields(fieldDescriptors) : null;
 		this.subType = calculateSubType(reflectedClass);
-		this.forceSafeInstantiation = forceSafeInstantiation;
+		this.instantiator = instantiator;
 
 		if (reflectedClass.isPrimitive())
 		{
@@ -78,6 +84,8 @@ public class ClassDescriptor
 		{
 			throw new AssertionError("This should's have happened");
 		}
+
+		this.immutable = (type == ClassType.TWASERIALIZABLE) && reflectedClass.getAnnotation(TWASerializable.class).immutable();
 	}
 
 	private ClassSubType calculateSubType(Class<?> c)
@@ -117,20 +125,30 @@ public class ClassDescriptor
 		}
 	}
 
+	/**
+	 * Returns a new instance of the described TWASerializable class, created by the {@link Instantiator} selected when this descriptor was
+	 * created (see {@link Instantiators}), or registered with {@link ClassDescriptorsCache#registerInstantiator(Class, Instantiator)}.
+	 * 
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the class could not be instantiated, or is not TWASerializable.
+	 */
 	public Object instantiate()
 	{
+		if (instantiator == null)
+		{
+			throw new TWASerializationException("Could not instantiate class " + reflectedClass.getName() + ": it is not TWASerializable");
+		}
+
 		try
 		{
-			if (forceSafeInstantiation)
-			{
-				return reflectedClass.newInstance();
-			}
-			else
-			{
-				return unsafe.allocateInstance(reflectedClass);
-			}
+			return instantiator.instantiate();
+		}
+		catch (TWASerializationException e)
+		{
+			throw e;
 		}
-		catch (Exception e)
+		catch (RuntimeException e)
 		{
 			throw new TWASerializationException("Could not instantiate class " + this.reflectedClass.getName(), e);
 		}
@@ -146,6 +164,16 @@ public class ClassDescriptor
 		return fieldDescriptors;
 	}
 
+	/**
+	 * Returns the codecs of the serializable fields, in the same order as {@link ClassDescriptor#getFieldDescriptors()}.
+	 * 
+	 * @return
+	 */
+	public FieldCodec[] getFieldCodecs()
+	{
+		return fieldCodecs;
+	}
+
 	public ClassType getType()
 	{
 		return type;
@@ -165,4 +193,14 @@ public class ClassDescriptor
 	{
 		return reflectedClass;
 	}
+
+	/**
+	 * Returns {@code true} if the described class is a {@link TWASerializable} class declared {@link TWASerializable#immutable()}.
+	 * 
+	 * @return
+	 */
+	public boolean isImmutable()
+	{
+		return immutable;
+	}
 }
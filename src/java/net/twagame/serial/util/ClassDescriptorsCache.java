@@ -1,39 +1,62 @@
 package net.twagame.serial.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.twagame.serial.TWADeserializer;
 import net.twagame.serial.TWASerializer;
+import net.twagame.serial.annotation.AnnotationProcessor;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.exception.TWASerializationException;
 
 /**
  * This class provides access to {@link ClassDescriptor}s, creating and caching them as needed. Used by {@link TWASerializer} and
- * {@link TWADeserializer}. The cache is thread-local. Threads should use {@link ClassDescriptorsCache#getInstance()} to access the cache.
+ * {@link TWADeserializer}. The cache is shared by all threads, use {@link ClassDescriptorsCache#getInstance()} to access it.
+ * <p>
+ * Lookups of cached descriptors do not lock. Each descriptor is created at most once: cache misses are serialized, so that threads racing
+ * for a new class wait for the first one to build the descriptor instead of repeating the reflection work.
+ * <p>
+ * Creating a descriptor involves reflection, so the first message containing a class is slower to process. To avoid that latency, e.g.
+ * right after startup, descriptors can be created ahead of time with {@link ClassDescriptorsCache#prewarm(Class...)} or
+ * {@link ClassDescriptorsCache#prewarmIndexed(ClassLoader, String...)}.
  * 
  * @author hadadzhi
  */
 public class ClassDescriptorsCache
 {
-	private static final ThreadLocal<ClassDescriptorsCache> LOCAL_INSTANCE = new ThreadLocal<ClassDescriptorsCache>() {
-		@Override
-		protected ClassDescriptorsCache initialValue()
-		{
-			return new ClassDescriptorsCache();
-		}
-	};
+	/**
+	 * The resource the {@link AnnotationProcessor} generates to list all {@link TWASerializable} classes, one class name per line.
+	 */
+	public static final String GENERATED_INDEX_RESOURCE = "META-INF/twa/serializable-classes";
+
+	private static final ClassDescriptorsCache INSTANCE = new ClassDescriptorsCache();
 
 	/**
-	 * Returns an instance of this class for the current thread.
+	 * Returns the process-wide instance of this class.
 	 * 
 	 * @return
 	 */
 	public static ClassDescriptorsCache getInstance()
 	{
-		return LOCAL_INSTANCE.get();
+		return INSTANCE;
 	}
 
-	private final Map<String, ClassDescriptor> descForName = new HashMap<>();
-	private final Map<Class<?>, ClassDescriptor> descForClass = new HashMap<>();
+	private final ConcurrentMap<String, ClassDescriptor> descForName = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, ClassDescriptor> descForClass = new ConcurrentHashMap<>();
+
+	/**
+	 * The instantiators registered for classes whose descriptors have not been created yet
+	 */
+	private final ConcurrentMap<Class<?>, Instantiator> registeredInstantiators = new ConcurrentHashMap<>();
+
+	/**
+	 * Guards the creation of descriptors
+	 */
+	private final Object creationLock = new Object();
 
 	public ClassDescriptor forName(String name) throws ClassNotFoundException
 	{
@@ -43,48 +66,180 @@ public class ClassDescriptorsCache
 		{
 			return desc;
 		}
-		else if ((desc = descForClass.get(Class.forName(name))) != null)
+
+		desc = forClass(Class.forName(name));
+		descForName.putIfAbsent(name, desc);
+
+		return desc;
+	}
+
+	public ClassDescriptor forClass(Class<?> clazz)
+	{
+		ClassDescriptor desc = descForClass.get(clazz);
+
+		if (desc != null)
 		{
-			descForName.put(name, desc);
 			return desc;
 		}
-		else
+
+		synchronized (creationLock)
 		{
-			desc = ClassDescriptorsFactory.ofClassNamed(name);
+			desc = descForClass.get(clazz);
+
+			if (desc == null)
+			{
+				desc = ClassDescriptorsFactory.ofClass(clazz, registeredInstantiators.get(clazz));
 
-			descForName.put(name, desc);
-			descForClass.put(desc.getReflectedClass(), desc);
+				descForClass.put(clazz, desc);
+				registeredInstantiators.remove(clazz);
+				descForName.putIfAbsent(desc.getName(), desc);
+			}
 
 			return desc;
 		}
 	}
 
-	public ClassDescriptor forClass(Class<?> clazz)
+	/**
+	 * Registers a factory for the instances of the specified class, used instead of the instantiator its descriptor would select. This is
+	 * useful for classes that need initialization but can not have a no-argument constructor, or to recycle instances. The instantiator of
+	 * a descriptor is fixed when the descriptor is created, so the factory must be registered before the class is first serialized,
+	 * deserialized or prewarmed.
+	 * 
+	 * @param clazz
+	 * @param instantiator
+	 *            returns new instances of exactly the specified class.
+	 * @throws IllegalArgumentException
+	 *             if the class is not TWASerializable.
+	 * @throws IllegalStateException
+	 *             if the descriptor of the class has already been created.
+	 */
+	public void registerInstantiator(Class<?> clazz, Instantiator instantiator)
 	{
-		ClassDescriptor desc = descForClass.get(clazz);
+		if (!clazz.isAnnotationPresent(TWASerializable.class))
+		{
+			throw new IllegalArgumentException(clazz.getName() + " is not TWASerializable");
+		}
 
-		if (desc != null)
+		synchronized (creationLock)
 		{
-			return desc;
+			if (descForClass.containsKey(clazz))
+			{
+				throw new IllegalStateException("The descriptor of " + clazz.getName() + " has already been created");
+			}
+
+			registeredInstantiators.put(clazz, instantiator);
+		}
+	}
+
+	/**
+	 * Creates the descriptors of the specified classes ahead of time, together with the descriptors of the concrete types of their fields.
+	 * Field types that are interfaces or abstract classes are skipped, since the descriptors used for their values depend on the runtime
+	 * classes of the values.
+	 * 
+	 * @param classes
+	 */
+	public void prewarm(Class<?>... classes)
+	{
+		Set<Class<?>> visited = new HashSet<>();
+
+		for (Class<?> clazz : classes)
+		{
+			prewarmClass(clazz, visited);
 		}
-		else if ((desc = descForName.get(clazz.getName())) != null)
+	}
+
+	/**
+	 * Prewarms (see {@link ClassDescriptorsCache#prewarm(Class...)}) the classes listed in the
+	 * {@link ClassDescriptorsCache#GENERATED_INDEX_RESOURCE} resources visible to the specified class loader, i.e. the
+	 * {@link TWASerializable} classes compiled with the {@link AnnotationProcessor}. Only the classes in the specified packages and their
+	 * subpackages are prewarmed; if no packages are specified, all listed classes are.
+	 * 
+	 * @param loader
+	 * @param packageNames
+	 * @return the number of listed classes that were prewarmed.
+	 * @throws TWASerializationException
+	 *             if a resource could not be read, or a listed class could not be loaded.
+	 */
+	public int prewarmIndexed(ClassLoader loader, String... packageNames)
+	{
+		int prewarmed = 0;
+		Set<Class<?>> visited = new HashSet<>();
+
+		try
 		{
-			descForClass.put(desc.getReflectedClass(), desc);
-			return desc;
+			for (String className : GeneratedResources.readLines(loader, GENERATED_INDEX_RESOURCE))
+			{
+				if (isInPackages(className, packageNames))
+				{
+					prewarmClass(Class.forName(className, false, loader), visited);
+					prewarmed++;
+				}
+			}
 		}
-		else
+		catch (IOException | ClassNotFoundException | RuntimeException e)
 		{
-			desc = ClassDescriptorsFactory.ofClass(clazz);
+			throw new TWASerializationException("Could not prewarm the indexed classes", e);
+		}
 
-			descForClass.put(clazz, desc);
-			descForName.put(desc.getName(), desc);
+		return prewarmed;
+	}
 
-			return desc;
+	private static boolean isInPackages(String className, String[] packageNames)
+	{
+		if (packageNames.length == 0)
+		{
+			return true;
+		}
+
+		for (String packageName : packageNames)
+		{
+			if (className.startsWith(packageName) && (className.length() > packageName.length())
+				&& (className.charAt(packageName.length()) == '.'))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Prewarms the specified class and the types of its fields. The walk tracks the classes it has visited rather than the cached
+	 * descriptors, so the field types of a class whose descriptor already exists are prewarmed as well.
+	 */
+	private void prewarmClass(Class<?> clazz, Set<Class<?>> visited)
+	{
+		if (!visited.add(clazz))
+		{
+			return;
+		}
+
+		FieldDescriptor[] fieldDescriptors = forClass(clazz).getFieldDescriptors();
+
+		if (fieldDescriptors == null)
+		{
+			return;
+		}
+
+		for (FieldDescriptor fdesc : fieldDescriptors)
+		{
+			Class<?> type = fdesc.getAccessor().getField().getType();
+
+			// Arrays are prewarmed down to their innermost component type
+			for (; type.isArray(); type = type.getComponentType())
+			{
+				forClass(type);
+			}
+
+			if (!type.isPrimitive() && !type.isInterface() && !Modifier.isAbstract(type.getModifiers()))
+			{
+				prewarmClass(type, visited);
+			}
 		}
 	}
 
 	/**
-	 * No need to instantiate this class, threads should use {@link ClassDescriptorsCache#getInstance()} to access the cache.
+	 * No need to instantiate this class, use {@link ClassDescriptorsCache#getInstance()} to access the cache.
 	 */
 	private ClassDescriptorsCache()
 	{
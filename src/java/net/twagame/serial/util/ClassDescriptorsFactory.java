@@ -3,47 +3,52 @@ package net.twagame.serial.util;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import net.twagame.serial.annotation.TWASerializable;
 import net.twagame.serial.exception.NotTWASerializableException;
 
 /**
  * Creates {@link ClassDescriptor}s. This class is used by {@link ClassDescriptorsCache} automatically to create and cache
- * {@link ClassDescriptor}s.
+ * {@link ClassDescriptor}s. This class has no state, so descriptors of different classes can be created concurrently.
  * 
  * @author hadadzhi
  */
 public class ClassDescriptorsFactory
 {
-	private static boolean forceSafeInstantiation;
-
-	static ClassDescriptor ofClassNamed(String name) throws ClassNotFoundException
-	{
-		return ofClass(Class.forName(name));
-	}
-
-	static ClassDescriptor ofClass(Class<?> clazz)
+	/**
+	 * Creates the descriptor of the specified class.
+	 * 
+	 * @param clazz
+	 * @param registeredInstantiator
+	 *            the instantiator registered for the class, or {@code null} to select one, see {@link Instantiators}.
+	 * @return
+	 */
+	static ClassDescriptor ofClass(Class<?> clazz, Instantiator registeredInstantiator)
 	{
 		List<FieldDescriptor> fieldDescList = null;
 
 		//If the class is TWASerializable, collect field descriptors
 		if (clazz.isAnnotationPresent(TWASerializable.class))
 		{
-			forceSafeInstantiation = clazz.getAnnotation(TWASerializable.class).forceSafeInstantiation();
+			// Classes with Collections or Maps are instantiated safely as well, see Instantiators
+			boolean forceSafeInstantiation = clazz.getAnnotation(TWASerializable.class).forceSafeInstantiation();
 
 			fieldDescList = getSerializableFieldDescriptorsList(clazz);
 
 			Collections.sort(fieldDescList);
 
-			return new ClassDescriptor(clazz, forceSafeInstantiation, fieldDescList.toArray(new FieldDescriptor[0]));
+			FieldDescriptor[] fieldDescriptors = fieldDescList.toArray(new FieldDescriptor[0]);
+			Instantiator instantiator = (registeredInstantiator != null)
+				? registeredInstantiator
+				: Instantiators.forClass(clazz, forceSafeInstantiation, fieldDescriptors);
+
+			return new ClassDescriptor(clazz, fieldDescriptors, instantiator);
 		}
 		else
 		{
-			return new ClassDescriptor(clazz, false, null);
+			return new ClassDescriptor(clazz, null, null);
 		}
 	}
 
@@ -62,12 +67,6 @@ public class ClassDescriptorsFactory
 			{
 				fdesc = new FieldDescriptor(f);
 				list.add(fdesc);
-
-				//If this class has Collections or Maps, force safe instantiation, regardless of the annotation attribute.
-				if (Collection.class.isAssignableFrom(f.getType()) || Map.class.isAssignableFrom(f.getType()))
-				{
-					forceSafeInstantiation = true;
-				}
 			}
 		}
 
@@ -0,0 +1,180 @@
+package net.twagame.serial.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializer;
+import net.twagame.serial.annotation.AnnotationProcessor;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.exception.NotTWASerializableException;
+import net.twagame.serial.exception.TWASerializationException;
+
+/**
+ * A mapping of {@link TWASerializable} classes to class ids, agreed upon up front by the {@link TWASerializer} and the
+ * {@link TWADeserializer}. Objects of registered classes are written with their class id only, and the class name is never written. Class
+ * ids of unregistered classes are assigned dynamically, starting from {@link ClassRegistry#getIdLimit()}.
+ * <p>
+ * Both peers must use registries with identical mappings. Ids should be small, as they are written for every new object. A registry should
+ * be filled before it is first used by a serializer or a deserializer; after that it can be shared by any number of threads.
+ * 
+ * @author hadadzhi
+ */
+public class ClassRegistry
+{
+	/**
+	 * The resource the {@link AnnotationProcessor} generates from {@link TWASerializable#id()} attributes. Each line is a class id
+	 * followed by a class name.
+	 */
+	public static final String GENERATED_REGISTRY_RESOURCE = "META-INF/twa/class-registry";
+
+	private final Map<Class<?>, Integer> idForClass = new IdentityHashMap<>();
+	private Class<?>[] classForId = new Class<?>[16];
+	private int idLimit = 0;
+
+	private boolean registrationRequired;
+
+	/**
+	 * Creates a registry containing all classes listed in the {@link ClassRegistry#GENERATED_REGISTRY_RESOURCE} resources visible to the
+	 * specified class loader, i.e. all classes with an explicit {@link TWASerializable#id()} compiled with the {@link AnnotationProcessor}.
+	 * 
+	 * @param loader
+	 * @return
+	 * @throws TWASerializationException
+	 *             if a resource could not be read, or a listed class could not be loaded.
+	 */
+	public static ClassRegistry load(ClassLoader loader)
+	{
+		ClassRegistry registry = new ClassRegistry();
+
+		try
+		{
+			for (String line : GeneratedResources.readLines(loader, GENERATED_REGISTRY_RESOURCE))
+			{
+				String[] idAndName = line.split("\\s+");
+				registry.register(Class.forName(idAndName[1], false, loader), Integer.parseInt(idAndName[0]));
+			}
+		}
+		catch (IOException | ClassNotFoundException | RuntimeException e)
+		{
+			throw new TWASerializationException("Could not load the generated class registry", e);
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Registers a class with the id specified by its {@link TWASerializable#id()} attribute.
+	 * 
+	 * @param clazz
+	 * @throws IllegalArgumentException
+	 *             if the class does not declare an id, or the id or the class is already registered.
+	 */
+	public void register(Class<?> clazz)
+	{
+		// Ids are not inherited, only a directly present annotation counts
+		TWASerializable annotation = clazz.getDeclaredAnnotation(TWASerializable.class);
+
+		if ((annotation == null) || (annotation.id() < 0))
+		{
+			throw new IllegalArgumentException("The class " + clazz.getName() + " does not declare a TWASerializable id");
+		}
+
+		register(clazz, annotation.id());
+	}
+
+	/**
+	 * Registers a class with the specified id.
+	 * 
+	 * @param clazz
+	 *            a {@link TWASerializable} class
+	 * @param id
+	 *            a non-negative class id
+	 * @throws IllegalArgumentException
+	 *             if the id is negative, or the id or the class is already registered.
+	 * @throws NotTWASerializableException
+	 *             if the class is not {@link TWASerializable}.
+	 */
+	public void register(Class<?> clazz, int id)
+	{
+		if (id < 0)
+		{
+			throw new IllegalArgumentException("Negative class id: " + id);
+		}
+
+		if (!clazz.isAnnotationPresent(TWASerializable.class))
+		{
+			throw new NotTWASerializableException("The class " + clazz.getName() + " is not TWASerializable");
+		}
+
+		if (idForClass.containsKey(clazz))
+		{
+			throw new IllegalArgumentException("The class " + clazz.getName() + " is already registered with id " + idForClass.get(clazz));
+		}
+
+		if (id >= classForId.length)
+		{
+			classForId = Arrays.copyOf(classForId, Math.max(id + 1, classForId.length * 2));
+		}
+
+		if (classForId[id] != null)
+		{
+			throw new IllegalArgumentException("The class id " + id + " is already used by " + classForId[id].getName());
+		}
+
+		classForId[id] = clazz;
+		idForClass.put(clazz, id);
+		idLimit = Math.max(idLimit, id + 1);
+	}
+
+	/**
+	 * Returns the id of the specified class, or {@code -1} if the class is not registered.
+	 * 
+	 * @param clazz
+	 * @return
+	 */
+	public int getId(Class<?> clazz)
+	{
+		Integer id = idForClass.get(clazz);
+		return (id != null) ? id.intValue() : -1;
+	}
+
+	/**
+	 * Returns the class registered with the specified id, or {@code null} if there is no such class.
+	 * 
+	 * @param id
+	 * @return
+	 */
+	public Class<?> getClass(int id)
+	{
+		return ((id >= 0) && (id < idLimit)) ? classForId[id] : null;
+	}
+
+	/**
+	 * Returns the smallest class id greater than all registered ids. Dynamically assigned class ids start from this value.
+	 * 
+	 * @return
+	 */
+	public int getIdLimit()
+	{
+		return idLimit;
+	}
+
+	/**
+	 * If {@code true}, the serializer refuses to write objects of unregistered classes, so that class names are never written. The default
+	 * is {@code false}.
+	 * 
+	 * @param registrationRequired
+	 */
+	public void setRegistrationRequired(boolean registrationRequired)
+	{
+		this.registrationRequired = registrationRequired;
+	}
+
+	public boolean isRegistrationRequired()
+	{
+		return registrationRequired;
+	}
+}
@@ -0,0 +1,54 @@
+package net.twagame.serial.util;
+
+import java.lang.reflect.Field;
+
+import net.twagame.serial.util.unsafe.UnsafeField;
+
+/**
+ * Gets and sets the value of a {@link Field}, bypassing access checks. The typed methods must only be used with fields of that exact type.
+ * Implementations are {@link UnsafeField}, based on {@link sun.misc.Unsafe}, and {@link MethodHandleField}, based on method handles, for
+ * JVMs that restrict access to {@link sun.misc.Unsafe}. Instances are created by {@link FieldAccessors#forField(Field)}.
+ * 
+ * @author hadadzhi
+ */
+public interface FieldAccessor
+{
+	/**
+	 * Returns the accessed {@link Field}.
+	 * 
+	 * @return
+	 */
+	public Field getField();
+
+	public Object get(Object o);
+
+	public void set(Object o, Object value);
+
+	public boolean getBoolean(Object o);
+
+	public void setBoolean(Object o, boolean value);
+
+	public byte getByte(Object o);
+
+	public void setByte(Object o, byte value);
+
+	public short getShort(Object o);
+
+	public void setShort(Object o, short value);
+
+	public int getInt(Object o);
+
+	public void setInt(Object o, int value);
+
+	public long getLong(Object o);
+
+	public void setLong(Object o, long value);
+
+	public float getFloat(Object o);
+
+	public void setFloat(Object o, float value);
+
+	public double getDouble(Object o);
+
+	public void setDouble(Object o, double value);
+}
@@ -0,0 +1,98 @@
+package net.twagame.serial.util;
+
+import java.lang.reflect.Field;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.util.unsafe.UnsafeField;
+import net.twagame.serial.util.unsafe.UnsafeStealer;
+
+/**
+ * Creates the {@link FieldAccessor}s of the {@link FieldDescriptor}s. The implementation is selected once, when this class is initialized:
+ * {@link UnsafeField} if {@link sun.misc.Unsafe} can be obtained, the slower {@link MethodHandleField} otherwise. The selection can be
+ * forced by setting the {@link FieldAccessors#ACCESS_PROPERTY} system property to <code>unsafe</code> or <code>methodHandles</code> before
+ * the first class descriptor is created. Any other value of the property makes every method of this class throw a
+ * {@link TWASerializationException}.
+ * 
+ * @author hadadzhi
+ */
+public final class FieldAccessors
+{
+	/**
+	 * The name of the system property that forces the field access implementation.
+	 */
+	public static final String ACCESS_PROPERTY = "net.twagame.serial.fieldAccess";
+
+	private static final String ACCESS = System.getProperty(ACCESS_PROPERTY);
+
+	/**
+	 * Whether {@link FieldAccessors#ACCESS} is a known value. An unknown value is reported when the accessors are used, since an exception
+	 * thrown while this class is initialized would make it unusable with a less clear error.
+	 */
+	private static final boolean VALID_ACCESS = (ACCESS == null) || ACCESS.equals("methodHandles") || ACCESS.equals("unsafe");
+
+	private static final boolean UNSAFE = selectUnsafe();
+
+	private static boolean selectUnsafe()
+	{
+		if ("methodHandles".equals(ACCESS))
+		{
+			return false;
+		}
+		else if ("unsafe".equals(ACCESS))
+		{
+			return true;
+		}
+
+		try
+		{
+			return UnsafeStealer.getUnsafe() != null;
+		}
+		catch (RuntimeException | LinkageError e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a new accessor for the specified field, using the selected implementation.
+	 * 
+	 * @param field
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the {@link FieldAccessors#ACCESS_PROPERTY} system property has an unknown value.
+	 */
+	public static FieldAccessor forField(Field field)
+	{
+		checkAccess();
+		return UNSAFE ? new UnsafeField(field) : new MethodHandleField(field);
+	}
+
+	/**
+	 * Returns {@code true} if the accessors are based on {@link sun.misc.Unsafe}.
+	 * 
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the {@link FieldAccessors#ACCESS_PROPERTY} system property has an unknown value.
+	 */
+	public static boolean isUnsafe()
+	{
+		checkAccess();
+		return UNSAFE;
+	}
+
+	private static void checkAccess()
+	{
+		if (!VALID_ACCESS)
+		{
+			throw new TWASerializationException("Unknown value of the " + ACCESS_PROPERTY + " system property: " + ACCESS
+				+ ", expected unsafe or methodHandles");
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private FieldAccessors()
+	{
+	}
+}
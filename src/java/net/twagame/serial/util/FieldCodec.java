@@ -0,0 +1,405 @@
+package net.twagame.serial.util;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import net.twagame.serial.TWADeserializer;
+import net.twagame.serial.TWASerializer;
+import net.twagame.serial.io.SerializationInput;
+import net.twagame.serial.io.SerializationOutput;
+
+/**
+ * A field accessor specialized for the type of a single field, used by {@link TWASerializer} and {@link TWADeserializer} to read and write
+ * field values without looking up the field's type on every access. Codecs of primitive fields are {@link PrimitiveFieldCodec}s, which
+ * transfer the value directly between the object and the {@link SerializationOutput}/{@link SerializationInput}. Codecs of reference
+ * fields are {@link ReferenceFieldCodec}s, which only get and set the value, leaving the serialization of the referenced object to the
+ * serializer. Instances of this class are created by the {@link ClassDescriptor}, which prefers the codecs of a {@link GeneratedCodec} to
+ * the built-in ones based on {@link FieldAccessor}s.
+ * 
+ * @author hadadzhi
+ */
+public abstract class FieldCodec
+{
+	protected final FieldAccessor field;
+
+	private final FieldDescriptor fieldDescriptor;
+	private final boolean primitive;
+	private final Class<?> componentType;
+
+	/**
+	 * Creates a codec for the described field. Only subclassed by {@link PrimitiveFieldCodec} and {@link ReferenceFieldCodec}.
+	 * 
+	 * @param fieldDescriptor
+	 * @param primitive
+	 *            whether the field is of a primitive type.
+	 */
+	FieldCodec(FieldDescriptor fieldDescriptor, boolean primitive)
+	{
+		this.fieldDescriptor = fieldDescriptor;
+		this.field = fieldDescriptor.getAccessor();
+		this.primitive = primitive;
+		this.componentType = field.getField().getType().getComponentType();
+	}
+
+	/**
+	 * Creates codecs for the specified fields, in the same order. A field gets the codec generated for its declaring class, if there is
+	 * one, or a built-in codec otherwise.
+	 * 
+	 * @param fieldDescriptors
+	 * @return
+	 */
+	static FieldCodec[] forFields(FieldDescriptor[] fieldDescriptors)
+	{
+		FieldCodec[] codecs = new FieldCodec[fieldDescriptors.length];
+
+		for (int i = 0; i < fieldDescriptors.length; i++)
+		{
+			GeneratedCodec generated = GeneratedCodec.forClass(fieldDescriptors[i].getDeclaringClass());
+
+			codecs[i] = (generated != null) ? generated.forField(fieldDescriptors[i]) : null;
+
+			if (codecs[i] == null)
+			{
+				codecs[i] = forField(fieldDescriptors[i]);
+			}
+		}
+
+		return codecs;
+	}
+
+	private static FieldCodec forField(FieldDescriptor fdesc)
+	{
+		Class<?> type = fdesc.getAccessor().getField().getType();
+
+		if (type == byte.class)
+		{
+			return new ByteFieldCodec(fdesc);
+		}
+		else if (type == boolean.class)
+		{
+			return new BooleanFieldCodec(fdesc);
+		}
+		else if (type == short.class)
+		{
+			return new ShortFieldCodec(fdesc);
+		}
+		else if (type == int.class)
+		{
+			return fdesc.isVarint() ? new VarintIntFieldCodec(fdesc) : new IntFieldCodec(fdesc);
+		}
+		else if (type == long.class)
+		{
+			return fdesc.isVarint() ? new VarintLongFieldCodec(fdesc) : new LongFieldCodec(fdesc);
+		}
+		else if (type == float.class)
+		{
+			return new FloatFieldCodec(fdesc);
+		}
+		else if (type == double.class)
+		{
+			return new DoubleFieldCodec(fdesc);
+		}
+		else
+		{
+			return new ObjectFieldCodec(fdesc);
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the field is of primitive type, in which case this codec is a {@link PrimitiveFieldCodec}. Otherwise, it is a
+	 * {@link ReferenceFieldCodec}.
+	 */
+	public final boolean isPrimitive()
+	{
+		return primitive;
+	}
+
+	public final FieldDescriptor getFieldDescriptor()
+	{
+		return fieldDescriptor;
+	}
+
+	/**
+	 * Returns the component type of the field's declared type, or {@code null} if the field is not an array.
+	 */
+	public final Class<?> getComponentType()
+	{
+		return componentType;
+	}
+
+	/**
+	 * Returns {@code true} if the field has the same value in both objects. Floating point values are compared by their bits, arrays by
+	 * their contents and other objects with {@link Object#equals(Object)}.
+	 */
+	public abstract boolean valueEquals(Object a, Object b);
+
+	private static final class ByteFieldCodec extends PrimitiveFieldCodec
+	{
+		ByteFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeByte(field.getByte(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setByte(o, in.readByte());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getByte(a) == field.getByte(b);
+		}
+	}
+
+	private static final class BooleanFieldCodec extends PrimitiveFieldCodec
+	{
+		BooleanFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeBoolean(field.getBoolean(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setBoolean(o, in.readBoolean());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getBoolean(a) == field.getBoolean(b);
+		}
+	}
+
+	private static final class ShortFieldCodec extends PrimitiveFieldCodec
+	{
+		ShortFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeShort(field.getShort(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setShort(o, in.readShort());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getShort(a) == field.getShort(b);
+		}
+	}
+
+	private static final class IntFieldCodec extends PrimitiveFieldCodec
+	{
+		IntFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeInt(field.getInt(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setInt(o, in.readInt());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getInt(a) == field.getInt(b);
+		}
+	}
+
+	private static final class LongFieldCodec extends PrimitiveFieldCodec
+	{
+		LongFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeLong(field.getLong(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setLong(o, in.readLong());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getLong(a) == field.getLong(b);
+		}
+	}
+
+	/**
+	 * Writes the value as a zigzag encoded varint.
+	 */
+	private static final class VarintIntFieldCodec extends PrimitiveFieldCodec
+	{
+		VarintIntFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			int v = field.getInt(o);
+			out.writeVarInt((v << 1) ^ (v >> 31));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			int v = in.readVarInt();
+			field.setInt(o, (v >>> 1) ^ -(v & 1));
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getInt(a) == field.getInt(b);
+		}
+	}
+
+	/**
+	 * Writes the value as a zigzag encoded varint.
+	 */
+	private static final class VarintLongFieldCodec extends PrimitiveFieldCodec
+	{
+		VarintLongFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			long v = field.getLong(o);
+			out.writeVarLong((v << 1) ^ (v >> 63));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			long v = in.readVarLong();
+			field.setLong(o, (v >>> 1) ^ -(v & 1));
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return field.getLong(a) == field.getLong(b);
+		}
+	}
+
+	private static final class FloatFieldCodec extends PrimitiveFieldCodec
+	{
+		FloatFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeFloat(field.getFloat(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setFloat(o, in.readFloat());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return Float.floatToIntBits(field.getFloat(a)) == Float.floatToIntBits(field.getFloat(b));
+		}
+	}
+
+	private static final class DoubleFieldCodec extends PrimitiveFieldCodec
+	{
+		DoubleFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public void write(Object o, SerializationOutput out) throws IOException
+		{
+			out.writeDouble(field.getDouble(o));
+		}
+
+		@Override
+		public void read(Object o, SerializationInput in) throws IOException
+		{
+			field.setDouble(o, in.readDouble());
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return Double.doubleToLongBits(field.getDouble(a)) == Double.doubleToLongBits(field.getDouble(b));
+		}
+	}
+
+	private static final class ObjectFieldCodec extends ReferenceFieldCodec
+	{
+		ObjectFieldCodec(FieldDescriptor fdesc)
+		{
+			super(fdesc);
+		}
+
+		@Override
+		public Object get(Object o)
+		{
+			return field.get(o);
+		}
+
+		@Override
+		public void set(Object o, Object value)
+		{
+			field.set(o, value);
+		}
+
+		@Override
+		public boolean valueEquals(Object a, Object b)
+		{
+			return Objects.deepEquals(field.get(a), field.get(b));
+		}
+	}
+}
@@ -1,10 +1,15 @@
 package net.twagame.serial.util;
 
 import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
 
 import net.twagame.serial.TWADeserializer;
 import net.twagame.serial.TWASerializer;
-import net.twagame.serial.util.unsafe.UnsafeField;
+import net.twagame.serial.annotation.TWAElementType;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.annotation.TWAVarint;
+import net.twagame.serial.exception.NotTWASerializableException;
 
 /**
  * Holds information about a {@link Field} of a {@link Class}, obtained by reflection and used by {@link TWASerializer} and
@@ -16,18 +21,74 @@ import net.twagame.serial.util.unsafe.UnsafeField;
 public class FieldDescriptor implements Comparable<FieldDescriptor>
 {
 	private final String name;
-	private final UnsafeField reflectedUnsafeField;
+	private final FieldAccessor accessor;
+	private final boolean varint;
+	private final Class<?> elementType;
+	private final Class<?> keyType;
 
 	FieldDescriptor(Field reflectedField)
 	{
 		reflectedField.setAccessible(true);
-		this.reflectedUnsafeField = new UnsafeField(reflectedField);
+		this.accessor = FieldAccessors.forField(reflectedField);
 		this.name = reflectedField.getName();
+		this.varint = reflectedField.isAnnotationPresent(TWAVarint.class);
+
+		if (varint && (reflectedField.getType() != int.class) && (reflectedField.getType() != long.class))
+		{
+			throw new NotTWASerializableException("TWAVarint is only applicable to int and long fields: " + reflectedField);
+		}
+
+		TWAElementType declared = reflectedField.getAnnotation(TWAElementType.class);
+		this.elementType = (declared != null) ? checkElementType(reflectedField, declared.value()) : null;
+		this.keyType = (declared != null) ? checkElementType(reflectedField, declared.key()) : null;
+
+		if ((keyType != null) && !Map.class.isAssignableFrom(reflectedField.getType()))
+		{
+			throw new NotTWASerializableException("TWAElementType.key is only applicable to maps: " + reflectedField);
+		}
+	}
+
+	/**
+	 * Returns the declared element type, or {@code null} if it is <code>Object.class</code>, i.e. not declared.
+	 */
+	private static Class<?> checkElementType(Field reflectedField, Class<?> type)
+	{
+		if (type == Object.class)
+		{
+			return null;
+		}
+
+		Class<?> fieldType = reflectedField.getType();
+
+		if (!Collection.class.isAssignableFrom(fieldType) && !Map.class.isAssignableFrom(fieldType))
+		{
+			throw new NotTWASerializableException("TWAElementType is only applicable to collections and maps: " + reflectedField);
+		}
+
+		if (!type.isAnnotationPresent(TWASerializable.class)
+			&& (type != Boolean.class)
+			&& (type != Byte.class)
+			&& (type != Short.class)
+			&& (type != Integer.class)
+			&& (type != Long.class)
+			&& (type != Float.class)
+			&& (type != Double.class))
+		{
+			throw new NotTWASerializableException("The element type " + type.getName() + " is neither a wrapper nor TWASerializable: "
+				+ reflectedField);
+		}
+
+		return type;
 	}
 
-	public UnsafeField getUnsafeField()
+	/**
+	 * Returns the accessor of the field, see {@link FieldAccessors}.
+	 * 
+	 * @return
+	 */
+	public FieldAccessor getAccessor()
 	{
-		return reflectedUnsafeField;
+		return accessor;
 	}
 
 	public String getName()
@@ -35,6 +96,47 @@ public class FieldDescriptor implements Comparable<FieldDescriptor>
 		return name;
 	}
 
+	/**
+	 * Returns the class that declares the field.
+	 * 
+	 * @return
+	 */
+	public Class<?> getDeclaringClass()
+	{
+		return accessor.getField().getDeclaringClass();
+	}
+
+	/**
+	 * Returns {@code true} if the field is annotated with {@link TWAVarint}.
+	 * 
+	 * @return
+	 */
+	public boolean isVarint()
+	{
+		return varint;
+	}
+
+	/**
+	 * Returns the class of the elements of the collection, or of the values of the map, declared with {@link TWAElementType}, or
+	 * {@code null}.
+	 * 
+	 * @return
+	 */
+	public Class<?> getElementType()
+	{
+		return elementType;
+	}
+
+	/**
+	 * Returns the class of the keys of the map declared with {@link TWAElementType}, or {@code null}.
+	 * 
+	 * @return
+	 */
+	public Class<?> getKeyType()
+	{
+		return keyType;
+	}
+
 	/**
 	 * Compares field names lexicographically, if they are equal, compares declaring class names lexicographically. <b>Note: this class has
 	 * a natural ordering that is inconsistent with equals.</b>
@@ -55,11 +157,11 @@ public class FieldDescriptor implements Comparable<FieldDescriptor>
 		}
 		else
 		{
-			return this.getUnsafeField().
+			return this.getAccessor().
 						getField().
 						getDeclaringClass().
 						getName().
-						compareTo(other.getUnsafeField().
+						compareTo(other.getAccessor().
 										getField().
 										getDeclaringClass().
 										getName());
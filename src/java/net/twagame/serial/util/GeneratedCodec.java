@@ -0,0 +1,100 @@
+package net.twagame.serial.util;
+
+import net.twagame.serial.annotation.AnnotationProcessor;
+import net.twagame.serial.annotation.TWASerializable;
+import net.twagame.serial.exception.TWASerializationException;
+
+/**
+ * The superclass of the codecs generated by the {@link AnnotationProcessor} for {@link TWASerializable} classes. A generated codec lives
+ * in the package of its class and creates {@link FieldCodec}s that access the non-private, non-final fields declared by that class
+ * directly, without {@link sun.misc.Unsafe} or reflection. Such codecs are plain Java code the JIT compiler can inline.
+ * <p>
+ * The generated codec of a class <code>pkg.Outer$Inner</code> is named <code>pkg.Outer_InnerTWACodec</code>, see
+ * {@link GeneratedCodec#codecClassName(String)}. When a generated codec is present, the {@link ClassDescriptor}s use its field codecs, and
+ * the built-in ones for the fields it does not handle.
+ * 
+ * @author hadadzhi
+ */
+public abstract class GeneratedCodec
+{
+	/**
+	 * The suffix appended to the name of a class to get the name of its generated codec.
+	 */
+	public static final String SUFFIX = "TWACodec";
+
+	private static final ClassValue<GeneratedCodec> CODECS = new ClassValue<GeneratedCodec>() {
+		@Override
+		protected GeneratedCodec computeValue(Class<?> type)
+		{
+			return load(type);
+		}
+	};
+
+	/**
+	 * Returns the generated codec of the specified class, or {@code null} if there is none.
+	 * 
+	 * @param clazz
+	 * @return
+	 * @throws TWASerializationException
+	 *             if the generated codec could not be instantiated.
+	 */
+	public static GeneratedCodec forClass(Class<?> clazz)
+	{
+		return CODECS.get(clazz);
+	}
+
+	/**
+	 * Returns the binary name of the generated codec of the class with the specified binary name.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	public static String codecClassName(String className)
+	{
+		int packageEnd = className.lastIndexOf('.') + 1;
+
+		return className.substring(0, packageEnd) + className.substring(packageEnd).replace('$', '_') + SUFFIX;
+	}
+
+	private static GeneratedCodec load(Class<?> clazz)
+	{
+		if (!clazz.isAnnotationPresent(TWASerializable.class))
+		{
+			return null;
+		}
+
+		Class<?> codecClass;
+
+		try
+		{
+			codecClass = Class.forName(codecClassName(clazz.getName()), true, clazz.getClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			return null;
+		}
+
+		if (!GeneratedCodec.class.isAssignableFrom(codecClass))
+		{
+			return null;
+		}
+
+		try
+		{
+			return (GeneratedCodec) codecClass.getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e)
+		{
+			throw new TWASerializationException("Could not instantiate the generated codec of " + clazz.getName(), e);
+		}
+	}
+
+	/**
+	 * Returns a codec for the specified field, which is declared by the class this codec was generated for, or {@code null} if the field
+	 * is not handled by this codec.
+	 * 
+	 * @param fdesc
+	 * @return
+	 */
+	public abstract FieldCodec forField(FieldDescriptor fdesc);
+}
@@ -0,0 +1,64 @@
+package net.twagame.serial.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import net.twagame.serial.annotation.AnnotationProcessor;
+
+/**
+ * Reads the resources generated by the {@link AnnotationProcessor}.
+ * 
+ * @author hadadzhi
+ */
+final class GeneratedResources
+{
+	private static final Charset RESOURCE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Returns the lines of all resources with the specified name visible to the class loader, trimmed, without empty lines and
+	 * <code>#</code> comments.
+	 * 
+	 * @param loader
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	static List<String> readLines(ClassLoader loader, String name) throws IOException
+	{
+		List<String> lines = new ArrayList<>();
+
+		Enumeration<URL> resources = loader.getResources(name);
+		while (resources.hasMoreElements())
+		{
+			try (InputStream istream = resources.nextElement().openStream())
+			{
+				BufferedReader reader = new BufferedReader(new InputStreamReader(istream, RESOURCE_CHARSET));
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					line = line.trim();
+					if (!line.isEmpty() && !line.startsWith("#"))
+					{
+						lines.add(line);
+					}
+				}
+			}
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private GeneratedResources()
+	{
+	}
+}
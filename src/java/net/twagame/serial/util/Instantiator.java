@@ -0,0 +1,19 @@
+package net.twagame.serial.util;
+
+/**
+ * Creates new instances of a {@link net.twagame.serial.annotation.TWASerializable TWASerializable} class for the deserializer. Each
+ * {@link ClassDescriptor} selects its instantiator once, see {@link ClassDescriptor#instantiate()}. Custom instantiators can be registered
+ * with {@link ClassDescriptorsCache#registerInstantiator(Class, Instantiator)}.
+ * 
+ * @author hadadzhi
+ */
+public interface Instantiator
+{
+	/**
+	 * Returns a new instance of the class. Its fields are overwritten by the deserializer, except for collections and maps, which are
+	 * refilled if they are initialized.
+	 * 
+	 * @return
+	 */
+	public Object instantiate();
+}
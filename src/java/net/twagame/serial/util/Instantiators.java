@@ -0,0 +1,245 @@
+package net.twagame.serial.util;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import net.twagame.serial.exception.TWASerializationException;
+import net.twagame.serial.util.unsafe.UnsafeStealer;
+import sun.misc.Unsafe;
+
+/**
+ * Creates the {@link Instantiator}s of the {@link ClassDescriptor}s, in order of preference:
+ * <ul>
+ * <li>for classes requiring safe instantiation, an instantiator calling the no-argument constructor directly, spun by the
+ * {@link LambdaMetafactory}, or, if the constructor is not accessible from this package, a reflective call of the constructor;</li>
+ * <li>for classes requiring safe instantiation only because they have collection or map fields, and have no no-argument constructor,
+ * {@link Unsafe#allocateInstance(Class)} followed by the initialization of the collection and map fields declared with a concrete type;
+ * </li>
+ * <li>for other classes, {@link Unsafe#allocateInstance(Class)}, or the constructor if {@link Unsafe} is not available.</li>
+ * </ul>
+ * 
+ * @author hadadzhi
+ */
+final class Instantiators
+{
+	/**
+	 * Returns the instantiator of the specified class.
+	 * 
+	 * @param clazz
+	 * @param forceSafeInstantiation
+	 *            whether the {@link net.twagame.serial.annotation.TWASerializable#forceSafeInstantiation()} attribute is set.
+	 * @param fieldDescriptors
+	 *            the serializable fields of the class, or {@code null} if it is not TWASerializable.
+	 * @return
+	 */
+	static Instantiator forClass(Class<?> clazz, boolean forceSafeInstantiation, FieldDescriptor[] fieldDescriptors)
+	{
+		List<FieldAccessor> collectionFields = new ArrayList<>();
+
+		for (FieldDescriptor fdesc : (fieldDescriptors != null) ? fieldDescriptors : new FieldDescriptor[0])
+		{
+			Class<?> type = fdesc.getAccessor().getField().getType();
+
+			if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+			{
+				collectionFields.add(fdesc.getAccessor());
+			}
+		}
+
+		Constructor<?> constructor = findNoArgConstructor(clazz);
+
+		if (forceSafeInstantiation || !collectionFields.isEmpty() || !UnsafeInstantiator.isAvailable())
+		{
+			if (constructor != null)
+			{
+				return forConstructor(constructor);
+			}
+
+			if (!forceSafeInstantiation && UnsafeInstantiator.isAvailable())
+			{
+				return new UnsafeInstantiator(clazz, collectionFields);
+			}
+
+			return new MissingConstructor(clazz);
+		}
+
+		return new UnsafeInstantiator(clazz, new ArrayList<FieldAccessor>());
+	}
+
+	private static Constructor<?> findNoArgConstructor(Class<?> clazz)
+	{
+		if (Modifier.isAbstract(clazz.getModifiers()))
+		{
+			return null;
+		}
+
+		try
+		{
+			return clazz.getDeclaredConstructor();
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns an instantiator that calls the constructor, with a direct call if the constructor is accessible from this package.
+	 */
+	private static Instantiator forConstructor(Constructor<?> constructor)
+	{
+		if (Modifier.isPublic(constructor.getModifiers()) && Modifier.isPublic(constructor.getDeclaringClass().getModifiers()))
+		{
+			try
+			{
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				MethodHandle target = lookup.unreflectConstructor(constructor);
+
+				return (Instantiator) LambdaMetafactory.metafactory(lookup,
+																	"instantiate",
+																	MethodType.methodType(Instantiator.class),
+																	MethodType.methodType(Object.class),
+																	target,
+																	MethodType.methodType(constructor.getDeclaringClass()))
+						.getTarget()
+						.invoke();
+			}
+			catch (Throwable t)
+			{
+				// Fall through to reflection, e.g. when the class is not visible from the class loader of this class
+			}
+		}
+
+		return new ReflectiveInstantiator(constructor);
+	}
+
+	private static final class ReflectiveInstantiator implements Instantiator
+	{
+		private final Constructor<?> constructor;
+
+		ReflectiveInstantiator(Constructor<?> constructor)
+		{
+			constructor.setAccessible(true);
+			this.constructor = constructor;
+		}
+
+		@Override
+		public Object instantiate()
+		{
+			try
+			{
+				return constructor.newInstance();
+			}
+			catch (ReflectiveOperationException e)
+			{
+				throw new TWASerializationException("Could not instantiate class " + constructor.getDeclaringClass().getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Allocates instances without calling a constructor, and initializes the collection and map fields declared with a concrete type that
+	 * has a public no-argument constructor. Fields declared with an interface type stay {@code null}, the deserializer then creates an
+	 * {@link ArrayList} or a {@link java.util.HashMap HashMap} for them.
+	 */
+	private static final class UnsafeInstantiator implements Instantiator
+	{
+		private static final Unsafe unsafe = getUnsafe();
+
+		private final Class<?> clazz;
+		private final FieldAccessor[] fields;
+		private final Instantiator[] fieldInstantiators;
+
+		UnsafeInstantiator(Class<?> clazz, List<FieldAccessor> collectionFields)
+		{
+			List<FieldAccessor> fields = new ArrayList<>();
+			List<Instantiator> fieldInstantiators = new ArrayList<>();
+
+			for (FieldAccessor field : collectionFields)
+			{
+				Class<?> type = field.getField().getType();
+				Constructor<?> constructor = findNoArgConstructor(type);
+
+				if (!type.isInterface() && (constructor != null) && Modifier.isPublic(constructor.getModifiers()))
+				{
+					fields.add(field);
+					fieldInstantiators.add(forConstructor(constructor));
+				}
+			}
+
+			this.clazz = clazz;
+			this.fields = fields.toArray(new FieldAccessor[0]);
+			this.fieldInstantiators = fieldInstantiators.toArray(new Instantiator[0]);
+		}
+
+		private static Unsafe getUnsafe()
+		{
+			try
+			{
+				return UnsafeStealer.getUnsafe();
+			}
+			catch (RuntimeException | LinkageError e)
+			{
+				return null;
+			}
+		}
+
+		static boolean isAvailable()
+		{
+			return unsafe != null;
+		}
+
+		@Override
+		public Object instantiate()
+		{
+			Object o;
+
+			try
+			{
+				o = unsafe.allocateInstance(clazz);
+			}
+			catch (InstantiationException e)
+			{
+				throw new TWASerializationException("Could not instantiate class " + clazz.getName(), e);
+			}
+
+			for (int i = 0; i < fields.length; i++)
+			{
+				fields[i].set(o, fieldInstantiators[i].instantiate());
+			}
+
+			return o;
+		}
+	}
+
+	private static final class MissingConstructor implements Instantiator
+	{
+		private final Class<?> clazz;
+
+		MissingConstructor(Class<?> clazz)
+		{
+			this.clazz = clazz;
+		}
+
+		@Override
+		public Object instantiate()
+		{
+			throw new TWASerializationException("Could not instantiate class " + clazz.getName() + ": it has no no-argument constructor");
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Instantiators()
+	{
+	}
+}
@@ -0,0 +1,306 @@
+package net.twagame.serial.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import net.twagame.serial.exception.TWASerializationException;
+
+/**
+ * A {@link FieldAccessor} that uses {@link MethodHandle}s to get/set field values, without {@link sun.misc.Unsafe}. The getter and setter
+ * are adapted to take the object as an {@link Object} and the value as the exact type of the field, so they are invoked with
+ * {@link MethodHandle#invokeExact(Object...)} and no boxing.
+ * <p>
+ * This is the fallback for JVMs where {@link sun.misc.Unsafe} can not be obtained, see {@link FieldAccessors}. The handles are held in
+ * instance fields, which the JIT compiler does not treat as constants, so it does not inline them: field access is slower than with
+ * {@link net.twagame.serial.util.unsafe.UnsafeField UnsafeField}, and no parity with it is claimed.
+ * 
+ * @author hadadzhi
+ */
+public class MethodHandleField implements FieldAccessor
+{
+	private final Field field;
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+
+	/**
+	 * Creates an accessor for the specified field, making it accessible first.
+	 * 
+	 * @param field
+	 * @throws TWASerializationException
+	 *             if the field can not be made accessible.
+	 */
+	public MethodHandleField(Field field)
+	{
+		MethodHandle[] handles = adapt(field);
+
+		this.field = field;
+		this.getter = handles[0];
+		this.setter = handles[1];
+	}
+
+	/**
+	 * Returns the getter and the setter of the field, adapted to take the object as an {@link Object} and the value as the exact type of
+	 * the field, or {@link Object} for references.
+	 */
+	private static MethodHandle[] adapt(Field field)
+	{
+		Class<?> type = field.getType().isPrimitive() ? field.getType() : Object.class;
+
+		try
+		{
+			field.setAccessible(true);
+
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle get = lookup.unreflectGetter(field);
+			MethodHandle set = lookup.unreflectSetter(field);
+
+			if (Modifier.isStatic(field.getModifiers()))
+			{
+				get = MethodHandles.dropArguments(get, 0, Object.class);
+				set = MethodHandles.dropArguments(set, 0, Object.class);
+			}
+
+			return new MethodHandle[] { get.asType(MethodType.methodType(type, Object.class)),
+										set.asType(MethodType.methodType(void.class, Object.class, type)) };
+		}
+		catch (IllegalAccessException | RuntimeException e)
+		{
+			throw new TWASerializationException("Could not access the field " + field, e);
+		}
+	}
+
+	@Override
+	public Field getField()
+	{
+		return field;
+	}
+
+	@Override
+	public Object get(Object o)
+	{
+		try
+		{
+			return getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void set(Object o, Object value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public boolean getBoolean(Object o)
+	{
+		try
+		{
+			return (boolean) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setBoolean(Object o, boolean value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public byte getByte(Object o)
+	{
+		try
+		{
+			return (byte) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setByte(Object o, byte value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public short getShort(Object o)
+	{
+		try
+		{
+			return (short) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setShort(Object o, short value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public int getInt(Object o)
+	{
+		try
+		{
+			return (int) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setInt(Object o, int value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public long getLong(Object o)
+	{
+		try
+		{
+			return (long) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setLong(Object o, long value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public float getFloat(Object o)
+	{
+		try
+		{
+			return (float) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setFloat(Object o, float value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public double getDouble(Object o)
+	{
+		try
+		{
+			return (double) getter.invokeExact(o);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	@Override
+	public void setDouble(Object o, double value)
+	{
+		try
+		{
+			setter.invokeExact(o, value);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Rethrows unchecked exceptions and errors as they are, and wraps the checked ones, which field access does not throw anyway.
+	 */
+	private static RuntimeException rethrow(Throwable t)
+	{
+		if (t instanceof RuntimeException)
+		{
+			throw (RuntimeException) t;
+		}
+
+		if (t instanceof Error)
+		{
+			throw (Error) t;
+		}
+
+		throw new TWASerializationException(t);
+	}
+}
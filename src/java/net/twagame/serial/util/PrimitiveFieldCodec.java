@@ -0,0 +1,30 @@
+package net.twagame.serial.util;
+
+import java.io.IOException;
+
+import net.twagame.serial.io.SerializationInput;
+import net.twagame.serial.io.SerializationOutput;
+
+/**
+ * The codec of a field of a primitive type, which transfers the value directly between the object and the {@link SerializationOutput}/
+ * {@link SerializationInput}. Subclassed by the built-in codecs and by generated codecs.
+ * 
+ * @author hadadzhi
+ */
+public abstract class PrimitiveFieldCodec extends FieldCodec
+{
+	protected PrimitiveFieldCodec(FieldDescriptor fieldDescriptor)
+	{
+		super(fieldDescriptor, true);
+	}
+
+	/**
+	 * Writes the value of the field of the given object to the output.
+	 */
+	public abstract void write(Object o, SerializationOutput out) throws IOException;
+
+	/**
+	 * Reads the value of the field from the input and stores it in the given object.
+	 */
+	public abstract void read(Object o, SerializationInput in) throws IOException;
+}
@@ -0,0 +1,25 @@
+package net.twagame.serial.util;
+
+/**
+ * The codec of a field of a reference type, which only gets and sets the value, leaving the serialization of the referenced object to the
+ * serializer. Subclassed by the built-in codec and by generated codecs.
+ * 
+ * @author hadadzhi
+ */
+public abstract class ReferenceFieldCodec extends FieldCodec
+{
+	protected ReferenceFieldCodec(FieldDescriptor fieldDescriptor)
+	{
+		super(fieldDescriptor, false);
+	}
+
+	/**
+	 * Returns the value of the field of the given object.
+	 */
+	public abstract Object get(Object o);
+
+	/**
+	 * Sets the value of the field of the given object.
+	 */
+	public abstract void set(Object o, Object value);
+}
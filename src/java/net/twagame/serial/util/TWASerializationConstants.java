@@ -39,6 +39,46 @@ public class TWASerializationConstants
 	public static final byte TAG_STRING = 33;
 	public static final byte TAG_COLLECTION = 34;
 	public static final byte TAG_MAP = 35;
+	/**
+	 * Assigns a class id to a class name. Written once per class per handle epoch, before the first object of that class. All objects of
+	 * that class written after it reference the class by its id.
+	 */
+	public static final byte TAG_CLASSDESC = 36;
+	/**
+	 * Resets all handles and class ids assigned so far. Written between objects, the deserializer resets its handles when it reads it.
+	 */
+	public static final byte TAG_RESET = 37;
+	/**
+	 * References an entry of the session symbol table by its slot.
+	 */
+	public static final byte TAG_SYMBOL = 38;
+	/**
+	 * Defines an entry of the session symbol table: followed by the object and then by its slot. If the slot is taken, its previous entry
+	 * is evicted, so evictions need no separate signal.
+	 */
+	public static final byte TAG_SYMBOL_DEF = 39;
+	/**
+	 * Starts a delta of an object against a baseline: followed by the class id, the bitmask of the changed fields, and the values of the
+	 * changed fields. Read with {@link net.twagame.serial.TWADeserializer#readDeltaInto(Object) TWADeserializer.readDeltaInto(Object)}.
+	 */
+	public static final byte TAG_DELTA = 40;
+	/**
+	 * Starts a collection whose elements are all of one class: followed by the handle, the size, the element type, and the bodies of the
+	 * elements. The element type is the tag of a primitive wrapper, whose values follow without tags, or {@link #TAG_NEWOBJECT} and a class
+	 * id, whose objects follow as their handles and fields, without tags and class ids. An object element whose handle is not greater
+	 * than the handle of the last new object is a reference to that object instead, since handles are assigned in ascending order.
+	 */
+	public static final byte TAG_COLLECTION_TYPED = 41;
+	/**
+	 * Starts a map whose keys or values are all of one class: followed by the handle, the size, the key type, the value type, and the
+	 * entries. The types are as in {@link #TAG_COLLECTION_TYPED}, or {@link #TAG_NULL} for keys or values written as usual.
+	 */
+	public static final byte TAG_MAP_TYPED = 42;
+	/**
+	 * Clears the session symbol table. Written between objects, the deserializer forgets all symbols when it reads it, so the symbol
+	 * slots are defined again before they are referenced. Handles are not affected.
+	 */
+	public static final byte TAG_SYMBOL_RESET = 43;
 
 	/**
 	 * Enumeration for class types
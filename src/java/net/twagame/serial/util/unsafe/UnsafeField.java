@@ -3,14 +3,15 @@ package net.twagame.serial.util.unsafe;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 
+import net.twagame.serial.util.FieldAccessor;
 import sun.misc.Unsafe;
 
 /**
- * A wrapper for the {@link Field} class that uses {@link Unsafe} to get/set field values.
+ * A wrapper for the {@link Field} class that uses {@link Unsafe} to get/set field values. The default {@link FieldAccessor}.
  * 
  * @author hadadzhi
  */
-public final class UnsafeField
+public final class UnsafeField implements FieldAccessor
 {
 	private static final Unsafe unsafe = UnsafeStealer.getUnsafe();
 
@@ -37,6 +38,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public Object get(Object o)
 	{
 		if (isStatic)
@@ -49,6 +51,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void set(Object o, Object value)
 	{
 		if (isStatic)
@@ -61,6 +64,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public int getInt(Object o)
 	{
 		if (isStatic)
@@ -73,6 +77,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setInt(Object o, int value)
 	{
 		if (isStatic)
@@ -85,6 +90,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public byte getByte(Object o)
 	{
 		if (isStatic)
@@ -97,6 +103,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setByte(Object o, byte value)
 	{
 		if (isStatic)
@@ -109,6 +116,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public short getShort(Object o)
 	{
 		if (isStatic)
@@ -121,6 +129,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setShort(Object o, short value)
 	{
 		if (isStatic)
@@ -133,6 +142,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public long getLong(Object o)
 	{
 		if (isStatic)
@@ -145,6 +155,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setLong(Object o, long value)
 	{
 		if (isStatic)
@@ -157,6 +168,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public float getFloat(Object o)
 	{
 		if (isStatic)
@@ -169,6 +181,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setFloat(Object o, float value)
 	{
 		if (isStatic)
@@ -181,6 +194,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public double getDouble(Object o)
 	{
 		if (isStatic)
@@ -193,6 +207,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setDouble(Object o, double value)
 	{
 		if (isStatic)
@@ -205,6 +220,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public boolean getBoolean(Object o)
 	{
 		if (isStatic)
@@ -217,6 +233,7 @@ public final class UnsafeField
 		}
 	}
 
+	@Override
 	public void setBoolean(Object o, boolean value)
 	{
 		if (isStatic)
@@ -234,6 +251,7 @@ public final class UnsafeField
 	 * 
 	 * @return
 	 */
+	@Override
 	public Field getField()
 	{
 		return field;
@@ -0,0 +1,359 @@
+package net.twagame.serial.util.unsafe;
+
+import java.nio.ByteOrder;
+
+import sun.misc.Unsafe;
+
+/**
+ * Bulk conversions between primitive arrays and big-endian bytes in a byte array, using {@link Unsafe} memory access. On big-endian hosts
+ * the memory layout of a primitive array already matches the big-endian encoding, so the whole range is copied with a single
+ * {@link Unsafe#copyMemory(Object, long, Object, long, long)}. On little-endian hosts that support unaligned access, each element is
+ * byte-swapped and stored or loaded with a single unaligned memory access. Otherwise, or if {@link Unsafe} is not available, elements are
+ * assembled byte by byte.
+ * <p>
+ * None of these methods check bounds, the callers must do that.
+ * 
+ * @author hadadzhi
+ */
+public final class UnsafeMemory
+{
+	private static final Unsafe unsafe = getUnsafe();
+
+	private static final boolean BIG_ENDIAN = (unsafe != null) && ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN);
+	private static final boolean UNALIGNED = (unsafe != null) && isUnalignedAccessSupported();
+
+	private static final long BYTE_ARRAY_BASE = arrayBaseOffset(byte[].class);
+	private static final long SHORT_ARRAY_BASE = arrayBaseOffset(short[].class);
+	private static final long INT_ARRAY_BASE = arrayBaseOffset(int[].class);
+	private static final long LONG_ARRAY_BASE = arrayBaseOffset(long[].class);
+	private static final long FLOAT_ARRAY_BASE = arrayBaseOffset(float[].class);
+	private static final long DOUBLE_ARRAY_BASE = arrayBaseOffset(double[].class);
+
+	private static Unsafe getUnsafe()
+	{
+		try
+		{
+			return UnsafeStealer.getUnsafe();
+		}
+		catch (RuntimeException | LinkageError e)
+		{
+			return null;
+		}
+	}
+
+	private static long arrayBaseOffset(Class<?> arrayClass)
+	{
+		return (unsafe != null) ? unsafe.arrayBaseOffset(arrayClass) : 0;
+	}
+
+	private static boolean isUnalignedAccessSupported()
+	{
+		String arch = System.getProperty("os.arch", "");
+		return arch.equals("x86") || arch.equals("i386") || arch.equals("amd64") || arch.equals("x86_64") || arch.equals("aarch64")
+			|| arch.equals("ppc64le");
+	}
+
+	/**
+	 * Writes <code>len</code> shorts from <code>src</code> starting at <code>srcOff</code> into <code>dst</code> starting at
+	 * <code>dstPos</code>, as big-endian bytes.
+	 */
+	public static void putShorts(byte[] dst, int dstPos, short[] src, int srcOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, SHORT_ARRAY_BASE + ((long) srcOff << 1), dst, BYTE_ARRAY_BASE + dstPos, (long) len << 1);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + dstPos;
+			for (int i = srcOff, end = srcOff + len; i < end; i++, address += 2)
+			{
+				unsafe.putShort(dst, address, Short.reverseBytes(src[i]));
+			}
+		}
+		else
+		{
+			short v;
+			for (int i = srcOff, end = srcOff + len; i < end; i++)
+			{
+				v = src[i];
+				dst[dstPos++] = (byte) (v >>> 8);
+				dst[dstPos++] = (byte) (v);
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>len</code> ints from <code>src</code> starting at <code>srcOff</code> into <code>dst</code> starting at
+	 * <code>dstPos</code>, as big-endian bytes.
+	 */
+	public static void putInts(byte[] dst, int dstPos, int[] src, int srcOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, INT_ARRAY_BASE + ((long) srcOff << 2), dst, BYTE_ARRAY_BASE + dstPos, (long) len << 2);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + dstPos;
+			for (int i = srcOff, end = srcOff + len; i < end; i++, address += 4)
+			{
+				unsafe.putInt(dst, address, Integer.reverseBytes(src[i]));
+			}
+		}
+		else
+		{
+			for (int i = srcOff, end = srcOff + len; i < end; i++, dstPos += 4)
+			{
+				putIntBytes(dst, dstPos, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>len</code> longs from <code>src</code> starting at <code>srcOff</code> into <code>dst</code> starting at
+	 * <code>dstPos</code>, as big-endian bytes.
+	 */
+	public static void putLongs(byte[] dst, int dstPos, long[] src, int srcOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, LONG_ARRAY_BASE + ((long) srcOff << 3), dst, BYTE_ARRAY_BASE + dstPos, (long) len << 3);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + dstPos;
+			for (int i = srcOff, end = srcOff + len; i < end; i++, address += 8)
+			{
+				unsafe.putLong(dst, address, Long.reverseBytes(src[i]));
+			}
+		}
+		else
+		{
+			for (int i = srcOff, end = srcOff + len; i < end; i++, dstPos += 8)
+			{
+				putLongBytes(dst, dstPos, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>len</code> floats from <code>src</code> starting at <code>srcOff</code> into <code>dst</code> starting at
+	 * <code>dstPos</code>, as big-endian bytes of their raw int bits.
+	 */
+	public static void putFloats(byte[] dst, int dstPos, float[] src, int srcOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, FLOAT_ARRAY_BASE + ((long) srcOff << 2), dst, BYTE_ARRAY_BASE + dstPos, (long) len << 2);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + dstPos;
+			for (int i = srcOff, end = srcOff + len; i < end; i++, address += 4)
+			{
+				unsafe.putInt(dst, address, Integer.reverseBytes(Float.floatToRawIntBits(src[i])));
+			}
+		}
+		else
+		{
+			for (int i = srcOff, end = srcOff + len; i < end; i++, dstPos += 4)
+			{
+				putIntBytes(dst, dstPos, Float.floatToRawIntBits(src[i]));
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>len</code> doubles from <code>src</code> starting at <code>srcOff</code> into <code>dst</code> starting at
+	 * <code>dstPos</code>, as big-endian bytes of their raw long bits.
+	 */
+	public static void putDoubles(byte[] dst, int dstPos, double[] src, int srcOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, DOUBLE_ARRAY_BASE + ((long) srcOff << 3), dst, BYTE_ARRAY_BASE + dstPos, (long) len << 3);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + dstPos;
+			for (int i = srcOff, end = srcOff + len; i < end; i++, address += 8)
+			{
+				unsafe.putLong(dst, address, Long.reverseBytes(Double.doubleToRawLongBits(src[i])));
+			}
+		}
+		else
+		{
+			for (int i = srcOff, end = srcOff + len; i < end; i++, dstPos += 8)
+			{
+				putLongBytes(dst, dstPos, Double.doubleToRawLongBits(src[i]));
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>len</code> big-endian shorts from <code>src</code> starting at <code>srcPos</code> into <code>dst</code> starting at
+	 * <code>dstOff</code>.
+	 */
+	public static void getShorts(byte[] src, int srcPos, short[] dst, int dstOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, BYTE_ARRAY_BASE + srcPos, dst, SHORT_ARRAY_BASE + ((long) dstOff << 1), (long) len << 1);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + srcPos;
+			for (int i = dstOff, end = dstOff + len; i < end; i++, address += 2)
+			{
+				dst[i] = Short.reverseBytes(unsafe.getShort(src, address));
+			}
+		}
+		else
+		{
+			for (int i = dstOff, end = dstOff + len; i < end; i++, srcPos += 2)
+			{
+				dst[i] = (short) (((src[srcPos] & 0xFF) << 8) | (src[srcPos + 1] & 0xFF));
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>len</code> big-endian ints from <code>src</code> starting at <code>srcPos</code> into <code>dst</code> starting at
+	 * <code>dstOff</code>.
+	 */
+	public static void getInts(byte[] src, int srcPos, int[] dst, int dstOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, BYTE_ARRAY_BASE + srcPos, dst, INT_ARRAY_BASE + ((long) dstOff << 2), (long) len << 2);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + srcPos;
+			for (int i = dstOff, end = dstOff + len; i < end; i++, address += 4)
+			{
+				dst[i] = Integer.reverseBytes(unsafe.getInt(src, address));
+			}
+		}
+		else
+		{
+			for (int i = dstOff, end = dstOff + len; i < end; i++, srcPos += 4)
+			{
+				dst[i] = getIntBytes(src, srcPos);
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>len</code> big-endian longs from <code>src</code> starting at <code>srcPos</code> into <code>dst</code> starting at
+	 * <code>dstOff</code>.
+	 */
+	public static void getLongs(byte[] src, int srcPos, long[] dst, int dstOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, BYTE_ARRAY_BASE + srcPos, dst, LONG_ARRAY_BASE + ((long) dstOff << 3), (long) len << 3);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + srcPos;
+			for (int i = dstOff, end = dstOff + len; i < end; i++, address += 8)
+			{
+				dst[i] = Long.reverseBytes(unsafe.getLong(src, address));
+			}
+		}
+		else
+		{
+			for (int i = dstOff, end = dstOff + len; i < end; i++, srcPos += 8)
+			{
+				dst[i] = getLongBytes(src, srcPos);
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>len</code> floats, written as big-endian int bits, from <code>src</code> starting at <code>srcPos</code> into
+	 * <code>dst</code> starting at <code>dstOff</code>.
+	 */
+	public static void getFloats(byte[] src, int srcPos, float[] dst, int dstOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, BYTE_ARRAY_BASE + srcPos, dst, FLOAT_ARRAY_BASE + ((long) dstOff << 2), (long) len << 2);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + srcPos;
+			for (int i = dstOff, end = dstOff + len; i < end; i++, address += 4)
+			{
+				dst[i] = Float.intBitsToFloat(Integer.reverseBytes(unsafe.getInt(src, address)));
+			}
+		}
+		else
+		{
+			for (int i = dstOff, end = dstOff + len; i < end; i++, srcPos += 4)
+			{
+				dst[i] = Float.intBitsToFloat(getIntBytes(src, srcPos));
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>len</code> doubles, written as big-endian long bits, from <code>src</code> starting at <code>srcPos</code> into
+	 * <code>dst</code> starting at <code>dstOff</code>.
+	 */
+	public static void getDoubles(byte[] src, int srcPos, double[] dst, int dstOff, int len)
+	{
+		if (BIG_ENDIAN)
+		{
+			unsafe.copyMemory(src, BYTE_ARRAY_BASE + srcPos, dst, DOUBLE_ARRAY_BASE + ((long) dstOff << 3), (long) len << 3);
+		}
+		else if (UNALIGNED)
+		{
+			long address = BYTE_ARRAY_BASE + srcPos;
+			for (int i = dstOff, end = dstOff + len; i < end; i++, address += 8)
+			{
+				dst[i] = Double.longBitsToDouble(Long.reverseBytes(unsafe.getLong(src, address)));
+			}
+		}
+		else
+		{
+			for (int i = dstOff, end = dstOff + len; i < end; i++, srcPos += 8)
+			{
+				dst[i] = Double.longBitsToDouble(getLongBytes(src, srcPos));
+			}
+		}
+	}
+
+	private static void putIntBytes(byte[] dst, int pos, int v)
+	{
+		dst[pos] = (byte) (v >>> 24);
+		dst[pos + 1] = (byte) (v >>> 16);
+		dst[pos + 2] = (byte) (v >>> 8);
+		dst[pos + 3] = (byte) (v);
+	}
+
+	private static void putLongBytes(byte[] dst, int pos, long v)
+	{
+		putIntBytes(dst, pos, (int) (v >>> 32));
+		putIntBytes(dst, pos + 4, (int) v);
+	}
+
+	private static int getIntBytes(byte[] src, int pos)
+	{
+		return ((src[pos] & 0xFF) << 24) | ((src[pos + 1] & 0xFF) << 16) | ((src[pos + 2] & 0xFF) << 8) | (src[pos + 3] & 0xFF);
+	}
+
+	private static long getLongBytes(byte[] src, int pos)
+	{
+		return ((long) getIntBytes(src, pos) << 32) | (getIntBytes(src, pos + 4) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private UnsafeMemory()
+	{
+	}
+}